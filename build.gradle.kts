@@ -2,6 +2,7 @@ plugins {
     id("java")
     id("org.jetbrains.kotlin.jvm") version "1.9.23"
     id("org.jetbrains.intellij") version "1.17.2"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "io.github.mschieder"
@@ -11,6 +12,26 @@ repositories {
     mavenCentral()
 }
 
+// classpaths of the project generated by the platform tests, passed to the test JVM
+val fixtureOpenJpa: Configuration by configurations.creating
+val fixtureJakarta: Configuration by configurations.creating
+
+dependencies {
+    // enhancer of the external build process, shares the OpenJPA integration with the IDE
+    implementation(project(":jps-plugin"))
+
+    // enhancer used by the end-to-end benchmarks, provided by the project modules at runtime of the plugin
+    jmh("org.apache.openjpa:openjpa:3.2.2")
+
+    // platform tests, the test framework is provided by the IDE
+    testImplementation("junit:junit:4.13.2")
+    testImplementation("org.opentest4j:opentest4j:1.3.0")
+
+    // the javax modules of the generated project are enhanced, the jakarta modules only compiled
+    fixtureOpenJpa("org.apache.openjpa:openjpa:3.2.2")
+    fixtureJakarta("jakarta.persistence:jakarta.persistence-api:3.1.0")
+}
+
 
 // Configure Gradle IntelliJ Plugin
 // Read more: https://plugins.jetbrains.com/docs/intellij/tools-gradle-intellij-plugin.html
@@ -21,6 +42,27 @@ intellij {
     plugins.set(listOf("com.intellij.java"))
 }
 
+// Benchmarks: ./gradlew jmh (results in build/results/jmh)
+jmh {
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
+
+// benchmarks run the plugin classes outside the IDE, the platform classes are needed to load them
+sourceSets.named("jmh") {
+    compileClasspath += sourceSets.main.get().compileClasspath
+    runtimeClasspath += sourceSets.main.get().compileClasspath
+}
+
+// platform tests generate their project with the fixture of the benchmarks
+sourceSets.named("test") {
+    compileClasspath += sourceSets["jmh"].output
+    runtimeClasspath += sourceSets["jmh"].output
+}
+
 tasks {
     patchPluginXml {
         sinceBuild.set("242")
@@ -36,6 +78,30 @@ tasks {
         kotlinOptions.jvmTarget = "17"
     }
 
+    // Unit tests: ./gradlew test (the performance tests are not part of the build)
+    test {
+        exclude("**/*PerformanceTest.class")
+    }
+
+    // Platform performance tests: ./gradlew performanceTest (sizes and budgets, see EnhancerPerformanceTest)
+    register<Test>("performanceTest") {
+        description = "Runs the platform performance tests over a generated multi-module project."
+        group = "verification"
+        testClassesDirs = sourceSets.test.get().output.classesDirs
+        classpath = sourceSets.test.get().runtimeClasspath
+        include("**/*PerformanceTest.class")
+        shouldRunAfter(test)
+
+        maxHeapSize = "4g"
+        jvmArgumentProviders.add(CommandLineArgumentProvider {
+            listOf("-Dopenjpa.fixture.openjpa=" + fixtureOpenJpa.asPath,
+                    "-Dopenjpa.fixture.jakarta=" + fixtureJakarta.asPath)
+        })
+        listOf("openjpa.fixture.modules", "openjpa.fixture.classes", "openjpa.performance.budgetFactor").forEach { name ->
+            System.getProperty(name)?.let { systemProperty(name, it) }
+        }
+    }
+
     signPlugin {
         certificateChain.set(System.getenv("CERTIFICATE_CHAIN"))
         privateKey.set(System.getenv("PRIVATE_KEY"))
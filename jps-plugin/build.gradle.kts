@@ -0,0 +1,37 @@
+plugins {
+    id("java")
+    id("org.jetbrains.intellij")
+}
+
+group = rootProject.group
+version = rootProject.version
+
+repositories {
+    mavenCentral()
+}
+
+// JPS API of the target IDE, the jar is loaded by the external build process (see compileServer.plugin in plugin.xml)
+intellij {
+    version.set("2024.2")
+    type.set("IC")
+    instrumentCode.set(false)
+
+    plugins.set(listOf("com.intellij.java"))
+}
+
+tasks {
+    withType<JavaCompile> {
+        sourceCompatibility = "17"
+        targetCompatibility = "17"
+    }
+
+    jar {
+        archiveFileName.set("openjpa-jps-plugin.jar")
+    }
+
+    // library of the IDE plugin, not a plugin on its own
+    listOf("patchPluginXml", "buildSearchableOptions", "jarSearchableOptions", "verifyPlugin", "runIde",
+            "buildPlugin", "signPlugin", "publishPlugin").forEach {
+        named(it) { enabled = false }
+    }
+}
@@ -0,0 +1,323 @@
+package org.openjpa.ide.idea.integration.openjpa;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Reads the class level annotations and the implemented interfaces of a class file.<br/>
+ * <br/>
+ * Only the constant pool, the interfaces table and the class level 'RuntimeVisibleAnnotations' attribute are
+ * parsed, classes whose constant pool does not reference an annotation or interface looked for are rejected
+ * without parsing further. A reference alone (e.g. by a method descriptor) does not match.<br/>
+ * <br/>
+ * Depends on JDK classes only, see {@link OpenJpaEnhancerRunner}.
+ */
+public final class ClassFileParser {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final byte[] RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations".getBytes(StandardCharsets.UTF_8);
+
+    private final byte[][] descriptors;
+
+    /**
+     * @param annotationNames fully qualified names of the annotations to look for
+     */
+    public ClassFileParser(final Collection<String> annotationNames) {
+        this.descriptors = new byte[annotationNames.size()][];
+        int i = 0;
+        for (final String annotationName : annotationNames) {
+            this.descriptors[i++] = ('L' + annotationName.replace('.', '/') + ';').getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * @param buffer class file content
+     * @return internal name of the class if annotated by one of the annotations, null otherwise
+     * @throws IllegalArgumentException  if the class file is malformed
+     * @throws BufferUnderflowException  if the class file is truncated
+     * @throws IndexOutOfBoundsException if the class file is malformed
+     */
+    public String findAnnotatedClass(final ByteBuffer buffer) {
+        final ConstantPool pool = ConstantPool.read(buffer);
+        if (pool == null || this.descriptors.length == 0) {
+            return null;
+        }
+        final int runtimeVisibleAnnotations = pool.find(buffer, RUNTIME_VISIBLE_ANNOTATIONS);
+        if (runtimeVisibleAnnotations == 0 || !this.isReferenced(pool, buffer)) {
+            return null;
+        }
+
+        buffer.getShort(); // access flags
+        final int thisClass = buffer.getShort() & 0xFFFF;
+        buffer.getShort(); // super class
+        final int interfaceCount = buffer.getShort() & 0xFFFF;
+        buffer.position(buffer.position() + 2 * interfaceCount);
+        skipMembers(buffer); // fields
+        skipMembers(buffer); // methods
+
+        //
+        // class attributes
+
+        final int attributeCount = buffer.getShort() & 0xFFFF;
+        for (int i = 0; i < attributeCount; ++i) {
+            final int nameIndex = buffer.getShort() & 0xFFFF;
+            final int length = buffer.getInt();
+            final int end = buffer.position() + length;
+            if (nameIndex == runtimeVisibleAnnotations) {
+                final int annotationCount = buffer.getShort() & 0xFFFF;
+                for (int j = 0; j < annotationCount; ++j) {
+                    final int typeIndex = buffer.getShort() & 0xFFFF;
+                    if (this.isDescriptor(buffer, pool.utf8Offset(typeIndex))) {
+                        return pool.className(buffer, thisClass);
+                    }
+                    skipElementValuePairs(buffer);
+                }
+                return null;
+            }
+            buffer.position(end);
+        }
+        return null;
+    }
+
+    /**
+     * @param bytes class file content
+     * @return true if the class is annotated by one of the annotations, false otherwise or if malformed
+     */
+    public boolean isAnnotated(final byte[] bytes) {
+        try {
+            return this.findAnnotatedClass(ByteBuffer.wrap(bytes)) != null;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException ignored) {
+            return false;
+        }
+    }
+
+    /**
+     * @param bytes         class file content
+     * @param interfaceName internal name of the interface, e.g. 'java/io/Serializable'
+     * @return true if the class directly implements the interface, false otherwise or if malformed
+     */
+    public static boolean implementsInterface(final byte[] bytes, final String interfaceName) {
+        final byte[] name = interfaceName.getBytes(StandardCharsets.UTF_8);
+        try {
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            final ConstantPool pool = ConstantPool.read(buffer);
+            if (pool == null || pool.find(buffer, name) == 0) {
+                return false;
+            }
+            buffer.getShort(); // access flags
+            buffer.getShort(); // this class
+            buffer.getShort(); // super class
+            final int interfaceCount = buffer.getShort() & 0xFFFF;
+            for (int i = 0; i < interfaceCount; ++i) {
+                final int offset = pool.utf8Offset(pool.classNameIndex(buffer.getShort() & 0xFFFF));
+                if (equals(buffer, offset, name)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException ignored) {
+            return false;
+        }
+    }
+
+    //
+    // Helper methods
+    //
+
+    private boolean isReferenced(final ConstantPool pool, final ByteBuffer buffer) {
+        for (final byte[] descriptor : this.descriptors) {
+            if (pool.find(buffer, descriptor) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isDescriptor(final ByteBuffer buffer, final int offset) {
+        for (final byte[] descriptor : this.descriptors) {
+            if (equals(buffer, offset, descriptor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param offset offset of a Utf8 constant (its length)
+     */
+    private static boolean equals(final ByteBuffer buffer, final int offset, final byte[] bytes) {
+        final int length = buffer.getShort(offset) & 0xFFFF;
+        if (length != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < length; ++i) {
+            if (buffer.get(offset + 2 + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void skipMembers(final ByteBuffer buffer) {
+        final int count = buffer.getShort() & 0xFFFF;
+        for (int i = 0; i < count; ++i) {
+            buffer.position(buffer.position() + 6); // access flags, name, descriptor
+            skipAttributes(buffer);
+        }
+    }
+
+    private static void skipAttributes(final ByteBuffer buffer) {
+        final int count = buffer.getShort() & 0xFFFF;
+        for (int i = 0; i < count; ++i) {
+            buffer.getShort(); // name
+            final int length = buffer.getInt();
+            buffer.position(buffer.position() + length);
+        }
+    }
+
+    private static void skipElementValuePairs(final ByteBuffer buffer) {
+        final int count = buffer.getShort() & 0xFFFF;
+        for (int i = 0; i < count; ++i) {
+            buffer.getShort(); // name
+            skipElementValue(buffer);
+        }
+    }
+
+    private static void skipElementValue(final ByteBuffer buffer) {
+        final int tag = buffer.get() & 0xFF;
+        switch (tag) {
+            case 'e': // enum: type name, constant name
+                buffer.position(buffer.position() + 4);
+                break;
+            case '@':
+                buffer.getShort(); // type
+                skipElementValuePairs(buffer);
+                break;
+            case '[':
+                final int count = buffer.getShort() & 0xFFFF;
+                for (int i = 0; i < count; ++i) {
+                    skipElementValue(buffer);
+                }
+                break;
+            default: // constant or class: index
+                buffer.getShort();
+                break;
+        }
+    }
+
+    //
+    // Nested classes
+    //
+
+    /**
+     * Offsets of the Utf8 entries and name indexes of the Class entries of a constant pool.
+     */
+    private static final class ConstantPool {
+
+        private final int[] utf8Offsets;
+
+        private final int[] classNameIndexes;
+
+        private ConstantPool(final int[] utf8Offsets, final int[] classNameIndexes) {
+            this.utf8Offsets = utf8Offsets;
+            this.classNameIndexes = classNameIndexes;
+        }
+
+        /**
+         * Read the constant pool, leaving the buffer positioned at the access flags.
+         *
+         * @return the constant pool or null if not a class file
+         */
+        static ConstantPool read(final ByteBuffer buffer) {
+            if (buffer.getInt() != MAGIC) {
+                return null;
+            }
+            buffer.getShort(); // minor version
+            buffer.getShort(); // major version
+
+            final int constantCount = buffer.getShort() & 0xFFFF;
+            final int[] utf8Offsets = new int[constantCount];
+            final int[] classNameIndexes = new int[constantCount];
+            for (int i = 1; i < constantCount; ++i) {
+                final int tag = buffer.get() & 0xFF;
+                switch (tag) {
+                    case 1: // Utf8
+                        utf8Offsets[i] = buffer.position();
+                        final int length = buffer.getShort() & 0xFFFF;
+                        buffer.position(buffer.position() + length);
+                        break;
+                    case 7: // Class
+                        classNameIndexes[i] = buffer.getShort() & 0xFFFF;
+                        break;
+                    case 8: // String
+                    case 16: // MethodType
+                    case 19: // Module
+                    case 20: // Package
+                        buffer.position(buffer.position() + 2);
+                        break;
+                    case 15: // MethodHandle
+                        buffer.position(buffer.position() + 3);
+                        break;
+                    case 3: // Integer
+                    case 4: // Float
+                    case 9: // Fieldref
+                    case 10: // Methodref
+                    case 11: // InterfaceMethodref
+                    case 12: // NameAndType
+                    case 17: // Dynamic
+                    case 18: // InvokeDynamic
+                        buffer.position(buffer.position() + 4);
+                        break;
+                    case 5: // Long
+                    case 6: // Double
+                        buffer.position(buffer.position() + 8);
+                        ++i;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("invalid constant pool tag " + tag);
+                }
+            }
+            return new ConstantPool(utf8Offsets, classNameIndexes);
+        }
+
+        /**
+         * @return index of the Utf8 entry or 0 if not found
+         */
+        int find(final ByteBuffer buffer, final byte[] bytes) {
+            for (int i = 1; i < this.utf8Offsets.length; ++i) {
+                if (this.utf8Offsets[i] != 0 && ClassFileParser.equals(buffer, this.utf8Offsets[i], bytes)) {
+                    return i;
+                }
+            }
+            return 0;
+        }
+
+        int utf8Offset(final int index) {
+            final int offset = this.utf8Offsets[index];
+            if (offset == 0) {
+                throw new IllegalArgumentException("not a Utf8 constant " + index);
+            }
+            return offset;
+        }
+
+        int classNameIndex(final int index) {
+            final int nameIndex = this.classNameIndexes[index];
+            if (nameIndex == 0) {
+                throw new IllegalArgumentException("not a Class constant " + index);
+            }
+            return nameIndex;
+        }
+
+        String className(final ByteBuffer buffer, final int classIndex) {
+            final int offset = this.utf8Offset(this.classNameIndex(classIndex));
+            final byte[] bytes = new byte[buffer.getShort(offset) & 0xFFFF];
+            buffer.get(offset + 2, bytes);
+            // class names do not contain the characters modified UTF-8 encodes differently
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+}
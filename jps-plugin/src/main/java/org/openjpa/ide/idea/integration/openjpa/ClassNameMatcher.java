@@ -0,0 +1,259 @@
+package org.openjpa.ide.idea.integration.openjpa;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Matches fully qualified class names against include and exclude patterns.<br/>
+ * <br/>
+ * Patterns consist of '.' separated segments: '**' matches any number of segments, '*' and '?' within a segment
+ * match any characters respectively one character except '.', e.g. 'com.acme.billing.**' or '*.audit.*Entity'.<br/>
+ * <br/>
+ * All patterns are compiled into one trie of segments, a class name is matched in a single pass over its
+ * segments, following all matching branches at once. A class matches if an include pattern matches and no
+ * exclude pattern does.<br/>
+ * <br/>
+ * Used by the IDE and the external build process, depends on JDK classes only.
+ */
+public final class ClassNameMatcher {
+
+    public static final ClassNameMatcher NONE = new ClassNameMatcher(new Node(), true);
+
+    private static final String ANY_SEGMENTS = "**";
+
+    private final Node root;
+
+    private final boolean empty;
+
+    private ClassNameMatcher(final Node root, final boolean empty) {
+        this.root = root;
+        this.empty = empty;
+    }
+
+    /**
+     * @param includes patterns of the classes to include
+     * @param excludes patterns of the classes to exclude, even if included
+     * @return the matcher
+     */
+    public static ClassNameMatcher compile(final Collection<String> includes, final Collection<String> excludes) {
+        final Node root = new Node();
+        boolean empty = true;
+        for (final String include : includes) {
+            empty &= !add(root, include, true);
+        }
+        if (empty) {
+            return NONE;
+        }
+        for (final String exclude : excludes) {
+            add(root, exclude, false);
+        }
+        return new ClassNameMatcher(root, false);
+    }
+
+    /**
+     * @return true if there are no include patterns, i.e. no class matches
+     */
+    public boolean isEmpty() {
+        return this.empty;
+    }
+
+    /**
+     * @param className fully qualified class name
+     * @return true if included and not excluded
+     */
+    public boolean matches(final String className) {
+        if (this.empty) {
+            return false;
+        }
+        List<Node> active = new ArrayList<>(4);
+        List<Node> next = new ArrayList<>(4);
+        addWithAnySegments(active, this.root);
+
+        int start = 0;
+        while (start <= className.length() && !active.isEmpty()) {
+            int end = className.indexOf('.', start);
+            if (end < 0) {
+                end = className.length();
+            }
+            next.clear();
+            for (final Node node : active) {
+                node.step(className, start, end, next);
+            }
+            final List<Node> swap = active;
+            active = next;
+            next = swap;
+            start = end + 1;
+        }
+
+        boolean included = false;
+        for (final Node node : active) {
+            if (node.exclude) {
+                return false;
+            }
+            included |= node.include;
+        }
+        return included;
+    }
+
+    //
+    // Compilation
+    //
+
+    private static boolean add(final Node root, final String pattern, final boolean include) {
+        final String trimmed = pattern == null ? "" : pattern.trim();
+        if (trimmed.isEmpty()) {
+            return false;
+        }
+        Node node = root;
+        int start = 0;
+        while (start <= trimmed.length()) {
+            int end = trimmed.indexOf('.', start);
+            if (end < 0) {
+                end = trimmed.length();
+            }
+            node = node.child(trimmed.substring(start, end));
+            start = end + 1;
+        }
+        if (include) {
+            node.include = true;
+        } else {
+            node.exclude = true;
+        }
+        return true;
+    }
+
+    private static void addWithAnySegments(final List<Node> nodes, final Node node) {
+        if (!nodes.contains(node)) {
+            nodes.add(node);
+            // '**' also matches no segment
+            if (node.anySegments != null) {
+                addWithAnySegments(nodes, node.anySegments);
+            }
+        }
+    }
+
+    /**
+     * Trie node, i.e. the state after matching a sequence of pattern segments.
+     */
+    private static final class Node {
+
+        private Map<String, Node> literals = Collections.emptyMap();
+
+        private List<String> globs = Collections.emptyList();
+
+        private List<Node> globNodes = Collections.emptyList();
+
+        /**
+         * child for '**', matching any number of segments
+         */
+        private Node anySegments = null;
+
+        private boolean selfLoop = false;
+
+        private boolean include = false;
+
+        private boolean exclude = false;
+
+        Node child(final String segment) {
+            if (ANY_SEGMENTS.equals(segment)) {
+                if (this.anySegments == null) {
+                    this.anySegments = new Node();
+                    this.anySegments.selfLoop = true;
+                }
+                return this.anySegments;
+            }
+            if (segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0) {
+                final int index = this.globs.indexOf(segment);
+                if (index >= 0) {
+                    return this.globNodes.get(index);
+                }
+                if (this.globs.isEmpty()) {
+                    this.globs = new ArrayList<>(2);
+                    this.globNodes = new ArrayList<>(2);
+                }
+                final Node node = new Node();
+                this.globs.add(segment);
+                this.globNodes.add(node);
+                return node;
+            }
+            if (this.literals.isEmpty()) {
+                this.literals = new HashMap<>(4);
+            }
+            return this.literals.computeIfAbsent(segment, k -> new Node());
+        }
+
+        /**
+         * Add the nodes reached by consuming a segment of the class name.
+         */
+        void step(final String className, final int start, final int end, final List<Node> next) {
+            if (this.selfLoop) {
+                addWithAnySegments(next, this);
+            }
+            if (!this.literals.isEmpty()) {
+                final Node literal = this.literals.get(className.substring(start, end));
+                if (literal != null) {
+                    addWithAnySegments(next, literal);
+                }
+            }
+            for (int i = 0; i < this.globs.size(); ++i) {
+                if (matchesGlob(this.globs.get(i), className, start, end)) {
+                    addWithAnySegments(next, this.globNodes.get(i));
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Match a segment glob, backtracking to the last '*' only.
+     */
+    static boolean matchesGlob(final String glob, final String text, final int start, final int end) {
+        int g = 0;
+        int t = start;
+        int starG = -1;
+        int starT = -1;
+        while (t < end) {
+            if (g < glob.length() && (glob.charAt(g) == '?' || glob.charAt(g) == text.charAt(t))) {
+                ++g;
+                ++t;
+            } else if (g < glob.length() && glob.charAt(g) == '*') {
+                starG = g++;
+                starT = t;
+            } else if (starG >= 0) {
+                g = starG + 1;
+                t = ++starT;
+            } else {
+                return false;
+            }
+        }
+        while (g < glob.length() && glob.charAt(g) == '*') {
+            ++g;
+        }
+        return g == glob.length();
+    }
+
+    /**
+     * Split patterns separated by ';', ',' or whitespace.
+     *
+     * @param patterns the patterns as entered
+     * @return the patterns
+     */
+    public static Set<String> parse(final String patterns) {
+        final Set<String> parsed = new LinkedHashSet<>();
+        if (patterns != null) {
+            for (final String pattern : patterns.split("[;,\\s]+")) {
+                if (!pattern.isEmpty()) {
+                    parsed.add(pattern);
+                }
+            }
+        }
+        return parsed;
+    }
+
+}
@@ -0,0 +1,188 @@
+package org.openjpa.ide.idea.integration.openjpa;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Content addressed cache of enhanced class files, keyed by a hash of the class bytes before enhancement and
+ * everything else the enhancement result depends on (see {@link OpenJpaEnhancerRunner}).<br/>
+ * <br/>
+ * Entries are files in a directory shared by all projects, worktrees and processes (IDE and enhancer worker)
+ * of a machine, written atomically by a temporary file. Reading an entry touches its modification time, the
+ * least recently used entries are deleted once the cache exceeds its maximum size.<br/>
+ * <br/>
+ * Depends on JDK classes only, failures to read or write the cache are ignored.
+ */
+public final class EnhancedClassCache {
+
+    /**
+     * Name of the cache directory within the IDE's system directory
+     */
+    public static final String DIRECTORY_NAME = "openjpa-enhanced-classes";
+
+    public static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+    private static final String ENTRY_EXTENSION = ".class";
+
+    private static final int CLASS_FILE_MAGIC = 0xCAFEBABE;
+
+    private final Path directory;
+
+    private final long maxSize;
+
+    /**
+     * estimated size of all entries, -1 until the directory was scanned
+     */
+    private final AtomicLong size = new AtomicLong(-1);
+
+    private final AtomicBoolean pruning = new AtomicBoolean();
+
+    /**
+     * @param directory cache directory, created on first write
+     * @param maxSize   size in bytes the entries are pruned to
+     */
+    public EnhancedClassCache(final Path directory, final long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+    public long getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @param key hash of the class and the enhancer settings
+     * @return the enhanced class bytes, null if not cached
+     */
+    byte[] get(final String key) {
+        final Path entry = this.getEntryPath(key);
+        try {
+            final byte[] bytes = Files.readAllBytes(entry);
+            if (!isClassFile(bytes)) {
+                return null;
+            }
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return bytes;
+        } catch (NoSuchFileException ignored) {
+            return null;
+        } catch (IOException | RuntimeException ignored) {
+            // e.g. deleted by another process meanwhile
+            return null;
+        }
+    }
+
+    /**
+     * @param key   hash of the class and the enhancer settings
+     * @param bytes the enhanced class bytes
+     */
+    void put(final String key, final byte[] bytes) {
+        final Path entry = this.getEntryPath(key);
+        try {
+            Files.createDirectories(entry.getParent());
+            OpenJpaEnhancerRunner.write(entry, bytes);
+        } catch (IOException | RuntimeException ignored) {
+            return;
+        }
+        final long estimatedSize = this.size.get() < 0 ? -1 : this.size.addAndGet(bytes.length);
+        if (estimatedSize < 0 || estimatedSize > this.maxSize) {
+            this.prune();
+        }
+    }
+
+    /**
+     * Delete the least recently used entries down to three quarters of the maximum size. Runs in one thread
+     * of the process at a time, entries written by other processes meanwhile are considered by the next run.
+     */
+    void prune() {
+        if (!this.pruning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            final List<CacheEntry> entries = new ArrayList<>();
+            long totalSize = 0;
+            try (Stream<Path> files = Files.walk(this.directory, 2)) {
+                for (final Path file : (Iterable<Path>) files::iterator) {
+                    if (!file.getFileName().toString().endsWith(ENTRY_EXTENSION)) {
+                        continue;
+                    }
+                    try {
+                        final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                        entries.add(new CacheEntry(file, attributes.size(), attributes.lastModifiedTime().toMillis()));
+                        totalSize += attributes.size();
+                    } catch (IOException ignored) {
+                        // deleted meanwhile
+                    }
+                }
+            } catch (IOException | RuntimeException ignored) {
+                // not created yet or not accessible
+            }
+
+            if (totalSize > this.maxSize) {
+                final long targetSize = this.maxSize / 4 * 3;
+                entries.sort(Comparator.comparingLong(e -> e.lastUsed));
+                for (final CacheEntry entry : entries) {
+                    if (totalSize <= targetSize) {
+                        break;
+                    }
+                    try {
+                        Files.deleteIfExists(entry.file);
+                        totalSize -= entry.size;
+                    } catch (IOException ignored) {
+                        // e.g. locked, retried by the next run
+                    }
+                }
+            }
+            this.size.set(totalSize);
+        } finally {
+            this.pruning.set(false);
+        }
+    }
+
+    //
+    // Helper methods
+    //
+
+    private Path getEntryPath(final String key) {
+        // two level layout, keeps the number of files per directory small
+        return this.directory.resolve(key.substring(0, 2)).resolve(key.substring(2) + ENTRY_EXTENSION);
+    }
+
+    private static boolean isClassFile(final byte[] bytes) {
+        return bytes.length > 4
+                && ((bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | (bytes[3] & 0xFF)) == CLASS_FILE_MAGIC;
+    }
+
+    //
+    // Nested classes
+    //
+
+    private static final class CacheEntry {
+
+        private final Path file;
+
+        private final long size;
+
+        private final long lastUsed;
+
+        private CacheEntry(final Path file, final long size, final long lastUsed) {
+            this.file = file;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package org.openjpa.ide.idea.integration.openjpa;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of an enhancement run: classes written, classes left untouched as enhancing did not change them
+ * (e.g. already enhanced) and classes skipped as not to be enhanced (e.g. not persistent or not compiled).
+ */
+public final class EnhancementResult {
+
+    public static final EnhancementResult EMPTY = new EnhancementResult(0, 0, Collections.emptyList());
+
+    private final int unchangedCount;
+
+    private final int skippedCount;
+
+    private final int cachedCount;
+
+    private final List<String> writtenFiles;
+
+    /**
+     * @param unchangedCount number of classes not changed by enhancing
+     * @param skippedCount   number of classes not enhanced
+     * @param writtenFiles   paths of the class files written
+     */
+    public EnhancementResult(final int unchangedCount, final int skippedCount, final List<String> writtenFiles) {
+        this(unchangedCount, skippedCount, 0, writtenFiles);
+    }
+
+    /**
+     * @param unchangedCount number of classes not changed by enhancing
+     * @param skippedCount   number of classes not enhanced
+     * @param cachedCount    number of the classes written copied from the cache instead of enhancing them
+     * @param writtenFiles   paths of the class files written
+     */
+    public EnhancementResult(final int unchangedCount, final int skippedCount, final int cachedCount, final List<String> writtenFiles) {
+        this.unchangedCount = unchangedCount;
+        this.skippedCount = skippedCount;
+        this.cachedCount = cachedCount;
+        this.writtenFiles = Collections.unmodifiableList(writtenFiles);
+    }
+
+    /**
+     * @return number of classes enhanced and written
+     */
+    public int getEnhancedCount() {
+        return this.writtenFiles.size();
+    }
+
+    public int getUnchangedCount() {
+        return this.unchangedCount;
+    }
+
+    public int getSkippedCount() {
+        return this.skippedCount;
+    }
+
+    /**
+     * @return number of classes written from the cache of enhanced classes, included in the enhanced count
+     */
+    public int getCachedCount() {
+        return this.cachedCount;
+    }
+
+    public List<String> getWrittenFiles() {
+        return this.writtenFiles;
+    }
+
+    //
+    // java.lang.Object overrides
+    //
+
+    @Override
+    public String toString() {
+        return this.getEnhancedCount() + " enhanced" + (this.cachedCount > 0 ? " (" + this.cachedCount + " from cache), " : ", ")
+                + this.unchangedCount + " unchanged, " + this.skippedCount + " skipped";
+    }
+
+}
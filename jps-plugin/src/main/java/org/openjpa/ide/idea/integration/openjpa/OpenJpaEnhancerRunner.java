@@ -0,0 +1,522 @@
+package org.openjpa.ide.idea.integration.openjpa;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.IllegalClassFormatException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Invokes the OpenJPA enhancer via reflection.<br/>
+ * <br/>
+ * Depends on JDK classes only, as it is shared by the in-process {@code OpenJpaEnhancerProxy},
+ * the out-of-process {@code EnhancerWorker} and the enhancer of the external build process
+ * ({@code org.openjpa.ide.jps.OpenJpaEnhancerBuilder}).
+ */
+public final class OpenJpaEnhancerRunner {
+
+    public static final String OPEN_JPA_ENHANCER_CLASS_FQ = "org.apache.openjpa.enhance.PCEnhancer";
+
+    private static final String OPTION_ADD_DEFAULT_CONSTRUCTOR = "addDefaultConstructor";
+    private static final String OPTION_ENFORCE_PROPERTY_RESTRICTION = "enforcePropertyRestrictions";
+
+    /**
+     * Interface implemented by enhanced classes
+     */
+    private static final String PERSISTENCE_CAPABLE = "org/apache/openjpa/enhance/PersistenceCapable";
+
+    /**
+     * Finds the class level annotations of classes to be enhanced
+     */
+    private static final ClassFileParser PERSISTENCE_ANNOTATIONS = new ClassFileParser(List.of(
+            "javax.persistence.Entity",
+            "javax.persistence.MappedSuperclass",
+            "javax.persistence.Embeddable",
+            "jakarta.persistence.Entity",
+            "jakarta.persistence.MappedSuperclass",
+            "jakarta.persistence.Embeddable"));
+
+    private static final String TEMPORARY_CLASS_LOADER_CLASS_FQ = "org.apache.openjpa.lib.util.TemporaryClassLoader";
+
+    /**
+     * Changed if the cache key does not cover what enhancing depends on anymore
+     */
+    private static final String CACHE_KEY_VERSION = "2";
+
+    /**
+     * Mapping descriptors found by OpenJPA in the classpath, enhancing depends on their content
+     */
+    private static final String[] MAPPING_RESOURCES = {"META-INF/persistence.xml", "META-INF/orm.xml"};
+
+    /**
+     * Superclasses are hashed up to this depth only
+     */
+    private static final int MAX_SUPERCLASS_DEPTH = 16;
+
+    private final Class<?> configClass;
+    private final Class<?> enhancerClass;
+    private final Class<?> optionsClass;
+    private final Class<?> configParamClass;
+    private final Class<?> transformerClass;
+    private final Class<?> repositoryClass;
+    private final Class<?> temporaryClassLoaderClass;
+
+    /**
+     * hash of the OpenJPA library content, part of the cache keys
+     */
+    private volatile byte[] enhancerHash;
+
+    /**
+     * @param classLoader ClassLoader providing the OpenJPA library
+     * @throws ClassNotFoundException if OpenJPA is not available in the ClassLoader
+     */
+    public OpenJpaEnhancerRunner(final ClassLoader classLoader) throws ClassNotFoundException {
+        this.enhancerClass = Class.forName(OPEN_JPA_ENHANCER_CLASS_FQ, true, classLoader);
+        this.optionsClass = Class.forName("org.apache.openjpa.lib.util.Options", true, classLoader);
+        this.configParamClass = Class.forName("org.apache.openjpa.conf.OpenJPAConfiguration", true, classLoader);
+        this.configClass = Class.forName("org.apache.openjpa.conf.OpenJPAConfigurationImpl", true, classLoader);
+        this.transformerClass = Class.forName("org.apache.openjpa.enhance.PCClassFileTransformer", true, classLoader);
+        this.repositoryClass = Class.forName("org.apache.openjpa.meta.MetaDataRepository", true, classLoader);
+        Class<?> temporaryClassLoaderClass;
+        try {
+            temporaryClassLoaderClass = Class.forName(TEMPORARY_CLASS_LOADER_CLASS_FQ, true, classLoader);
+        } catch (ClassNotFoundException ignored) {
+            temporaryClassLoaderClass = null;
+        }
+        this.temporaryClassLoaderClass = temporaryClassLoaderClass;
+    }
+
+    /**
+     * Enhance class files without a cache.
+     *
+     * @see #enhance(ClassLoader, List, boolean, boolean, EnhancedClassCache)
+     */
+    public EnhancementResult enhance(final ClassLoader projectClassLoader,
+                                     final List<String> classFiles,
+                                     final boolean addDefaultConstructor,
+                                     final boolean enforcePropertyRestrictions)
+            throws IOException, InvocationTargetException, IllegalAccessException, NoSuchMethodException, InstantiationException {
+
+        return this.enhance(projectClassLoader, classFiles, addDefaultConstructor, enforcePropertyRestrictions, null);
+    }
+
+    /**
+     * Enhance class files.<br/>
+     * <br/>
+     * Enhanced classes are written only if the bytes changed, atomically by a temporary file. Classes already
+     * enhanced are not passed to the enhancer at all. Classes enhanced before with the same bytes, superclasses,
+     * mapping descriptors, enhancer library and options are copied from the cache instead of being enhanced.<br/>
+     * <br/>
+     * Fails if a class annotated as entity, mapped superclass or embeddable is not enhanced, as OpenJPA only logs
+     * why it did not enhance a class.
+     *
+     * @param projectClassLoader          ClassLoader resolving the classes to enhance, set as context ClassLoader during enhancement
+     * @param classFiles                  paths of the class files to enhance
+     * @param addDefaultConstructor       .
+     * @param enforcePropertyRestrictions .
+     * @param cache                       cache of enhanced classes, null to always enhance
+     * @return the classes enhanced, unchanged and skipped
+     * @throws IOException               if reading or writing a class file fails or a persistent class was not enhanced
+     * @throws InvocationTargetException .
+     * @throws IllegalAccessException    .
+     * @throws NoSuchMethodException     .
+     * @throws InstantiationException    .
+     */
+    public EnhancementResult enhance(final ClassLoader projectClassLoader,
+                                     final List<String> classFiles,
+                                     final boolean addDefaultConstructor,
+                                     final boolean enforcePropertyRestrictions,
+                                     final EnhancedClassCache cache)
+            throws IOException, InvocationTargetException, IllegalAccessException, NoSuchMethodException, InstantiationException {
+
+        final MessageDigest cacheKeyPrefix = cache == null ? null
+                : this.createCacheKeyPrefix(projectClassLoader, addDefaultConstructor, enforcePropertyRestrictions);
+        // created on the first cache miss only
+        ClassFileTransformer transformer = null;
+        final List<String> writtenFiles = new ArrayList<>();
+        final List<String> notEnhancedFiles = new ArrayList<>();
+        int unchanged = 0;
+        int skipped = 0;
+        int cached = 0;
+
+        final Thread thread = Thread.currentThread();
+        final ClassLoader previousClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(projectClassLoader);
+        try {
+            for (final String classFile : classFiles) {
+                final Path path = Path.of(classFile);
+                final byte[] bytes;
+                try {
+                    bytes = Files.readAllBytes(path);
+                } catch (NoSuchFileException ignored) {
+                    // not compiled (yet)
+                    ++skipped;
+                    continue;
+                }
+                if (isEnhanced(bytes)) {
+                    ++unchanged;
+                    continue;
+                }
+
+                final String[] classNames = readClassNames(bytes);
+                final String cacheKey = cacheKeyPrefix == null ? null
+                        : getCacheKey(cacheKeyPrefix, projectClassLoader, bytes, classNames[1]);
+                if (cacheKey != null) {
+                    final byte[] enhanced = cache.get(cacheKey);
+                    if (enhanced != null) {
+                        write(path, enhanced);
+                        writtenFiles.add(classFile);
+                        ++cached;
+                        continue;
+                    }
+                }
+
+                if (transformer == null) {
+                    transformer = this.createTransformer(projectClassLoader, addDefaultConstructor, enforcePropertyRestrictions);
+                }
+                final byte[] enhanced;
+                try {
+                    enhanced = transformer.transform(projectClassLoader, classNames[0], null, null, bytes);
+                } catch (IllegalClassFormatException e) {
+                    throw new IOException("invalid class file " + classFile, e);
+                }
+                if (enhanced == null) {
+                    if (isPersistenceAnnotated(bytes)) {
+                        notEnhancedFiles.add(classFile);
+                    }
+                    ++skipped;
+                } else if (Arrays.equals(bytes, enhanced)) {
+                    ++unchanged;
+                } else {
+                    write(path, enhanced);
+                    writtenFiles.add(classFile);
+                    if (cacheKey != null) {
+                        cache.put(cacheKey, enhanced);
+                    }
+                }
+            }
+        } finally {
+            thread.setContextClassLoader(previousClassLoader);
+        }
+        if (!notEnhancedFiles.isEmpty()) {
+            throw new IOException("persistent classes not enhanced (see the log for the enhancer's warnings): " + notEnhancedFiles);
+        }
+        return new EnhancementResult(unchanged, skipped, cached, writtenFiles);
+    }
+
+    /**
+     * Create a transformer enhancing class bytes in memory.<br/>
+     * <br/>
+     * The transformer returns null for classes not to be enhanced or failing to be enhanced, see
+     * {@link #isPersistenceAnnotated(byte[])}. Metadata is read from classes loaded by a temporary ClassLoader
+     * delegating to the provided ClassLoader, which has to be passed to the transformer and set as context
+     * ClassLoader while transforming: OpenJPA ignores classes loaded by its temporary ClassLoader.
+     *
+     * @param projectClassLoader          ClassLoader resolving the classes to enhance
+     * @param addDefaultConstructor       .
+     * @param enforcePropertyRestrictions .
+     * @return the transformer
+     * @throws InvocationTargetException .
+     * @throws IllegalAccessException    .
+     * @throws NoSuchMethodException     .
+     * @throws InstantiationException    .
+     */
+    public ClassFileTransformer createTransformer(final ClassLoader projectClassLoader,
+                                                  final boolean addDefaultConstructor,
+                                                  final boolean enforcePropertyRestrictions)
+            throws InvocationTargetException, IllegalAccessException, NoSuchMethodException, InstantiationException {
+
+        final Thread thread = Thread.currentThread();
+        final ClassLoader previousClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(projectClassLoader);
+        try {
+            // the transformer always loads classes by a temporary ClassLoader, see createTemporaryClassLoader
+            final Object options = this.createOptions(addDefaultConstructor, enforcePropertyRestrictions);
+            final Object jpaConfig = this.createConfig();
+            final Object repository = this.configParamClass.getMethod("newMetaDataRepositoryInstance").invoke(jpaConfig);
+            return (ClassFileTransformer) this.transformerClass
+                    .getConstructor(this.repositoryClass, this.optionsClass, ClassLoader.class)
+                    .newInstance(repository, options, this.createTemporaryClassLoader(projectClassLoader));
+        } finally {
+            thread.setContextClassLoader(previousClassLoader);
+        }
+    }
+
+    /**
+     * @return location and version of the OpenJPA library
+     */
+    public String getEnhancerVersion() {
+        final String implementationVersion = this.enhancerClass.getPackage() == null ? null
+                : this.enhancerClass.getPackage().getImplementationVersion();
+        final CodeSource codeSource = this.enhancerClass.getProtectionDomain().getCodeSource();
+        final URL location = codeSource == null ? null : codeSource.getLocation();
+        if (location == null) {
+            return OPEN_JPA_ENHANCER_CLASS_FQ + '@' + implementationVersion;
+        }
+        try {
+            final File file = new File(location.toURI());
+            return file.getPath() + '@' + implementationVersion + '@' + file.length() + '@' + file.lastModified();
+        } catch (URISyntaxException | IllegalArgumentException ignored) {
+            return location + "@" + implementationVersion;
+        }
+    }
+
+    /**
+     * @param bytes class file content
+     * @return true if the class is enhanced, i.e. implements the PersistenceCapable interface
+     */
+    public static boolean isEnhanced(final byte[] bytes) {
+        return ClassFileParser.implementsInterface(bytes, PERSISTENCE_CAPABLE);
+    }
+
+    /**
+     * @param bytes class file content
+     * @return true if the class is annotated as entity, mapped superclass or embeddable, i.e. has to be enhanced
+     */
+    public static boolean isPersistenceAnnotated(final byte[] bytes) {
+        return PERSISTENCE_ANNOTATIONS.isAnnotated(bytes);
+    }
+
+    /**
+     * OpenJPA's TemporaryClassLoader if available, defining the project classes again instead of delegating.
+     */
+    private ClassLoader createTemporaryClassLoader(final ClassLoader projectClassLoader)
+            throws InvocationTargetException, IllegalAccessException, NoSuchMethodException, InstantiationException {
+        if (this.temporaryClassLoaderClass == null) {
+            return new URLClassLoader(new URL[0], projectClassLoader);
+        }
+        return (ClassLoader) this.temporaryClassLoaderClass.getConstructor(ClassLoader.class).newInstance(projectClassLoader);
+    }
+
+    private Object createOptions(final boolean addDefaultConstructor,
+                                 final boolean enforcePropertyRestrictions)
+            throws IllegalAccessException, InstantiationException, NoSuchMethodException, InvocationTargetException {
+
+        final Object options = this.optionsClass.getDeclaredConstructor().newInstance();
+        final Method method = this.optionsClass.getMethod("setProperty", String.class, boolean.class);
+        method.invoke(options, OPTION_ADD_DEFAULT_CONSTRUCTOR, addDefaultConstructor);
+        method.invoke(options, OPTION_ENFORCE_PROPERTY_RESTRICTION, enforcePropertyRestrictions);
+        return options;
+    }
+
+    private Object createConfig() throws IllegalAccessException, InstantiationException, NoSuchMethodException, InvocationTargetException {
+        final Object config = this.configClass.getDeclaredConstructor().newInstance();
+        final Method setSpecification = this.configClass.getMethod("setSpecification", String.class);
+        setSpecification.invoke(config, "jpa");
+        return config;
+    }
+
+    //
+    // Cache keys
+    //
+
+    /**
+     * Hash what enhancing depends on besides the class and its superclasses: the OpenJPA library, the options
+     * and the mapping descriptors visible to the project.
+     */
+    private MessageDigest createCacheKeyPrefix(final ClassLoader projectClassLoader,
+                                               final boolean addDefaultConstructor,
+                                               final boolean enforcePropertyRestrictions) throws IOException {
+        final MessageDigest digest = newDigest();
+        digest.update(CACHE_KEY_VERSION.getBytes(StandardCharsets.UTF_8));
+        digest.update(this.getEnhancerHash());
+        digest.update(new byte[]{(byte) (addDefaultConstructor ? 1 : 0), (byte) (enforcePropertyRestrictions ? 1 : 0)});
+        for (final String resourceName : MAPPING_RESOURCES) {
+            final Enumeration<URL> resources = projectClassLoader.getResources(resourceName);
+            while (resources.hasMoreElements()) {
+                try (InputStream in = resources.nextElement().openStream()) {
+                    updateWithLength(digest, in.readAllBytes());
+                }
+            }
+        }
+        return digest;
+    }
+
+    /**
+     * @return hex encoded hash of the prefix, the class and the superclasses resolved by the project ClassLoader
+     */
+    private static String getCacheKey(final MessageDigest prefix,
+                                      final ClassLoader projectClassLoader,
+                                      final byte[] bytes,
+                                      final String superClassName) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = (MessageDigest) prefix.clone();
+        } catch (CloneNotSupportedException ignored) {
+            return null;
+        }
+        updateWithLength(digest, bytes);
+        // enhancing depends on the persistence of the superclasses
+        String current = superClassName;
+        for (int depth = 0; depth < MAX_SUPERCLASS_DEPTH && current != null && !current.startsWith("java/"); ++depth) {
+            final byte[] superClassBytes;
+            try (InputStream in = projectClassLoader.getResourceAsStream(current + ".class")) {
+                if (in == null) {
+                    break;
+                }
+                superClassBytes = in.readAllBytes();
+            }
+            updateWithLength(digest, superClassBytes);
+            current = readClassNames(superClassBytes)[1];
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private byte[] getEnhancerHash() throws IOException {
+        byte[] hash = this.enhancerHash;
+        if (hash == null) {
+            final MessageDigest digest = newDigest();
+            final CodeSource codeSource = this.enhancerClass.getProtectionDomain().getCodeSource();
+            final URL location = codeSource == null ? null : codeSource.getLocation();
+            Path jar = null;
+            try {
+                jar = location == null ? null : Path.of(location.toURI());
+            } catch (URISyntaxException | IllegalArgumentException ignored) {
+                // not a local file
+            }
+            if (jar != null && Files.isRegularFile(jar)) {
+                // content, the same library is usually located in different places per project
+                try (InputStream in = Files.newInputStream(jar)) {
+                    final byte[] buffer = new byte[64 * 1024];
+                    for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                        digest.update(buffer, 0, read);
+                    }
+                }
+            } else {
+                digest.update(this.getEnhancerVersion().getBytes(StandardCharsets.UTF_8));
+            }
+            hash = digest.digest();
+            this.enhancerHash = hash;
+        }
+        return hash;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void updateWithLength(final MessageDigest digest, final byte[] bytes) {
+        final int length = bytes.length;
+        digest.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+        digest.update(bytes);
+    }
+
+    //
+    // Helper methods
+    //
+
+    static void write(final Path path, final byte[] bytes) throws IOException {
+        final Path tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, bytes);
+            try {
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ignored) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Read the internal name of a class (e.g. 'a/b/C$D') from its constant pool.
+     *
+     * @param bytes class file content
+     * @return internal class name
+     * @throws IOException if the class file is malformed
+     */
+    static String getClassName(final byte[] bytes) throws IOException {
+        return readClassNames(bytes)[0];
+    }
+
+    /**
+     * @param bytes class file content
+     * @return internal names of the class and its superclass (null for java/lang/Object)
+     * @throws IOException if the class file is malformed
+     */
+    private static String[] readClassNames(final byte[] bytes) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != 0xCAFEBABE) {
+            throw new IOException("not a class file");
+        }
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+        final int constantCount = in.readUnsignedShort();
+        final String[] utf8 = new String[constantCount];
+        final int[] classNameIndex = new int[constantCount];
+        for (int i = 1; i < constantCount; ++i) {
+            final int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1: // Utf8
+                    utf8[i] = in.readUTF();
+                    break;
+                case 7: // Class
+                    classNameIndex[i] = in.readUnsignedShort();
+                    break;
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    in.skipBytes(2);
+                    break;
+                case 15: // MethodHandle
+                    in.skipBytes(3);
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    in.skipBytes(4);
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    in.skipBytes(8);
+                    ++i;
+                    break;
+                default:
+                    throw new IOException("invalid constant pool tag " + tag);
+            }
+        }
+        in.readUnsignedShort();
+        final int thisClass = in.readUnsignedShort();
+        if (thisClass <= 0 || thisClass >= constantCount || utf8[classNameIndex[thisClass]] == null) {
+            throw new IOException("invalid this_class index " + thisClass);
+        }
+        final int superClass = in.readUnsignedShort();
+        if (superClass < 0 || superClass >= constantCount) {
+            throw new IOException("invalid super_class index " + superClass);
+        }
+        return new String[]{utf8[classNameIndex[thisClass]], superClass == 0 ? null : utf8[classNameIndex[superClass]]};
+    }
+
+}
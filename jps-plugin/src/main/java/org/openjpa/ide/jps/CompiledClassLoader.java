@@ -0,0 +1,65 @@
+package org.openjpa.ide.jps;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Map;
+
+/**
+ * ClassLoader resolving classes compiled in the current round from memory, before they are written to the
+ * output directories, and all other classes from the compilation classpath.<br/>
+ * <br/>
+ * The class files of the current round are provided as resource streams as well, read by the temporary
+ * ClassLoader of the enhancer.
+ */
+final class CompiledClassLoader extends URLClassLoader {
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    private final Map<String, byte[]> compiledClasses;
+
+    /**
+     * @param urls            compilation classpath and output directories
+     * @param compiledClasses class bytes by fully qualified class name
+     */
+    CompiledClassLoader(final URL[] urls, final Map<String, byte[]> compiledClasses) {
+        super(urls, ClassLoader.getPlatformClassLoader());
+        this.compiledClasses = compiledClasses;
+    }
+
+    /**
+     * Replace the bytes of a class not loaded yet.
+     *
+     * @param className fully qualified class name
+     * @param bytes     class bytes
+     */
+    void update(final String className, final byte[] bytes) {
+        this.compiledClasses.put(className, bytes);
+    }
+
+    @Override
+    protected Class<?> findClass(final String name) throws ClassNotFoundException {
+        // output directories may still hold the class files of the previous build
+        final byte[] bytes = this.compiledClasses.get(name);
+        if (bytes != null) {
+            return this.defineClass(name, bytes, 0, bytes.length);
+        }
+        return super.findClass(name);
+    }
+
+    @Override
+    public InputStream getResourceAsStream(final String name) {
+        if (name.endsWith(".class")) {
+            final String className = name.substring(0, name.length() - ".class".length()).replace('/', '.');
+            final byte[] bytes = this.compiledClasses.get(className);
+            if (bytes != null) {
+                return new ByteArrayInputStream(bytes);
+            }
+        }
+        return super.getResourceAsStream(name);
+    }
+
+}
@@ -0,0 +1,21 @@
+package org.openjpa.ide.jps;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jps.incremental.BuilderService;
+import org.jetbrains.jps.incremental.ModuleLevelBuilder;
+
+/**
+ * Provides the enhancer to the external build process.
+ */
+public final class OpenJpaBuilderService extends BuilderService {
+
+    @NotNull
+    @Override
+    public List<? extends ModuleLevelBuilder> createModuleLevelBuilders() {
+        return Collections.singletonList(new OpenJpaEnhancerBuilder());
+    }
+
+}
@@ -0,0 +1,164 @@
+package org.openjpa.ide.jps;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.IllegalClassFormatException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jps.ModuleChunk;
+import org.jetbrains.jps.ProjectPaths;
+import org.jetbrains.jps.incremental.BinaryContent;
+import org.jetbrains.jps.incremental.BuilderCategory;
+import org.jetbrains.jps.incremental.CompileContext;
+import org.jetbrains.jps.incremental.CompiledClass;
+import org.jetbrains.jps.incremental.ModuleBuildTarget;
+import org.jetbrains.jps.incremental.instrumentation.ClassProcessingBuilder;
+import org.jetbrains.jps.incremental.instrumentation.InstrumentationClassFinder;
+import org.jetbrains.jps.incremental.messages.BuildMessage;
+import org.jetbrains.jps.incremental.messages.CompilerMessage;
+import org.openjpa.ide.idea.integration.openjpa.OpenJpaEnhancerRunner;
+
+/**
+ * Enhances annotated persistent classes in memory as they are produced by the compiler, before they are
+ * written to the output directories (like the '@NotNull' instrumentation).<br/>
+ * <br/>
+ * Classes mapped by metadata files only are left to the enhancer compile task of the IDE.
+ */
+public final class OpenJpaEnhancerBuilder extends ClassProcessingBuilder {
+
+    private static final String BUILDER_NAME = "OpenJPA Enhancer";
+
+    public OpenJpaEnhancerBuilder() {
+        super(BuilderCategory.CLASS_INSTRUMENTER);
+    }
+
+    @NotNull
+    @Override
+    public String getPresentableName() {
+        return BUILDER_NAME;
+    }
+
+    @Override
+    protected String getProgressMessage() {
+        return "Enhancing persistent classes...";
+    }
+
+    @Override
+    protected boolean isEnabled(final CompileContext context, final ModuleChunk chunk) {
+        return OpenJpaJpsSettings.getSettings(context.getProjectDescriptor().getProject()).isEnhanced(chunk);
+    }
+
+    @Override
+    protected ExitCode performBuild(final CompileContext context,
+                                    final ModuleChunk chunk,
+                                    final InstrumentationClassFinder finder,
+                                    final OutputConsumer outputConsumer) {
+
+        final OpenJpaJpsSettings settings = OpenJpaJpsSettings.getSettings(context.getProjectDescriptor().getProject());
+        final Map<String, CompiledClass> compiledClasses = outputConsumer.getCompiledClasses();
+        final Map<String, byte[]> classBytes = new ConcurrentHashMap<>();
+        final List<CompiledClass> candidates = new ArrayList<>();
+        for (final CompiledClass compiledClass : compiledClasses.values()) {
+            final String className = compiledClass.getClassName();
+            if (className == null) {
+                continue;
+            }
+            final byte[] bytes = compiledClass.getContent().toByteArray();
+            classBytes.put(className, bytes);
+            // a class not annotated as persistent or not selected in the settings is not enhanced
+            // (nested classes are selected by their qualified name, like in the IDE)
+            if (settings.isClassEnhanced(className.replace('$', '.'))
+                    && OpenJpaEnhancerRunner.isPersistenceAnnotated(bytes) && !OpenJpaEnhancerRunner.isEnhanced(bytes)) {
+                candidates.add(compiledClass);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return ExitCode.NOTHING_DONE;
+        }
+
+        final Thread thread = Thread.currentThread();
+        final ClassLoader previousClassLoader = thread.getContextClassLoader();
+        try (CompiledClassLoader classLoader = new CompiledClassLoader(getClasspathUrls(chunk), classBytes)) {
+            final OpenJpaEnhancerRunner runner;
+            try {
+                runner = new OpenJpaEnhancerRunner(classLoader);
+            } catch (final ClassNotFoundException | LinkageError e) {
+                context.processMessage(new CompilerMessage(BUILDER_NAME, BuildMessage.Kind.WARNING,
+                        "OpenJPA enhancer not found in the classpath of " + chunk.getPresentableShortName()));
+                return ExitCode.NOTHING_DONE;
+            }
+
+            final ClassFileTransformer transformer =
+                    runner.createTransformer(classLoader, settings.isAddDefaultConstructor(), settings.isEnforcePropertyRestrictions());
+            thread.setContextClassLoader(classLoader);
+            int count = 0;
+            final List<String> notEnhanced = new ArrayList<>();
+            for (final CompiledClass compiledClass : candidates) {
+                final String className = compiledClass.getClassName();
+                final byte[] enhanced = transformer.transform(classLoader, className.replace('.', '/'), null, null,
+                        classBytes.get(className));
+                if (enhanced == null) {
+                    // OpenJPA only logs why it did not enhance a class
+                    notEnhanced.add(className);
+                } else {
+                    compiledClass.setContent(new BinaryContent(enhanced));
+                    classLoader.update(className, enhanced);
+                    ++count;
+                }
+            }
+            if (!notEnhanced.isEmpty()) {
+                context.processMessage(new CompilerMessage(BUILDER_NAME, BuildMessage.Kind.ERROR,
+                        "OpenJPA enhancer: persistent classes not enhanced in " + chunk.getPresentableShortName()
+                                + " (see the build log for the enhancer's warnings): " + notEnhanced));
+                return ExitCode.ABORT;
+            }
+
+            if (count > 0) {
+                context.processMessage(new CompilerMessage(BUILDER_NAME, BuildMessage.Kind.INFO,
+                        "OpenJPA enhancer: " + count + " classes enhanced in " + chunk.getPresentableShortName()));
+                return ExitCode.OK;
+            }
+            return ExitCode.NOTHING_DONE;
+        } catch (final IOException | IllegalClassFormatException | InvocationTargetException | IllegalAccessException
+                       | NoSuchMethodException | InstantiationException | RuntimeException e) {
+            final Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+            context.processMessage(new CompilerMessage(BUILDER_NAME, BuildMessage.Kind.ERROR,
+                    "Error enhancing classes of " + chunk.getPresentableShortName() + ": " + cause));
+            return ExitCode.ABORT;
+        } finally {
+            thread.setContextClassLoader(previousClassLoader);
+        }
+    }
+
+    //
+    // Helper methods
+    //
+
+    private static URL[] getClasspathUrls(final ModuleChunk chunk) throws MalformedURLException {
+        final Collection<File> files = new LinkedHashSet<>();
+        for (final ModuleBuildTarget target : chunk.getTargets()) {
+            final File outputDir = target.getOutputDir();
+            if (outputDir != null) {
+                files.add(outputDir);
+            }
+        }
+        files.addAll(ProjectPaths.getCompilationClasspathFiles(chunk, chunk.containsTests(), false, false));
+
+        final List<URL> urls = new ArrayList<>(files.size());
+        for (final File file : files) {
+            urls.add(file.toURI().toURL());
+        }
+        return urls.toArray(new URL[0]);
+    }
+
+}
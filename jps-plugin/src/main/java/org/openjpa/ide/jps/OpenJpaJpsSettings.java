@@ -0,0 +1,214 @@
+package org.openjpa.ide.jps;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+import com.intellij.util.xmlb.annotations.XCollection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jps.ModuleChunk;
+import org.jetbrains.jps.model.JpsElementFactory;
+import org.jetbrains.jps.model.JpsProject;
+import org.jetbrains.jps.model.JpsSimpleElement;
+import org.jetbrains.jps.model.ex.JpsElementChildRoleBase;
+import org.jetbrains.jps.model.module.JpsModule;
+import org.openjpa.ide.idea.integration.openjpa.ClassNameMatcher;
+
+/**
+ * Enhancer settings of a project as seen by the external build process.<br/>
+ * <br/>
+ * Read from the plugin's project configuration ('openjpa-plugin.xml'), hence the properties have to match
+ * the ones of {@code org.openjpa.ide.idea.PersistentState}.
+ */
+public final class OpenJpaJpsSettings {
+
+    static final String COMPONENT_NAME = "OpenJpaConfiguration";
+
+    static final String CONFIG_FILE_NAME = "openjpa-plugin.xml";
+
+    private static final String ENHANCER_SUPPORT_OPENJPA = "OPENJPA";
+
+    private static final JpsElementChildRoleBase<JpsSimpleElement<OpenJpaJpsSettings>> ROLE =
+            JpsElementChildRoleBase.create("OpenJPA enhancer settings");
+
+    private boolean enhancerEnabled = true;
+    private boolean includeTestClasses = true;
+    private boolean addDefaultConstructor = true;
+    private boolean enforcePropertyRestrictions = true;
+    private boolean enhanceAllPersistentClasses = true;
+    private boolean buildProcessEnhancer = false;
+
+    @XCollection(elementTypes = String.class)
+    private Collection<String> enabledModules = new ArrayList<>();
+
+    @XCollection(elementTypes = String.class)
+    private Collection<String> enabledFiles = new ArrayList<>();
+
+    @XCollection(elementTypes = String.class)
+    private Collection<String> disabledFiles = new ArrayList<>();
+
+    @XCollection(elementTypes = String.class)
+    private Collection<String> includePatterns = new ArrayList<>();
+
+    @XCollection(elementTypes = String.class)
+    private Collection<String> excludePatterns = new ArrayList<>();
+
+    /**
+     * Compiled from {@link #includePatterns} and {@link #excludePatterns} by their setters
+     */
+    private ClassNameMatcher classNameMatcher = ClassNameMatcher.NONE;
+
+    private String enhancerSupport = ENHANCER_SUPPORT_OPENJPA;
+
+    //
+    // Project extension access
+    //
+
+    /**
+     * @param project the project
+     * @return settings of the project, defaults if not configured
+     */
+    @NotNull
+    public static OpenJpaJpsSettings getSettings(@NotNull final JpsProject project) {
+        final JpsSimpleElement<OpenJpaJpsSettings> element = project.getContainer().getChild(ROLE);
+        return element == null ? new OpenJpaJpsSettings() : element.getData();
+    }
+
+    static void setSettings(@NotNull final JpsProject project, @NotNull final OpenJpaJpsSettings settings) {
+        project.getContainer().setChild(ROLE, JpsElementFactory.getInstance().createSimpleElement(settings));
+    }
+
+    /**
+     * @param chunk modules compiled together
+     * @return true if the classes of the chunk are to be enhanced in the build process
+     */
+    boolean isEnhanced(@NotNull final ModuleChunk chunk) {
+        if (!this.enhancerEnabled || !this.buildProcessEnhancer || !ENHANCER_SUPPORT_OPENJPA.equals(this.enhancerSupport)
+                || (chunk.containsTests() && !this.includeTestClasses)) {
+            return false;
+        }
+        for (final JpsModule module : chunk.getModules()) {
+            if (this.enabledModules.contains(module.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same selection as {@code org.openjpa.ide.idea.StateSnapshot#isClassEnabled}, applied unless all
+     * persistent classes are enhanced.
+     *
+     * @param className fully qualified class name
+     * @return true if the class is selected for enhancement
+     */
+    boolean isClassEnhanced(@NotNull final String className) {
+        if (this.enhanceAllPersistentClasses || this.enabledFiles.contains(className)) {
+            return true;
+        }
+        return !this.disabledFiles.contains(className) && this.classNameMatcher.matches(className);
+    }
+
+    //
+    // Properties
+    //
+
+    public boolean isEnhancerEnabled() {
+        return this.enhancerEnabled;
+    }
+
+    public void setEnhancerEnabled(final boolean enhancerEnabled) {
+        this.enhancerEnabled = enhancerEnabled;
+    }
+
+    public boolean isIncludeTestClasses() {
+        return this.includeTestClasses;
+    }
+
+    public void setIncludeTestClasses(final boolean includeTestClasses) {
+        this.includeTestClasses = includeTestClasses;
+    }
+
+    public boolean isAddDefaultConstructor() {
+        return this.addDefaultConstructor;
+    }
+
+    public void setAddDefaultConstructor(final boolean addDefaultConstructor) {
+        this.addDefaultConstructor = addDefaultConstructor;
+    }
+
+    public boolean isEnforcePropertyRestrictions() {
+        return this.enforcePropertyRestrictions;
+    }
+
+    public void setEnforcePropertyRestrictions(final boolean enforcePropertyRestrictions) {
+        this.enforcePropertyRestrictions = enforcePropertyRestrictions;
+    }
+
+    public boolean isEnhanceAllPersistentClasses() {
+        return this.enhanceAllPersistentClasses;
+    }
+
+    public void setEnhanceAllPersistentClasses(final boolean enhanceAllPersistentClasses) {
+        this.enhanceAllPersistentClasses = enhanceAllPersistentClasses;
+    }
+
+    public boolean isBuildProcessEnhancer() {
+        return this.buildProcessEnhancer;
+    }
+
+    public void setBuildProcessEnhancer(final boolean buildProcessEnhancer) {
+        this.buildProcessEnhancer = buildProcessEnhancer;
+    }
+
+    public Collection<String> getEnabledModules() {
+        return new LinkedHashSet<>(this.enabledModules);
+    }
+
+    public void setEnabledModules(final Collection<String> enabledModules) {
+        this.enabledModules = new LinkedHashSet<>(enabledModules);
+    }
+
+    public Collection<String> getEnabledFiles() {
+        return new LinkedHashSet<>(this.enabledFiles);
+    }
+
+    public void setEnabledFiles(final Collection<String> enabledFiles) {
+        this.enabledFiles = new LinkedHashSet<>(enabledFiles);
+    }
+
+    public Collection<String> getDisabledFiles() {
+        return new LinkedHashSet<>(this.disabledFiles);
+    }
+
+    public void setDisabledFiles(final Collection<String> disabledFiles) {
+        this.disabledFiles = new LinkedHashSet<>(disabledFiles);
+    }
+
+    public Collection<String> getIncludePatterns() {
+        return new LinkedHashSet<>(this.includePatterns);
+    }
+
+    public void setIncludePatterns(final Collection<String> includePatterns) {
+        this.includePatterns = new LinkedHashSet<>(includePatterns);
+        this.classNameMatcher = ClassNameMatcher.compile(this.includePatterns, this.excludePatterns);
+    }
+
+    public Collection<String> getExcludePatterns() {
+        return new LinkedHashSet<>(this.excludePatterns);
+    }
+
+    public void setExcludePatterns(final Collection<String> excludePatterns) {
+        this.excludePatterns = new LinkedHashSet<>(excludePatterns);
+        this.classNameMatcher = ClassNameMatcher.compile(this.includePatterns, this.excludePatterns);
+    }
+
+    public String getEnhancerSupport() {
+        return this.enhancerSupport;
+    }
+
+    public void setEnhancerSupport(final String enhancerSupport) {
+        this.enhancerSupport = enhancerSupport;
+    }
+
+}
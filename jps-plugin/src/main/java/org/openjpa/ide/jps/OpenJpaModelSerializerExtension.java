@@ -0,0 +1,38 @@
+package org.openjpa.ide.jps;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.intellij.util.xmlb.XmlSerializer;
+import org.jdom.Element;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jps.model.JpsProject;
+import org.jetbrains.jps.model.serialization.JpsModelSerializerExtension;
+import org.jetbrains.jps.model.serialization.JpsProjectExtensionSerializer;
+
+/**
+ * Loads the enhancer settings of the IDE plugin into the model of the external build process.
+ */
+public final class OpenJpaModelSerializerExtension extends JpsModelSerializerExtension {
+
+    @NotNull
+    @Override
+    public List<? extends JpsProjectExtensionSerializer> getProjectExtensionSerializers() {
+        return Collections.singletonList(new JpsProjectExtensionSerializer(OpenJpaJpsSettings.CONFIG_FILE_NAME,
+                OpenJpaJpsSettings.COMPONENT_NAME) {
+
+            @Override
+            public void loadExtension(@NotNull final JpsProject project, @NotNull final Element componentTag) {
+                final OpenJpaJpsSettings settings = new OpenJpaJpsSettings();
+                XmlSerializer.deserializeInto(componentTag, settings);
+                OpenJpaJpsSettings.setSettings(project, settings);
+            }
+
+            @Override
+            public void loadExtensionWithDefaultSettings(@NotNull final JpsProject project) {
+                OpenJpaJpsSettings.setSettings(project, new OpenJpaJpsSettings());
+            }
+        });
+    }
+
+}
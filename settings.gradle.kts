@@ -5,4 +5,5 @@ pluginManagement {
     }
 }
 
-rootProject.name = "openjpa-idea-plugin"
\ No newline at end of file
+rootProject.name = "openjpa-idea-plugin"
+include("jps-plugin")
@@ -0,0 +1,195 @@
+package org.openjpa.ide.idea;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * Generates the inputs of the benchmarks: metadata files, output directory trees, jars and compiled entity classes.
+ */
+public final class BenchmarkCorpus {
+
+    public static final String ENTITY_PACKAGE = "org.openjpa.bench.model";
+
+    private BenchmarkCorpus() {
+        // no instantiation allowed
+    }
+
+    /**
+     * JDO metadata ('jdo/package/class') with the provided number of classes, spread over packages of 100 classes.
+     */
+    public static byte[] jdoMetadata(final int classes) {
+        final StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<jdo>\n");
+        for (int i = 0; i < classes; ++i) {
+            if (i % 100 == 0) {
+                if (i > 0) {
+                    sb.append("  </package>\n");
+                }
+                sb.append("  <package name=\"").append(ENTITY_PACKAGE).append(".p").append(i / 100).append("\">\n");
+            }
+            sb.append("    <class name=\"Entity").append(i).append("\">\n")
+                    .append("      <field name=\"id\" primary-key=\"true\"/>\n")
+                    .append("    </class>\n");
+        }
+        if (classes > 0) {
+            sb.append("  </package>\n");
+        }
+        return sb.append("</jdo>\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * JPA orm metadata ('entity-mappings/entity') with the provided number of classes.
+     */
+    public static byte[] jpaMetadata(final int classes) {
+        final StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<entity-mappings xmlns=\"http://java.sun.com/xml/ns/persistence/orm\" version=\"2.0\">\n");
+        for (int i = 0; i < classes; ++i) {
+            final String element = i % 10 == 0 ? "mapped-superclass" : i % 10 == 1 ? "embeddable" : "entity";
+            sb.append("  <").append(element).append(" class=\"").append(ENTITY_PACKAGE).append(".Entity").append(i).append("\">\n")
+                    .append("    <attributes><basic name=\"name\"/></attributes>\n")
+                    .append("  </").append(element).append(">\n");
+        }
+        return sb.append("</entity-mappings>\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Output directory with class files in nested packages and some metadata files.
+     *
+     * @param root  directory to create the files in
+     * @param files number of class files
+     */
+    public static void outputTree(final Path root, final int files) throws IOException {
+        for (int i = 0; i < files; ++i) {
+            final Path dir = root.resolve("org/openjpa/bench/p" + (i % 50) + "/q" + (i % 7));
+            Files.createDirectories(dir);
+            Files.write(dir.resolve("Class" + i + ".class"), new byte[64]);
+            if (i % 100 == 0) {
+                Files.write(dir.resolve("orm" + i + ".xml"), jpaMetadata(1));
+            }
+        }
+    }
+
+    /**
+     * Jars containing a single resource each.
+     *
+     * @param dir  directory to create the jars in
+     * @param jars number of jars
+     * @return jar files
+     */
+    public static List<Path> jars(final Path dir, final int jars) throws IOException {
+        final List<Path> files = new ArrayList<>(jars);
+        for (int i = 0; i < jars; ++i) {
+            final Path jar = dir.resolve("lib" + i + ".jar");
+            try (OutputStream out = Files.newOutputStream(jar); JarOutputStream jarOut = new JarOutputStream(out)) {
+                jarOut.putNextEntry(new JarEntry("org/openjpa/bench/lib" + i + "/Marker.txt"));
+                jarOut.write(("jar " + i).getBytes(StandardCharsets.UTF_8));
+                jarOut.closeEntry();
+            }
+            files.add(jar);
+        }
+        return files;
+    }
+
+    /**
+     * Compile annotated entity classes (javax.persistence), the enhancer has to be on the classpath of the benchmark.
+     *
+     * @param sourceDir source directory to generate the sources in
+     * @param classDir  directory to compile the classes to
+     * @param entities  number of entities
+     * @return class file paths
+     */
+    public static List<Path> entities(final Path sourceDir, final Path classDir, final int entities) throws IOException {
+        final String packagePath = ENTITY_PACKAGE.replace('.', '/');
+        final Path packageDir = Files.createDirectories(sourceDir.resolve(packagePath));
+        final List<String> args = new ArrayList<>();
+        args.add("-d");
+        args.add(classDir.toString());
+        args.add("-cp");
+        args.add(System.getProperty("java.class.path"));
+        args.add("-proc:none");
+        for (int i = 0; i < entities; ++i) {
+            final String name = "Entity" + i;
+            final Path source = packageDir.resolve(name + ".java");
+            Files.writeString(source, "package " + ENTITY_PACKAGE + ";\n\n"
+                    + "@javax.persistence.Entity\n"
+                    + "public class " + name + " {\n"
+                    + "    @javax.persistence.Id private long id;\n"
+                    + "    private String name;\n"
+                    + "    private int version;\n"
+                    + "    public long getId() { return id; }\n"
+                    + "    public String getName() { return name; }\n"
+                    + "    public void setName(String name) { this.name = name; }\n"
+                    + "}\n");
+            args.add(source.toString());
+        }
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler.run(null, null, null, args.toArray(new String[0])) != 0) {
+            throw new IllegalStateException("compiling entities failed");
+        }
+        final List<Path> classFiles = new ArrayList<>(entities);
+        for (int i = 0; i < entities; ++i) {
+            classFiles.add(classDir.resolve(packagePath).resolve("Entity" + i + ".class"));
+        }
+        return classFiles;
+    }
+
+    /**
+     * Copy a directory tree, replacing existing files.
+     */
+    public static void copy(final Path source, final Path target) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.copy(file, target.resolve(source.relativize(file).toString()), StandardCopyOption.REPLACE_EXISTING);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Delete a directory tree.
+     */
+    public static void delete(final Path root) {
+        if (root == null || !Files.exists(root)) {
+            return;
+        }
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package org.openjpa.ide.idea;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Index-free discovery of annotated classes ({@link ClassFileScanner}) in an output directory of compiled entities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ClassFileScannerBenchmark {
+
+    @Param({"100", "1000"})
+    public int entities;
+
+    private Path root;
+
+    private Path outputDir;
+
+    private OutputSnapshot snapshot;
+
+    private ClassFileScanner scanner;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.root = Files.createTempDirectory("openjpa-bench-scan");
+        this.outputDir = Files.createDirectories(this.root.resolve("classes"));
+        BenchmarkCorpus.entities(this.root.resolve("src"), this.outputDir, this.entities);
+        this.snapshot = OutputSnapshot.of(this.outputDir);
+        this.scanner = new ClassFileScanner(List.of(PersistenceApi.JPA.getAnnotationClassNames()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkCorpus.delete(this.root);
+    }
+
+    @Benchmark
+    public List<PersistentClass> scan() {
+        return this.scanner.scan(this.outputDir, this.snapshot);
+    }
+
+}
@@ -0,0 +1,62 @@
+package org.openjpa.ide.idea;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Construction of a module ClassLoader over N library jars and a resource lookup in the last jar,
+ * as done by {@link org.openjpa.ide.idea.integration.ClassLoaderFactory} (uncached) for every enhanced module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ClassLoaderBenchmark {
+
+    @Param({"10", "100", "500"})
+    public int jars;
+
+    private Path dir;
+
+    private URL[] urls;
+
+    private String lastResource;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.dir = Files.createTempDirectory("openjpa-bench-jars");
+        final List<Path> files = BenchmarkCorpus.jars(this.dir, this.jars);
+        this.urls = new URL[files.size()];
+        for (int i = 0; i < files.size(); ++i) {
+            this.urls[i] = files.get(i).toUri().toURL();
+        }
+        this.lastResource = "org/openjpa/bench/lib" + (this.jars - 1) + "/Marker.txt";
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkCorpus.delete(this.dir);
+    }
+
+    @Benchmark
+    public URL createAndLookup() throws IOException {
+        try (URLClassLoader classLoader = new URLClassLoader(this.urls, null)) {
+            return classLoader.getResource(this.lastResource);
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+package org.openjpa.ide.idea;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Output directory based discovery over a generated multi-module project (see {@link MultiModuleFixture}):
+ * scan of every module's output directory, parsing the xml mappings found and looking up the mapped class files.<br/>
+ * <br/>
+ * Covers the part of {@link Computable#getProcessingItems} independent of the IDE's PSI and index,
+ * for those the enhancer's metrics report of a build of the fixture opened in the IDE has to be used.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FixtureDiscoveryBenchmark {
+
+    @Param({"20", "200"})
+    public int modules;
+
+    @Param({"1000", "10000"})
+    public int classes;
+
+    private Path root;
+
+    private MultiModuleFixture.Fixture fixture;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.root = Files.createTempDirectory("openjpa-bench-fixture");
+        this.fixture = MultiModuleFixture.generate(this.root, this.modules, this.classes);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkCorpus.delete(this.root);
+    }
+
+    @Benchmark
+    public int discover() throws IOException, XMLStreamException {
+        int found = 0;
+        for (final Path moduleDir : this.fixture.getModuleDirs()) {
+            final Path outputDir = moduleDir.resolve("target/classes");
+            final OutputSnapshot snapshot = OutputSnapshot.of(outputDir);
+            for (final String metadataPath : snapshot.getFilesByExtension("xml")) {
+                final Set<String> classNames;
+                try (InputStream in = Files.newInputStream(outputDir.resolve(metadataPath))) {
+                    classNames = MetadataParser.parseQualifiedClassNames(in);
+                }
+                for (final String className : classNames) {
+                    if (snapshot.contains(IdeaProjectUtils.packageToPath(className) + ".class")) {
+                        ++found;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+}
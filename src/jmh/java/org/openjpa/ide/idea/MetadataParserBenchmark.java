@@ -0,0 +1,49 @@
+package org.openjpa.ide.idea;
+
+import java.io.ByteArrayInputStream;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parsing of JDO and JPA metadata files of different sizes, see {@link MetadataParser}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MetadataParserBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int mappings;
+
+    private byte[] jdo;
+
+    private byte[] jpa;
+
+    @Setup
+    public void setUp() {
+        this.jdo = BenchmarkCorpus.jdoMetadata(this.mappings);
+        this.jpa = BenchmarkCorpus.jpaMetadata(this.mappings);
+    }
+
+    @Benchmark
+    public Set<String> parseJdo() throws XMLStreamException {
+        return MetadataParser.parseQualifiedClassNames(new ByteArrayInputStream(this.jdo));
+    }
+
+    @Benchmark
+    public Set<String> parseJpa() throws XMLStreamException {
+        return MetadataParser.parseQualifiedClassNames(new ByteArrayInputStream(this.jpa));
+    }
+
+}
@@ -0,0 +1,204 @@
+package org.openjpa.ide.idea;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates a multi-module maven project with persistent classes for scale measurements.<br/>
+ * <br/>
+ * Modules alternate between the javax and jakarta namespace and contain entities, mapped superclasses,
+ * embeddables, nested embeddables and classes mapped by 'META-INF/orm.xml'. Every module depends on the first one.
+ * Besides the sources, placeholder class files and the mappings are written to 'target/classes', so the
+ * output directory based lookups can be measured without compiling.<br/>
+ * <br/>
+ * Run {@link #main(String[])} to create a project to open in the IDE (e.g. via './gradlew runIde'),
+ * timings are then available by the enhancer's metrics report.
+ */
+public final class MultiModuleFixture {
+
+    public static final String BASE_PACKAGE = "org.openjpa.fixture";
+
+    private static final byte[] PLACEHOLDER_CLASS = new byte[256];
+
+    private MultiModuleFixture() {
+        // no instantiation allowed
+    }
+
+    /**
+     * @param args target directory, number of modules (default 200), number of persistent classes (default 10000)
+     * @throws IOException .
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: MultiModuleFixture <target directory> [modules] [persistent classes]");
+            System.exit(1);
+        }
+        final Path root = Path.of(args[0]);
+        final int modules = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        final int classes = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        final Fixture fixture = generate(root, modules, classes);
+        System.out.println("generated " + fixture.getModuleDirs().size() + " modules with " + fixture.getClassCount()
+                + " persistent classes in " + root.toAbsolutePath());
+    }
+
+    /**
+     * Generate the project.
+     *
+     * @param root    directory to create the project in
+     * @param modules number of modules
+     * @param classes number of persistent classes, spread evenly over the modules
+     * @return the generated fixture
+     * @throws IOException .
+     */
+    public static Fixture generate(final Path root, final int modules, final int classes) throws IOException {
+        final List<Path> moduleDirs = new ArrayList<>(modules);
+        int classCount = 0;
+        for (int m = 0; m < modules; ++m) {
+            final int moduleClasses = classes / modules + (m < classes % modules ? 1 : 0);
+            final Path moduleDir = root.resolve(moduleName(m));
+            classCount += generateModule(moduleDir, m, moduleClasses);
+            moduleDirs.add(moduleDir);
+        }
+        Files.writeString(root.resolve("pom.xml"), rootPom(modules));
+        return new Fixture(moduleDirs, classCount);
+    }
+
+    private static int generateModule(final Path moduleDir, final int module, final int classes) throws IOException {
+        final String namespace = module % 2 == 0 ? "javax.persistence" : "jakarta.persistence";
+        final String packageName = BASE_PACKAGE + '.' + moduleName(module).replace('-', '_');
+        final String packagePath = packageName.replace('.', '/');
+        final Path sourceDir = Files.createDirectories(moduleDir.resolve("src/main/java").resolve(packagePath));
+        final Path outputDir = Files.createDirectories(moduleDir.resolve("target/classes").resolve(packagePath));
+        final List<String> xmlMapped = new ArrayList<>();
+
+        int count = 0;
+        String superclass = null;
+        for (int i = 0; i < classes; ++i) {
+            final String name;
+            final String source;
+            if (i % 10 == 0) {
+                name = "Base" + i;
+                source = "@" + namespace + ".MappedSuperclass\npublic abstract class " + name + " {\n"
+                        + "    @" + namespace + ".Id protected long id;\n}\n";
+                superclass = name;
+            } else if (i % 10 == 1) {
+                name = "Address" + i;
+                source = "@" + namespace + ".Embeddable\npublic class " + name + " {\n"
+                        + "    private String street;\n    private String city;\n}\n";
+            } else if (i % 20 == 2) {
+                // mapped by META-INF/orm.xml
+                name = "Mapped" + i;
+                source = "public class " + name + " {\n    private long id;\n    private String name;\n}\n";
+                xmlMapped.add(packageName + '.' + name);
+            } else {
+                name = "Entity" + i;
+                final boolean nested = i % 10 == 3;
+                source = "@" + namespace + ".Entity\npublic class " + name + (superclass == null ? "" : " extends " + superclass) + " {\n"
+                        + "    private String name;\n"
+                        + (nested ? "    @" + namespace + ".Embedded private Period period;\n\n"
+                        + "    @" + namespace + ".Embeddable\n    public static class Period {\n"
+                        + "        private java.util.Date start;\n        private java.util.Date end;\n    }\n" : "")
+                        + "}\n";
+                if (nested) {
+                    Files.write(outputDir.resolve(name + "$Period.class"), PLACEHOLDER_CLASS);
+                    ++count;
+                }
+            }
+            Files.writeString(sourceDir.resolve(name + ".java"), "package " + packageName + ";\n\n" + source);
+            Files.write(outputDir.resolve(name + ".class"), PLACEHOLDER_CLASS);
+            ++count;
+        }
+
+        final byte[] orm = ormXml(namespace, xmlMapped);
+        Files.write(Files.createDirectories(moduleDir.resolve("src/main/resources/META-INF")).resolve("orm.xml"), orm);
+        Files.write(Files.createDirectories(moduleDir.resolve("target/classes/META-INF")).resolve("orm.xml"), orm);
+        Files.writeString(moduleDir.resolve("pom.xml"), modulePom(module, namespace));
+        return count;
+    }
+
+    private static byte[] ormXml(final String namespace, final List<String> classNames) {
+        final String xmlns = namespace.startsWith("jakarta")
+                ? "https://jakarta.ee/xml/ns/persistence/orm\" version=\"3.0"
+                : "http://xmlns.jcp.org/xml/ns/persistence/orm\" version=\"2.2";
+        final StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<entity-mappings xmlns=\"").append(xmlns).append("\">\n");
+        for (final String className : classNames) {
+            sb.append("  <entity class=\"").append(className).append("\">\n")
+                    .append("    <attributes><id name=\"id\"/><basic name=\"name\"/></attributes>\n")
+                    .append("  </entity>\n");
+        }
+        return sb.append("</entity-mappings>\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String rootPom(final int modules) {
+        final StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n")
+                .append("  <modelVersion>4.0.0</modelVersion>\n")
+                .append("  <groupId>").append(BASE_PACKAGE).append("</groupId>\n")
+                .append("  <artifactId>fixture</artifactId>\n")
+                .append("  <version>1.0</version>\n")
+                .append("  <packaging>pom</packaging>\n")
+                .append("  <properties><maven.compiler.release>17</maven.compiler.release></properties>\n")
+                .append("  <modules>\n");
+        for (int m = 0; m < modules; ++m) {
+            sb.append("    <module>").append(moduleName(m)).append("</module>\n");
+        }
+        return sb.append("  </modules>\n</project>\n").toString();
+    }
+
+    private static String modulePom(final int module, final String namespace) {
+        final String openjpa = namespace.startsWith("jakarta") ? "4.0.1" : "3.2.2";
+        final StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n")
+                .append("  <modelVersion>4.0.0</modelVersion>\n")
+                .append("  <parent><groupId>").append(BASE_PACKAGE).append("</groupId><artifactId>fixture</artifactId><version>1.0</version></parent>\n")
+                .append("  <artifactId>").append(moduleName(module)).append("</artifactId>\n")
+                .append("  <dependencies>\n")
+                .append("    <dependency><groupId>org.apache.openjpa</groupId><artifactId>openjpa</artifactId><version>")
+                .append(openjpa).append("</version></dependency>\n");
+        if (module > 0) {
+            sb.append("    <dependency><groupId>").append(BASE_PACKAGE).append("</groupId><artifactId>").append(moduleName(0))
+                    .append("</artifactId><version>1.0</version></dependency>\n");
+        }
+        return sb.append("  </dependencies>\n</project>\n").toString();
+    }
+
+    private static String moduleName(final int module) {
+        return String.format("module-%03d", module);
+    }
+
+    //
+    // Nested classes
+    //
+
+    /**
+     * Generated project.
+     */
+    public static final class Fixture {
+
+        private final List<Path> moduleDirs;
+
+        private final int classCount;
+
+        private Fixture(final List<Path> moduleDirs, final int classCount) {
+            this.moduleDirs = moduleDirs;
+            this.classCount = classCount;
+        }
+
+        public List<Path> getModuleDirs() {
+            return this.moduleDirs;
+        }
+
+        /**
+         * @return number of persistent classes (including nested classes)
+         */
+        public int getClassCount() {
+            return this.classCount;
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package org.openjpa.ide.idea;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Scanning output directories ({@link OutputSnapshot}, which replaced the per extension directory walks)
+ * and the path conversions applied to every persistent class.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OutputPathsBenchmark {
+
+    @Param({"100", "10000"})
+    public int files;
+
+    private Path root;
+
+    private OutputSnapshot snapshot;
+
+    private String[] classNames;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.root = Files.createTempDirectory("openjpa-bench-output");
+        BenchmarkCorpus.outputTree(this.root, this.files);
+        this.snapshot = OutputSnapshot.of(this.root);
+        this.classNames = new String[this.files];
+        for (int i = 0; i < this.files; ++i) {
+            this.classNames[i] = "org.openjpa.bench.p" + (i % 50) + ".q" + (i % 7) + ".Class" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkCorpus.delete(this.root);
+    }
+
+    @Benchmark
+    public OutputSnapshot scan() throws IOException {
+        return OutputSnapshot.of(this.root);
+    }
+
+    @Benchmark
+    public List<String> filesByExtension() {
+        return this.snapshot.getFilesByExtension("xml");
+    }
+
+    @Benchmark
+    public void lookupClassFiles(final Blackhole blackhole) {
+        for (final String className : this.classNames) {
+            blackhole.consume(this.snapshot.contains(IdeaProjectUtils.packageToPath(className) + ".class"));
+        }
+    }
+
+    @Benchmark
+    public void packageToPath(final Blackhole blackhole) {
+        for (final String className : this.classNames) {
+            blackhole.consume(IdeaProjectUtils.packageToPath(className));
+        }
+    }
+
+}
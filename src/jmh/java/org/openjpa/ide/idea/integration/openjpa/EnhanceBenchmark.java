@@ -0,0 +1,90 @@
+package org.openjpa.ide.idea.integration.openjpa;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjpa.ide.idea.BenchmarkCorpus;
+
+/**
+ * End-to-end enhancement of a generated entity corpus with the OpenJPA enhancer via {@link OpenJpaEnhancerRunner},
+ * the part of {@link OpenJpaEnhancerProxy#enhance()} not depending on a running IDE.<br/>
+ * <br/>
+ * Pristine class files are restored before every invocation. With {@link #cached}, the classes are copied from a
+ * cache of enhanced classes warmed up before (e.g. after switching back to a branch built before).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EnhanceBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int entities;
+
+    @Param({"false", "true"})
+    public boolean cached;
+
+    private Path root;
+
+    private Path pristineDir;
+
+    private Path workDir;
+
+    private List<String> classFiles;
+
+    private OpenJpaEnhancerRunner runner;
+
+    private EnhancedClassCache cache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, ReflectiveOperationException {
+        this.root = Files.createTempDirectory("openjpa-bench-enhance");
+        this.pristineDir = this.root.resolve("pristine");
+        this.workDir = this.root.resolve("work");
+        final List<Path> compiled = BenchmarkCorpus.entities(this.root.resolve("src"), Files.createDirectories(this.pristineDir), this.entities);
+        this.classFiles = new ArrayList<>(compiled.size());
+        for (final Path classFile : compiled) {
+            this.classFiles.add(this.workDir.resolve(this.pristineDir.relativize(classFile).toString()).toString());
+        }
+        this.runner = new OpenJpaEnhancerRunner(EnhanceBenchmark.class.getClassLoader());
+        if (this.cached) {
+            this.cache = new EnhancedClassCache(this.root.resolve("cache"), EnhancedClassCache.DEFAULT_MAX_SIZE);
+            this.restoreClassFiles();
+            this.enhance();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void restoreClassFiles() throws IOException {
+        BenchmarkCorpus.copy(this.pristineDir, this.workDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkCorpus.delete(this.root);
+    }
+
+    @Benchmark
+    public EnhancementResult enhance() throws IOException, InvocationTargetException, IllegalAccessException, NoSuchMethodException, InstantiationException {
+        try (URLClassLoader projectClassLoader = new URLClassLoader(new URL[]{this.workDir.toUri().toURL()}, EnhanceBenchmark.class.getClassLoader())) {
+            return this.runner.enhance(projectClassLoader, this.classFiles, true, false, this.cache);
+        }
+    }
+
+}
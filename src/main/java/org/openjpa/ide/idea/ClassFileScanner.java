@@ -0,0 +1,86 @@
+package org.openjpa.ide.idea;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.jetbrains.annotations.Nullable;
+import org.openjpa.ide.idea.integration.openjpa.ClassFileParser;
+
+/**
+ * Finds annotated classes by reading class files of an output directory, independent of the IDE's index.<br/>
+ * <br/>
+ * Class files are read into heap buffers and parsed by {@link ClassFileParser}, files are scanned in parallel.<br/>
+ * <br/>
+ * Used in dumb mode and if all classes of a module are processed (e.g. rebuilds), where a linear scan of the
+ * output beats querying the index for each module.
+ */
+final class ClassFileScanner {
+
+    private static final String CLASS_EXTENSION = "class";
+
+    private final ClassFileParser parser;
+
+    private final boolean empty;
+
+    /**
+     * @param annotationNames fully qualified names of the annotations to look for
+     */
+    ClassFileScanner(final Collection<String> annotationNames) {
+        this.parser = new ClassFileParser(annotationNames);
+        this.empty = annotationNames.isEmpty();
+    }
+
+    /**
+     * Scan the class files of an output directory.
+     *
+     * @param outputDirectory the output directory
+     * @param snapshot        snapshot of the output directory
+     * @return annotated classes
+     * @throws UncheckedIOException if a class file could not be read
+     */
+    List<PersistentClass> scan(final Path outputDirectory, final OutputSnapshot snapshot) {
+        final List<String> classFiles = snapshot.getFilesByExtension(CLASS_EXTENSION);
+        if (classFiles.isEmpty() || this.empty) {
+            return Collections.emptyList();
+        }
+        return classFiles.parallelStream()
+                .map(classFile -> this.scanFile(outputDirectory.resolve(classFile)))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Nullable
+    private PersistentClass scanFile(final Path classFile) {
+        try {
+            // not memory mapped, a mapping keeps the file locked on Windows until garbage collected,
+            // failing the enhancer replacing it
+            return this.scan(ByteBuffer.wrap(Files.readAllBytes(classFile)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException ignored) {
+            // truncated or otherwise malformed, e.g. while written by the compiler
+            return null;
+        }
+    }
+
+    /**
+     * @param buffer class file content
+     * @return the class if annotated by one of the annotations, null otherwise
+     */
+    @Nullable
+    PersistentClass scan(final ByteBuffer buffer) {
+        final String internalName = this.parser.findAnnotatedClass(buffer);
+        return internalName == null ? null
+                : new PersistentClass(internalName.replace('/', '.').replace('$', '.'), internalName);
+    }
+
+}
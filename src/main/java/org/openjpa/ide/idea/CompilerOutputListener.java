@@ -0,0 +1,22 @@
+package org.openjpa.ide.idea;
+
+import com.intellij.openapi.compiler.CompilationStatusListener;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Forwards compiler generated files to the {@link CompilerOutputTracker}.
+ */
+public class CompilerOutputListener implements CompilationStatusListener {
+
+    private final Project project;
+
+    public CompilerOutputListener(Project project) {
+        this.project = project;
+    }
+
+    @Override
+    public void fileGenerated(@NotNull String outputRoot, @NotNull String relativePath) {
+        CompilerOutputTracker.getInstance(this.project).fileGenerated(outputRoot, relativePath);
+    }
+}
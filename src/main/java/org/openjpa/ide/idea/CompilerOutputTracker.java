@@ -0,0 +1,67 @@
+package org.openjpa.ide.idea;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Collects the files reported by the compiler as generated, so the enhancer only has to
+ * process the classes touched by the current build (see {@link CompilerOutputListener}).<br/>
+ * <br/>
+ * Files are accumulated until the next enhancement run drains them, hence classes generated by builds
+ * which did not reach the enhancer (e.g. due to compile errors) are picked up by the following run.
+ */
+@Service(Service.Level.PROJECT)
+public final class CompilerOutputTracker {
+
+    private final Map<String, Set<String>> generatedFiles = new ConcurrentHashMap<>();
+
+    /**
+     * Nothing is known about the enhancement state of the output directories before the first run
+     */
+    private volatile boolean fullEnhancementRequested = true;
+
+    public static CompilerOutputTracker getInstance(Project project) {
+        return project.getService(CompilerOutputTracker.class);
+    }
+
+    void fileGenerated(final String outputRoot, final String relativePath) {
+        this.generatedFiles.computeIfAbsent(FileUtil.toSystemIndependentName(outputRoot), k -> ConcurrentHashMap.newKeySet())
+                .add(FileUtil.toSystemIndependentName(relativePath));
+    }
+
+    /**
+     * Forces the next enhancement run to process all persistent classes, e.g. after configuration changes.
+     */
+    void requestFullEnhancement() {
+        this.fullEnhancementRequested = true;
+    }
+
+    /**
+     * Retrieve and reset the files generated since the last invocation.
+     *
+     * @param rebuild true if the current build is a rebuild
+     * @return the generated files or null if all persistent classes have to be enhanced
+     */
+    @Nullable
+    GeneratedOutput drain(final boolean rebuild) {
+        final Map<String, Set<String>> drained = new LinkedHashMap<>();
+        for (final String outputRoot : this.generatedFiles.keySet()) {
+            final Set<String> files = this.generatedFiles.remove(outputRoot);
+            if (files != null && !files.isEmpty()) {
+                drained.put(outputRoot, files);
+            }
+        }
+
+        final boolean full = this.fullEnhancementRequested || rebuild;
+        this.fullEnhancementRequested = false;
+        return full ? null : new GeneratedOutput(drained);
+    }
+
+}
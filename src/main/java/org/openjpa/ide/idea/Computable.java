@@ -2,6 +2,8 @@ package org.openjpa.ide.idea;
 
 import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.NonBlockingReadAction;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.compiler.CompileContext;
 import com.intellij.openapi.compiler.CompileScope;
 import com.intellij.openapi.compiler.CompilerManager;
@@ -12,31 +14,41 @@ import com.intellij.openapi.compiler.TimestampValidityState;
 import com.intellij.openapi.compiler.ValidityState;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.ThrowableComputable;
+import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.PsiClass;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.openjpa.ide.idea.integration.EnhancerProxy;
 import org.openjpa.ide.idea.integration.EnhancerSupport;
+import org.openjpa.ide.idea.integration.openjpa.EnhancementResult;
+import org.openjpa.ide.idea.integration.openjpa.OpenJpaEnhancerRunner;
 
 import java.io.DataInput;
-import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * Enhances class files with xml- or annotation based metadata in
@@ -85,15 +97,41 @@ class Computable implements SourceInstrumentingCompiler {
     @NotNull
     @Override
     public ProcessingItem[] getProcessingItems(final @NotNull CompileContext compileContext) {
-        final Set<String> enabledModules = this.state.getEnabledModules();
-        if (this.state.isEnhancerEnabled() && !enabledModules.isEmpty()) {
+        return this.getProcessingItems(compileContext, null);
+    }
+
+    /**
+     * Retrieve the items to enhance.
+     *
+     * @param compileContext  the compile context
+     * @param generatedOutput files generated by the current build (null to process all persistent classes)
+     * @return .
+     */
+    @NotNull
+    ProcessingItem[] getProcessingItems(final @NotNull CompileContext compileContext,
+                                        @Nullable final GeneratedOutput generatedOutput) {
+        // settings are read once per build
+        final StateSnapshot settings = this.state.getSnapshot();
+        final Set<String> enabledModules = settings.getEnabledModules();
+        if (settings.isEnhancerEnabled() && !enabledModules.isEmpty()) {
+            // restrict to the classes generated by the compiler in incremental mode
+            final GeneratedOutput incrementalOutput = settings.isIncrementalEnhancement() ? generatedOutput : null;
+            if (incrementalOutput != null && incrementalOutput.isEmpty()) {
+                return EMPTY_PROCESSING_ITEMS;
+            }
+
+            // output directories are walked once and shared by metadata and annotated class lookups
+            final OutputSnapshots outputSnapshots = new OutputSnapshots();
+            final EnhancementMetrics metrics = EnhancementMetrics.of(compileContext);
+
             // get metadata files of affected modules
             final Map<Module, List<VirtualMetadataFile>> moduleBasedMetadataFiles =
-                    this.getMetadataFiles(compileContext.getCompileScope());
+                    this.getMetadataFiles(compileContext.getCompileScope(), settings, incrementalOutput, outputSnapshots, metrics);
 
-            // get annotated class files of affected modules
-            final Map<Module, List<VirtualMetadataFile>> moduleBasedAnnotatedClasses =
-                    this.getAnnotatedClassFiles(compileContext.getCompileScope());
+            // get annotated class files of affected modules, unless already enhanced by the external build process
+            final Map<Module, List<VirtualMetadataFile>> moduleBasedAnnotatedClasses = settings.isBuildProcessEnhancer()
+                    ? Collections.emptyMap()
+                    : this.getAnnotatedClassFiles(compileContext.getCompileScope(), settings, incrementalOutput, outputSnapshots, metrics);
 
             final Collection<ProcessingItem> processingItems =
                     new LinkedHashSet<>();
@@ -110,7 +148,7 @@ class Computable implements SourceInstrumentingCompiler {
                 }
             }
 
-            if (processingItems.isEmpty()) {
+            if (processingItems.isEmpty() && incrementalOutput == null && !settings.isBuildProcessEnhancer()) {
                 this.logMessage(compileContext,
                         CompilerMessageCategory.WARNING,
                         "Enhancer: no metadata- or annotated class-files found");
@@ -128,10 +166,15 @@ class Computable implements SourceInstrumentingCompiler {
 
         org.apache.log4j.BasicConfigurator.configure();
         ProcessingItem[] ret = EMPTY_PROCESSING_ITEMS;
+        int count = 0;
+
+        // shortcut if disabled or nothing to enhance (already reported while collecting the items)
+        final StateSnapshot settings = this.state.getSnapshot();
+        final Set<String> enabledModules = settings.getEnabledModules();
+        if (settings.isEnhancerEnabled() && !enabledModules.isEmpty() && processingItems.length > 0) {
 
-        // shortcut if disabled
-        final Set<String> enabledModules = this.state.getEnabledModules();
-        if (this.state.isEnhancerEnabled() && !enabledModules.isEmpty()) {
+            // class files rewritten by the enhancer, refreshed at once after all modules finished
+            final Collection<Path> writtenFiles = new ConcurrentLinkedQueue<>();
 
             // just to be sure: backup of classloader
             final ClassLoader previousCL = Thread.currentThread().getContextClassLoader();
@@ -173,7 +216,7 @@ class Computable implements SourceInstrumentingCompiler {
                 if (!affectedModules.isEmpty()) {
 
                     // start enhancer per module
-                    final int count = enhanceInModules(ctx, affectedModules, moduleBasedMetadataFiles, moduleBasedAnnotatedClasses);
+                    count = enhanceInModules(ctx, settings, affectedModules, moduleBasedMetadataFiles, moduleBasedAnnotatedClasses, writtenFiles);
                     // success message
                     this.logMessage(ctx,
                             CompilerMessageCategory.INFORMATION,
@@ -187,6 +230,8 @@ class Computable implements SourceInstrumentingCompiler {
                 ret = processingItems;
 
             } catch (Exception e) {
+                // enhancement state of the generated classes is unknown, enhance everything next time
+                CompilerOutputTracker.getInstance(this.project).requestFullEnhancement();
                 // writer for stacktrace printing
                 final Writer writer = new StringWriter();
                 // transform stacktrace to string
@@ -203,9 +248,14 @@ class Computable implements SourceInstrumentingCompiler {
             } finally {
                 Thread.currentThread().setContextClassLoader(previousCL);
                 progressIndicator.popState();
+                refreshWrittenFiles(ctx, writtenFiles);
             }
         }
 
+        if (settings.isEnhancerEnabled() && !enabledModules.isEmpty()) {
+            this.reportMetrics(ctx, count);
+        }
+
         return ret;
     }
 
@@ -231,71 +281,105 @@ class Computable implements SourceInstrumentingCompiler {
 
     @SuppressWarnings("FeatureEnvy")
     private int enhanceInModules(final CompileContext ctx,
+                                 final StateSnapshot settings,
                                  final Iterable<Module> affectedModules,
                                  final LinkedHashMap<Module, List<VirtualMetadataFile>> moduleBasedMetadataFiles,
-                                 final LinkedHashMap<Module, List<VirtualMetadataFile>> moduleBasedAnnotatedClasses)
-            throws IllegalAccessException,
-            InstantiationException, InvocationTargetException, NoSuchFieldException {
+                                 final LinkedHashMap<Module, List<VirtualMetadataFile>> moduleBasedAnnotatedClasses,
+                                 final Collection<Path> writtenFiles)
+            throws Exception {
 
-        int count = 0;
+        // exclude disabled modules
+        final Set<String> enabledModules = settings.getEnabledModules();
+        final List<Module> modules = new ArrayList<>();
         for (final Module module : affectedModules) {
-            // exclude disabled modules
-            final Set<String> enabledModules = this.state.getEnabledModules();
             if (enabledModules.contains(module.getName())) {
+                modules.add(module);
+            }
+        }
 
-                // get modules output folder
-                final VirtualFile outputDirectory = ctx.getModuleOutputDirectory(module);
-
-                // only enhance in modules that have an output folder
-                if (outputDirectory == null) {
-                    // display warning if module has no output folder
-                    this.logMessage(ctx,
-                            CompilerMessageCategory.WARNING,
-                            "Enhancer: no output directory for module: " + module.getName());
+        final int parallelism = settings.isParallelEnhancement() ? Runtime.getRuntime().availableProcessors() : 1;
+        final Map<Module, ModuleEnhancementScheduler.Result> results = new ModuleEnhancementScheduler(parallelism)
+                .run(modules,
+                        (module, messages) -> this.enhanceInModule(ctx, settings, module, moduleBasedMetadataFiles.get(module),
+                                moduleBasedAnnotatedClasses.get(module), messages, writtenFiles),
+                        ctx.getProgressIndicator());
 
-                } else {
-                    final ProgressIndicator progressIndicator = ctx.getProgressIndicator();
-                    final EnhancerSupport enhancerSupport = this.state.getEnhancerSupport();
-
-                    // update progress text
-                    progressIndicator.setText(enhancerSupport.getName() + " Enhancer enhancing in " + module.getName());
-                    // metadata files for module
-                    final List<VirtualMetadataFile> metadataFiles = moduleBasedMetadataFiles.get(module);
-                    // metadata files for module
-                    final List<VirtualMetadataFile> annotatedClassFiles = moduleBasedAnnotatedClasses.get(module);
-
-                    try {
-                        // do class enhancement in module
-                        count += enhancePerModule(enhancerSupport,
-                                this.state,
-                                ctx,
-                                module,
-                                outputDirectory,
-                                metadataFiles,
-                                annotatedClassFiles);
-                    } catch (ClassNotFoundException ignored) {
-                        this.logMessage(ctx,
-                                CompilerMessageCategory.WARNING,
-                                "Enhancer: enhancer not found in classpath for module: " + module.getName());
-                    } catch (NoSuchMethodException ignored) {
-                        this.logMessage(ctx,
-                                CompilerMessageCategory.ERROR,
-                                "Enhancer: enhancer mehtod not found for module: " + module.getName());
-                    }
-                }
+        // merge results in module order
+        int count = 0;
+        Exception failure = null;
+        for (final ModuleEnhancementScheduler.Result result : results.values()) {
+            for (final ModuleEnhancementScheduler.Message message : result.getMessages()) {
+                this.logMessage(ctx, message.getCategory(), message.getText());
             }
+            count += result.getCount();
+            if (failure == null) {
+                failure = result.getFailure();
+            }
+        }
+        if (failure != null) {
+            throw failure;
         }
         return count;
     }
 
+    private int enhanceInModule(final CompileContext ctx,
+                                final StateSnapshot settings,
+                                final Module module,
+                                final List<VirtualMetadataFile> metadataFiles,
+                                final List<VirtualMetadataFile> annotatedClassFiles,
+                                final List<ModuleEnhancementScheduler.Message> messages,
+                                final Collection<Path> writtenFiles)
+            throws IllegalAccessException,
+            InstantiationException, InvocationTargetException, NoSuchFieldException {
+
+        // get modules output folder
+        final VirtualFile outputDirectory = ctx.getModuleOutputDirectory(module);
+
+        // only enhance in modules that have an output folder
+        if (outputDirectory == null) {
+            // display warning if module has no output folder
+            messages.add(new ModuleEnhancementScheduler.Message(CompilerMessageCategory.WARNING,
+                    "Enhancer: no output directory for module: " + module.getName()));
+            return 0;
+        }
+
+        final ProgressIndicator progressIndicator = ctx.getProgressIndicator();
+        final EnhancerSupport enhancerSupport = settings.getEnhancerSupport();
+
+        // update progress text
+        progressIndicator.setText(enhancerSupport.getName() + " Enhancer enhancing in " + module.getName());
+
+        try {
+            // do class enhancement in module
+            return enhancePerModule(enhancerSupport,
+                    settings,
+                    ctx,
+                    module,
+                    outputDirectory,
+                    metadataFiles,
+                    annotatedClassFiles,
+                    messages,
+                    writtenFiles);
+        } catch (ClassNotFoundException ignored) {
+            messages.add(new ModuleEnhancementScheduler.Message(CompilerMessageCategory.WARNING,
+                    "Enhancer: enhancer not found in classpath for module: " + module.getName()));
+        } catch (NoSuchMethodException ignored) {
+            messages.add(new ModuleEnhancementScheduler.Message(CompilerMessageCategory.ERROR,
+                    "Enhancer: enhancer mehtod not found for module: " + module.getName()));
+        }
+        return 0;
+    }
+
     @SuppressWarnings("FeatureEnvy")
     private static int enhancePerModule(final EnhancerSupport enhancerSupport,
-                                        final State state,
+                                        final StateSnapshot settings,
                                         final CompileContext compileContext,
                                         final Module module,
                                         final VirtualFile outputDirectory,
                                         final Collection<VirtualMetadataFile> metadataFiles,
-                                        final Collection<VirtualMetadataFile> annotatedClassFiles)
+                                        final Collection<VirtualMetadataFile> annotatedClassFiles,
+                                        final List<ModuleEnhancementScheduler.Message> messages,
+                                        final Collection<Path> writtenFiles)
             throws ClassNotFoundException,
             IllegalAccessException,
             InstantiationException,
@@ -318,65 +402,166 @@ class Computable implements SourceInstrumentingCompiler {
         //
         // create enhancer instance
 
+        final EnhancementMetrics metrics = EnhancementMetrics.of(compileContext);
         final EnhancerProxy enhancer;
         if (doEnhance) {
 
-            enhancer = enhancerSupport.newEnhancerProxy(state.getApi(), compileContext, module, null);
-            enhancer.setAddDefaultConstructor(state.isAddDefaultConstructor());
-            enhancer.setEnforcePropertyRestrictions(state.isEnforcePropertyRestrictions());
+            try (EnhancementMetrics.Measurement ignored = metrics.measure(EnhancementMetrics.Phase.CLASSLOADER, module)) {
+                enhancer = enhancerSupport.newEnhancerProxy(settings.getApi(), settings, compileContext, module, null);
+            }
+            enhancer.setAddDefaultConstructor(settings.isAddDefaultConstructor());
+            enhancer.setEnforcePropertyRestrictions(settings.isEnforcePropertyRestrictions());
 
         } else {
             // nothing to enhance
             return 0;
         }
 
-        //
-        // add metadata and classes
+        // release the enhancer's resources (ClassLoader) in any case
+        try {
+            //
+            // skip classes still enhanced by a previous run
+
+            final EnhancementManifest manifest = EnhancementManifestStore.getInstance(module.getProject())
+                    .getManifest(module, enhancer.getEnhancerVersion(), EnhancementManifestStore.toOptions(settings));
+            // class files to enhance with their fingerprint before enhancement
+            final Map<Path, EnhancementManifest.Fingerprint> classFiles = new LinkedHashMap<>();
+            final List<Path> metadataFilePaths = new ArrayList<>();
+
+            //
+            // add metadata and classes
 
-        // add metadata based classes to enhancer list
-        if (metadataBased) {
+            // add metadata based classes to enhancer list
+            if (metadataBased) {
 
-            // iterate modules and enhance classes in corresponding output folders
-            for (final VirtualMetadataFile metadataFile : metadataFiles) {
+                // iterate modules and enhance classes in corresponding output folders
+                for (final VirtualMetadataFile metadataFile : metadataFiles) {
 
-                // get metadata file url
-                final VirtualFile metadataVirtualFile = metadataFile.getFile();
-                final String metadataFilePath = metadataVirtualFile.getPath();
-                // add metadata file url to enhancer
-                enhancer.addMetadataFiles(metadataFilePath);
+                    // get metadata file url
+                    final VirtualFile metadataVirtualFile = metadataFile.getFile();
+                    final String metadataFilePath = metadataVirtualFile.getPath();
+                    // add metadata file url to enhancer
+                    enhancer.addMetadataFiles(metadataFilePath);
+                    metadataFilePaths.add(Path.of(metadataFilePath));
+                    // changed metadata may change the enhancement result of unchanged classes
+                    final boolean metadataUnchanged = manifest.isUnchanged(Path.of(metadataFilePath));
 
-                // parse package and class names
-                final Collection<String> classNames = metadataFile.getClassNames();
+                    // parse package and class names
+                    final Collection<String> classNames = metadataFile.getClassNames();
 
-                // add xml metadata based classes
-                for (final String className : classNames) {
-                    final String classNameAsPath = IdeaProjectUtils.packageToPath(className);
-                    final String fullPath = outputDirectory.getPath() + '/' + classNameAsPath + CLASSFILE_EXTENSION;
+                    // add xml metadata based classes
+                    for (final String className : classNames) {
+                        final String classNameAsPath = IdeaProjectUtils.packageToPath(className);
+                        final String fullPath = outputDirectory.getPath() + '/' + classNameAsPath + CLASSFILE_EXTENSION;
 
-                    enhancer.addClasses(fullPath);
+                        addClassFile(classFiles, manifest, Path.of(fullPath), metadataUnchanged);
+                    }
                 }
             }
-        }
 
-        // add annotated classes to enhancer list
-        if (annotationBased) {
+            // add annotated classes to enhancer list
+            if (annotationBased) {
 
-            for (final VirtualMetadataFile annotatedClassFile : annotatedClassFiles) {
-                final VirtualFile annotatedClassVirtualFile = annotatedClassFile.getFile();
-                enhancer.addClasses(annotatedClassVirtualFile.getPath());
+                for (final VirtualMetadataFile annotatedClassFile : annotatedClassFiles) {
+                    final VirtualFile annotatedClassVirtualFile = annotatedClassFile.getFile();
+                    addClassFile(classFiles, manifest, Path.of(annotatedClassVirtualFile.getPath()), true);
+                }
             }
-        }
 
-        //
-        // finally enhance classes
+            if (classFiles.isEmpty()) {
+                // everything up to date
+                return 0;
+            }
+            for (final Path classFile : classFiles.keySet()) {
+                enhancer.addClasses(classFile.toString());
+            }
+
+            //
+            // finally enhance classes
 
-        // count nr of enhanced classes
-        final int enhancedCount;
+            // classes enhanced, unchanged and skipped
+            EnhancementResult result = null;
+
+            // finally enhance all found classes in module
+            try (EnhancementMetrics.Measurement ignored = metrics.measure(EnhancementMetrics.Phase.ENHANCE, module)) {
+                result = enhancer.enhance();
+            } finally {
+                if (result == null) {
+                    // files may have been rewritten before a failure
+                    writtenFiles.addAll(classFiles.keySet());
+                } else {
+                    for (final String writtenFile : result.getWrittenFiles()) {
+                        writtenFiles.add(Path.of(writtenFile));
+                    }
+                }
+            }
 
-        // finally enhance all found classes in module
-        enhancedCount = enhancer.enhance();
+            // skipped classes are enhanced again by the next build
+            recordEnhanced(module, manifest, classFiles, result, metadataFilePaths, messages);
+            messages.add(new ModuleEnhancementScheduler.Message(CompilerMessageCategory.INFORMATION,
+                    "Enhancer: " + module.getName() + ": " + result));
 
-        return enhancedCount;
+            return result.getEnhancedCount();
+        } finally {
+            enhancer.close();
+        }
+    }
+
+    private static void addClassFile(final Map<Path, EnhancementManifest.Fingerprint> classFiles,
+                                     final EnhancementManifest manifest,
+                                     final Path classFile,
+                                     final boolean skipIfEnhanced) {
+        if (skipIfEnhanced && manifest.isEnhanced(classFile)) {
+            return;
+        }
+        EnhancementManifest.Fingerprint pre;
+        try {
+            pre = EnhancementManifest.Fingerprint.of(classFile);
+        } catch (IOException ignored) {
+            // not compiled (yet), let the enhancer decide
+            pre = null;
+        }
+        classFiles.put(classFile, pre);
+    }
+
+    /**
+     * @return true if the class file was enhanced before, i.e. implements PersistenceCapable
+     */
+    private static boolean isPersistenceCapable(final Path classFile) {
+        try {
+            return OpenJpaEnhancerRunner.isEnhanced(Files.readAllBytes(classFile));
+        } catch (IOException ignored) {
+            return false;
+        }
+    }
+
+    private static void recordEnhanced(final Module module,
+                                       final EnhancementManifest manifest,
+                                       final Map<Path, EnhancementManifest.Fingerprint> classFiles,
+                                       final EnhancementResult result,
+                                       final Collection<Path> metadataFilePaths,
+                                       final List<ModuleEnhancementScheduler.Message> messages) {
+        final Set<Path> writtenFiles = new HashSet<>();
+        for (final String writtenFile : result.getWrittenFiles()) {
+            writtenFiles.add(Path.of(writtenFile));
+        }
+        try {
+            for (final Map.Entry<Path, EnhancementManifest.Fingerprint> classFile : classFiles.entrySet()) {
+                if (classFile.getValue() == null
+                        || (!writtenFiles.contains(classFile.getKey()) && !isPersistenceCapable(classFile.getKey()))) {
+                    manifest.remove(classFile.getKey());
+                } else {
+                    manifest.recordEnhanced(classFile.getKey(), classFile.getValue());
+                }
+            }
+            for (final Path metadataFilePath : metadataFilePaths) {
+                manifest.recordUnchanged(metadataFilePath);
+            }
+            manifest.save();
+        } catch (IOException e) {
+            messages.add(new ModuleEnhancementScheduler.Message(CompilerMessageCategory.WARNING,
+                    "Enhancer: unable to write enhancement manifest for module " + module.getName() + ": " + e.getMessage()));
+        }
     }
 
     //
@@ -387,130 +572,267 @@ class Computable implements SourceInstrumentingCompiler {
      * Retrieve annotated class files.
      *
      * @param compileScope compile scope to use (null for default - can lead to invalid file list due to refactoring)
+     * @param settings     settings of the current build
+     * @return .
+     */
+    Map<Module, List<VirtualMetadataFile>> getAnnotatedClassFiles(@Nullable final CompileScope compileScope,
+                                                                  final StateSnapshot settings) {
+        return this.getAnnotatedClassFiles(compileScope, settings, null, new OutputSnapshots(), EnhancementMetrics.NONE);
+    }
+
+    /**
+     * Retrieve annotated class files.
+     *
+     * @param compileScope    compile scope to use (null for default - can lead to invalid file list due to refactoring)
+     * @param settings        settings of the current build
+     * @param generatedOutput if not null, only class files generated by the compiler are retrieved
+     * @param outputSnapshots snapshots of the output directories of the current build
+     * @param metrics         metrics of the current build
      * @return .
      */
     // TODO: cleanup, as this seems to be very hacky
     @SuppressWarnings("FeatureEnvy")
-    Map<Module, List<VirtualMetadataFile>> getAnnotatedClassFiles(@Nullable final CompileScope compileScope) {
+    Map<Module, List<VirtualMetadataFile>> getAnnotatedClassFiles(@Nullable final CompileScope compileScope,
+                                                                  final StateSnapshot settings,
+                                                                  @Nullable final GeneratedOutput generatedOutput,
+                                                                  final OutputSnapshots outputSnapshots,
+                                                                  final EnhancementMetrics metrics) {
         final LinkedHashMap<Module, List<VirtualMetadataFile>> moduleBasedFiles = new LinkedHashMap<>();
+        final Set<String> enabledModules = settings.getEnabledModules();
         final CompileScope projectCompileScope = compileScope == null
                 ? CompilerManager.getInstance(Computable.this.project).createProjectCompileScope(Computable.this.project)
                 : compileScope;
 
         // ensure that all output directories are accessible
         for (final Module module : projectCompileScope.getAffectedModules()) {
-            if (Computable.this.state.getEnabledModules().contains(module.getName())) {
-                refreshModuleOutputDirectories(module);
+            if (enabledModules.contains(module.getName())
+                    && hasGeneratedOutput(module, settings, generatedOutput)) {
+                refreshModuleOutputDirectories(module, settings, metrics);
             }
         }
 
-        final Application application = ApplicationManager.getApplication();
-        application.runReadAction(() -> {
+        // class files are scanned directly if all classes are processed anyway (e.g. rebuild), incremental builds
+        // query the index for the few changed classes, waiting for the index to be updated (e.g. after a clean);
+        // if it is not ready within the configured timeout, class files are scanned instead
+        final boolean smart;
+        if (generatedOutput == null) {
+            smart = false;
+        } else {
+            try (EnhancementMetrics.Measurement ignored = metrics.measure(EnhancementMetrics.Phase.INDEX_WAIT, null)) {
+                smart = IdeaProjectUtils.waitForSmartMode(this.project, TimeUnit.SECONDS.toMillis(settings.getIndexWaitTimeout()));
+            }
+        }
+        final ClassFileScanner scanner = smart ? null : new ClassFileScanner(settings.getEnhancerSupport().getAnnotationNames());
 
+        // display paths are only computed on demand
+        final ContentRoots contentRoots = new ContentRoots(this.project);
 
-            final Set<String> enabledFiles = Computable.this.state.getEnabledFiles();
+        for (final Module module : projectCompileScope.getAffectedModules()) {
+            ProgressManager.checkCanceled();
+            if (enabledModules.contains(module.getName())
+                    && hasGeneratedOutput(module, settings, generatedOutput)) {
+
+                final Collection<VirtualFile> outputDirectories = new ArrayList<>(2);
+                outputDirectories.add(CompilerPaths.getModuleOutputDirectory(module, false));
+                if (settings.isIncludeTestClasses()) {
+                    outputDirectories.add(CompilerPaths.getModuleOutputDirectory(module, true));
+                }
 
-            for (final Module module : projectCompileScope.getAffectedModules()) {
-                if (Computable.this.state.getEnabledModules().contains(module.getName())) {
+                // scanned outside of the read action, as it only reads from disk
+                final Map<VirtualFile, List<PersistentClass>> scannedClasses = new HashMap<>(2);
+                if (scanner != null) {
+                    try (EnhancementMetrics.Measurement ignored = metrics.measure(EnhancementMetrics.Phase.ANNOTATION_SEARCH, module)) {
+                        for (final VirtualFile outputDirectory : outputDirectories) {
+                            if (outputDirectory != null) {
+                                scannedClasses.put(outputDirectory, scanner.scan(Path.of(outputDirectory.getPath()),
+                                        outputSnapshots.get(outputDirectory)));
+                            }
+                        }
+                    }
+                }
 
-                    final List<PsiClass> annotatedClasses = IdeaProjectUtils.findPersistenceAnnotatedClasses(
-                            Computable.this.state.getEnhancerSupport(), module);
-                    final Collection<VirtualFile> outputDirectories = new ArrayList<>(2);
-                    outputDirectories.add(CompilerPaths.getModuleOutputDirectory(module, false));
-                    if (Computable.this.state.isIncludeTestClasses()) {
-                        outputDirectories.add(CompilerPaths.getModuleOutputDirectory(module, true));
+                // one read action per module, write actions may interrupt (and restart) it
+                final List<VirtualMetadataFile> moduleFiles = this.computeInReadAction(metrics, effects -> {
+                    final List<PersistentClass> indexedClasses;
+                    if (scanner == null) {
+                        try (EnhancementMetrics.Measurement ignored = effects.measure(EnhancementMetrics.Phase.ANNOTATION_SEARCH, module)) {
+                            indexedClasses = IdeaProjectUtils.findPersistenceAnnotatedClasses(
+                                    settings.getEnhancerSupport(), module);
+                        }
+                    } else {
+                        indexedClasses = null;
                     }
 
+                    final List<VirtualMetadataFile> files = new LinkedList<>();
                     for (final VirtualFile outputDirectory : outputDirectories) {
+                        final List<PersistentClass> annotatedClasses = indexedClasses != null ? indexedClasses
+                                : scannedClasses.getOrDefault(outputDirectory, Collections.emptyList());
                         // convert to class files in output directory and add to map
+                        // (the snapshot is taken from disk, class files not yet known to the VFS are found anyway)
                         if (!annotatedClasses.isEmpty() && outputDirectory != null) {
-                            outputDirectory.refresh(true, true);
-                            final List<VirtualMetadataFile> moduleFiles = new LinkedList<>();
-                            // convert psi classes to class files in output path
-                            for (final PsiClass annotatedClass : annotatedClasses) {
+                            final OutputSnapshot outputSnapshot = outputSnapshots.get(outputDirectory);
+                            // convert indexed classes to class files in output path
+                            for (final PersistentClass annotatedClass : annotatedClasses) {
+                                ProgressManager.checkCanceled();
                                 final String pcClassName = annotatedClass.getQualifiedName();
                                 // skip disabled files
 
                                 if (pcClassName == null || (compileScope != null &&
-                                        (!state.isEnhanceAllPersistentClasses() && !enabledFiles.contains(pcClassName)))) {
+                                        (!settings.isEnhanceAllPersistentClasses() && !settings.isClassEnabled(pcClassName)))) {
                                     continue;
                                 }
                                 // convert to path
-                                final String pcClassPath = IdeaProjectUtils.classToPath(annotatedClass) + CLASSFILE_EXTENSION;
-                                // find file in output path
-                                VirtualFile pcClassFile = outputDirectory.findFileByRelativePath(pcClassPath);
-
-                                 if (pcClassFile == null && new File(outputDirectory.getPath() + "/" + pcClassPath).exists()){
-                                     // create a special virtual file, if the class file exists on the real file system
-                                     // this could happen, if a complete new persistent class is compiled
-                                     pcClassFile = new RealVirtualFile(new File(outputDirectory.getPath() + "/" + pcClassPath));
+                                final String pcClassPath = annotatedClass.getClassPath() + CLASSFILE_EXTENSION;
+                                // skip classes not compiled in this build
+                                if (generatedOutput != null && !generatedOutput.contains(outputDirectory.getPath(), pcClassPath)) {
+                                    continue;
                                 }
+                                // find file in output path
+                                final VirtualFile pcClassFile = outputSnapshot.findFile(outputDirectory, pcClassPath);
 
-                                if (pcClassFile != null && pcClassFile.exists()) {
-                                    moduleFiles
-                                            .add(new VirtualMetadataFile(module, true, pcClassFile,
-                                                    Collections.singletonList(pcClassName),
-                                                    Collections.singletonList(pcClassFile)));
-                                }
-                            }
-                            if (!moduleFiles.isEmpty()) {
-                                @SuppressWarnings("MismatchedQueryAndUpdateOfCollection")
-                                // everything is fine here
-                                final List<VirtualMetadataFile> storedModuleFiles = moduleBasedFiles.get(module);
-                                // if collection already exists, just add content
-                                if (storedModuleFiles == null) {
-                                    moduleBasedFiles.put(module, moduleFiles);
-                                } else {
-                                    storedModuleFiles.addAll(moduleFiles);
+                                if (pcClassFile != null) {
+                                    files.add(new VirtualMetadataFile(module, true, pcClassFile,
+                                            Collections.singletonList(pcClassName),
+                                            Collections.singletonList(pcClassFile), contentRoots));
                                 }
                             }
                         }
                     }
+                    return files;
+                });
+
+                if (!moduleFiles.isEmpty()) {
+                    moduleBasedFiles.put(module, moduleFiles);
                 }
             }
-        });
+        }
 
         return moduleBasedFiles;
     }
 
-    private void refreshModuleOutputDirectories(Module module) {
+    private void refreshModuleOutputDirectories(Module module, StateSnapshot settings, EnhancementMetrics metrics) {
         // try to refresh the module output directory, if null.
         // this could happen after a maven clean.
-        boolean refreshed = refreshOutputDirectory(module, false);
-        if (state.isIncludeTestClasses()) {
-            refreshed |= refreshOutputDirectory(module, true);
-        }
-        if (refreshed) {
-            IdeaProjectUtils.waitUntilIndexIsReady(state.getEnhancerSupport(), module);
+        try (EnhancementMetrics.Measurement ignored = metrics.measure(EnhancementMetrics.Phase.OUTPUT_REFRESH, module)) {
+            refreshOutputDirectory(module, false);
+            if (settings.isIncludeTestClasses()) {
+                refreshOutputDirectory(module, true);
+            }
         }
     }
 
-    private boolean refreshOutputDirectory(Module module, boolean forTestClasses) {
+    private void refreshOutputDirectory(Module module, boolean forTestClasses) {
         String moduleOutputPath;
         if (CompilerPaths.getModuleOutputDirectory(module, forTestClasses) == null &&
                 (moduleOutputPath = CompilerPaths.getModuleOutputPath(module, forTestClasses)) != null) {
-            VfsUtil.markDirtyAndRefresh(false, true, true,
-                    new File(moduleOutputPath));
+            // the directory itself is sufficient, its content is read from disk
+            LocalFileSystem.getInstance().refreshAndFindFileByPath(moduleOutputPath);
+        }
+    }
+
+    /**
+     * Refresh the class files rewritten by the enhancer in one asynchronous, non-recursive batch.
+     *
+     * @param ctx          compile context
+     * @param writtenFiles files rewritten in all modules
+     */
+    private static void refreshWrittenFiles(final CompileContext ctx, final Collection<Path> writtenFiles) {
+        if (writtenFiles.isEmpty()) {
+            return;
+        }
+        try (EnhancementMetrics.Measurement ignored = EnhancementMetrics.of(ctx).measure(EnhancementMetrics.Phase.VFS_REFRESH, null)) {
+            LocalFileSystem.getInstance().refreshNioFiles(new LinkedHashSet<>(writtenFiles), true, false, null);
+        }
+    }
+
+    /**
+     * Checks if the compiler generated files in one of the module's output directories.
+     *
+     * @param module          the module
+     * @param settings        settings of the current build
+     * @param generatedOutput generated files (null if all modules are affected)
+     * @return true if the module has to be processed
+     */
+    private static boolean hasGeneratedOutput(final Module module,
+                                              final StateSnapshot settings,
+                                              @Nullable final GeneratedOutput generatedOutput) {
+        if (generatedOutput == null) {
             return true;
         }
-        return false;
+        return generatedOutput.containsOutputRoot(CompilerPaths.getModuleOutputPath(module, false))
+                || (settings.isIncludeTestClasses()
+                && generatedOutput.containsOutputRoot(CompilerPaths.getModuleOutputPath(module, true)));
+    }
+
+    /**
+     * Run a discovery step in a non-blocking read action: pending write actions cancel it and it is restarted
+     * afterwards, so the IDE stays responsive. The current progress indicator cancels it as well.<br/>
+     * <br/>
+     * Falls back to a blocking read action on the event dispatch thread or if read access is already held,
+     * as non-blocking read actions must not be awaited there.<br/>
+     * <br/>
+     * The step may run more than once, so it records metrics and metadata cache updates to its
+     * {@link ReadActionEffects} only, which are applied after the completed run.
+     *
+     * @param metrics     metrics of the current build
+     * @param computation the step
+     * @param <T>         result type
+     * @return the result
+     */
+    private <T> T computeInReadAction(final EnhancementMetrics metrics,
+                                      final Function<ReadActionEffects, T> computation) {
+        final ThrowableComputable<Pair<T, ReadActionEffects>, RuntimeException> run = () -> {
+            final ReadActionEffects effects = new ReadActionEffects(metrics);
+            return Pair.create(computation.apply(effects), effects);
+        };
+        final Pair<T, ReadActionEffects> result;
+        final Application application = ApplicationManager.getApplication();
+        if (application.isDispatchThread() || application.isReadAccessAllowed()) {
+            result = ReadAction.compute(run);
+        } else {
+            NonBlockingReadAction<Pair<T, ReadActionEffects>> readAction = ReadAction.nonBlocking(run::compute);
+            final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+            if (indicator != null) {
+                readAction = readAction.wrapProgress(indicator);
+            }
+            result = readAction.executeSynchronously();
+        }
+        result.second.apply(this.project);
+        return result.first;
     }
 
     /**
      * Retrieve metadata files.
      *
      * @param compileScope compile scope to use (null for default - can lead to invalid file list due to refactoring)
+     * @param settings     settings of the current build
+     * @return .
+     */
+    Map<Module, List<VirtualMetadataFile>> getMetadataFiles(@Nullable final CompileScope compileScope,
+                                                            final StateSnapshot settings) {
+        return this.getMetadataFiles(compileScope, settings, null, new OutputSnapshots(), EnhancementMetrics.NONE);
+    }
+
+    /**
+     * Retrieve metadata files.
+     *
+     * @param compileScope    compile scope to use (null for default - can lead to invalid file list due to refactoring)
+     * @param settings        settings of the current build
+     * @param generatedOutput if not null, only generated metadata files or metadata of generated class files is retrieved
+     * @param outputSnapshots snapshots of the output directories of the current build
+     * @param metrics         metrics of the current build
      * @return .
      */
     // TODO: cleanup, as this seems to be very hacky
     @SuppressWarnings("FeatureEnvy")
-    Map<Module, List<VirtualMetadataFile>> getMetadataFiles(@Nullable final CompileScope compileScope) {
-        final Set<String> extensions;
-        if (this.state.getMetaDataExtensions().isEmpty()) {
-            extensions = Collections.emptySet(); // State.DEFAULT_METADATA_EXTENSIONS; // no extensions provided -> disable search
-        } else {
-            extensions = this.state.getMetaDataExtensions();
-        }
+    Map<Module, List<VirtualMetadataFile>> getMetadataFiles(@Nullable final CompileScope compileScope,
+                                                            final StateSnapshot settings,
+                                                            @Nullable final GeneratedOutput generatedOutput,
+                                                            final OutputSnapshots outputSnapshots,
+                                                            final EnhancementMetrics metrics) {
+        // no extensions provided -> disable search
+        final Set<String> extensions = settings.getMetaDataExtensions();
+        final Set<String> enabledModules = settings.getEnabledModules();
 
         final CompileScope projectCompileScope = compileScope == null
                 ? CompilerManager.getInstance(this.project).createProjectCompileScope(this.project)
@@ -518,58 +840,69 @@ class Computable implements SourceInstrumentingCompiler {
 
         final Map<Module, List<VirtualMetadataFile>> metadataFiles = new LinkedHashMap<>();
 
+        // display paths are only computed on demand
+        final ContentRoots contentRoots = new ContentRoots(this.project);
 
-        final Application application = ApplicationManager.getApplication();
-        application.runReadAction(() -> {
-            final Module[] affectedModules = projectCompileScope.getAffectedModules();
 
-            for (final Module module : affectedModules) {
-                if (Computable.this.state.getEnabledModules()
-                        .contains(module.getName())) {
+        for (final Module module : projectCompileScope.getAffectedModules()) {
+            ProgressManager.checkCanceled();
+            if (enabledModules.contains(module.getName()) && hasGeneratedOutput(module, settings, generatedOutput)) {
 
+                // one read action per module, write actions may interrupt (and restart) it
+                final List<VirtualMetadataFile> moduleFiles = this.computeInReadAction(metrics, effects -> {
                     final Collection<VirtualFile> outputDirectories = new ArrayList<>(2);
                     outputDirectories.add(CompilerPaths.getModuleOutputDirectory(module, false));
-                    if (Computable.this.state.isIncludeTestClasses()) {
+                    if (settings.isIncludeTestClasses()) {
                         outputDirectories.add(CompilerPaths.getModuleOutputDirectory(module, true));
                     }
+
+                    final List<VirtualMetadataFile> files = new LinkedList<>();
                     for (final VirtualFile outputDirectory : outputDirectories) {
 
                         if (outputDirectory != null) {
 
-                            final List<VirtualMetadataFile> moduleFiles = new LinkedList<>();
+                            final OutputSnapshot outputSnapshot = outputSnapshots.get(outputDirectory);
                             for (final String extension : extensions) {
-                                final List<VirtualFile> metadataFilesPerExtension =
-                                        IdeaProjectUtils.findFilesByExtension(outputDirectory, extension);
-
                                 // remove non-parseable files
-                                for (final VirtualFile vf : metadataFilesPerExtension) {
+                                for (final String metadataPath : outputSnapshot.getFilesByExtension(extension)) {
+                                    ProgressManager.checkCanceled();
+                                    final VirtualFile vf = outputSnapshot.findFile(outputDirectory, metadataPath);
                                     final Set<String> classNames;
-                                    try {
-                                        classNames = MetadataParser.parseQualifiedClassNames(vf);
+                                    try (EnhancementMetrics.Measurement ignored = effects.measure(EnhancementMetrics.Phase.METADATA_PARSE, module)) {
+                                        classNames = MetadataCache.getInstance(this.project)
+                                                .parseQualifiedClassNames(vf, effects.getMetadataCacheUpdates());
                                     } catch (Exception e) {
                                         throw new IllegalArgumentException("parsing metadata error", e);
                                     }
+                                    // in incremental mode keep changed metadata files completely, otherwise only the compiled classes
+                                    final boolean metadataGenerated = generatedOutput == null
+                                            || generatedOutput.contains(outputDirectory.getPath(), metadataPath);
+                                    if (!metadataGenerated) {
+                                        classNames.removeIf(className -> !generatedOutput.contains(outputDirectory.getPath(),
+                                                IdeaProjectUtils.packageToPath(className) + CLASSFILE_EXTENSION));
+                                    }
                                     if (!classNames.isEmpty()) {
                                         final List<VirtualFile> classFiles = new ArrayList<>(classNames.size());
                                         for (final String className : classNames) {
                                             final String classNameAsPath = IdeaProjectUtils.packageToPath(className);
-                                            final VirtualFile classFile = outputDirectory.findFileByRelativePath(classNameAsPath + CLASSFILE_EXTENSION);
+                                            final VirtualFile classFile = outputSnapshot.findFile(outputDirectory, classNameAsPath + CLASSFILE_EXTENSION);
                                             classFiles.add(classFile);
                                         }
 
-                                        moduleFiles.add(new VirtualMetadataFile(module, false, vf, classNames, classFiles));
+                                        files.add(new VirtualMetadataFile(module, false, vf, classNames, classFiles, contentRoots));
                                     }
                                 }
                             }
-                            if (!moduleFiles.isEmpty()) {
-
-                                metadataFiles.put(module, moduleFiles);
-                            }
                         }
                     }
+                    return files;
+                });
+
+                if (!moduleFiles.isEmpty()) {
+                    metadataFiles.put(module, moduleFiles);
                 }
             }
-        });
+        }
         return metadataFiles;
     }
 
@@ -594,6 +927,12 @@ class Computable implements SourceInstrumentingCompiler {
 
     }
 
+    private void reportMetrics(final CompileContext ctx, final int count) {
+        final EnhancementReport report = EnhancementMetrics.of(ctx).toReport(count);
+        EnhancementReports.getInstance(this.project).add(report);
+        this.logMessage(ctx, CompilerMessageCategory.INFORMATION, "Enhancer " + report.toSummary());
+    }
+
     @SuppressWarnings("MagicCharacter")
     private void logMessage(final CompileContext ctx, final CompilerMessageCategory cat, final String msg) {
         final EnhancerSupport enhancerSupport = this.state.getEnhancerSupport();
@@ -0,0 +1,58 @@
+package org.openjpa.ide.idea;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectUtil;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Content root paths of modules and the project directory, used to compute display paths
+ * of {@link VirtualMetadataFile}s.<br/>
+ * <br/>
+ * Shared by all files found in one lookup, roots are only collected on first access (i.e. by the configuration dialog).
+ */
+final class ContentRoots {
+
+    private final Project project;
+
+    private final Map<Module, List<String>> contentRootPaths = new ConcurrentHashMap<>();
+
+    private volatile String projectBaseDirPath;
+
+    private volatile boolean projectBaseDirResolved;
+
+    ContentRoots(final Project project) {
+        this.project = project;
+    }
+
+    List<String> getContentRootPaths(final Module module) {
+        return this.contentRootPaths.computeIfAbsent(module, m -> ApplicationManager.getApplication().runReadAction(
+                (com.intellij.openapi.util.Computable<List<String>>) () -> {
+                    final VirtualFile[] contentRoots = ModuleRootManager.getInstance(m).getContentRoots();
+                    final List<String> paths = new ArrayList<>(contentRoots.length);
+                    for (final VirtualFile contentRoot : contentRoots) {
+                        paths.add(contentRoot.getPath());
+                    }
+                    return paths;
+                }));
+    }
+
+    @Nullable
+    String getProjectBaseDirPath() {
+        if (!this.projectBaseDirResolved) {
+            final VirtualFile projectBaseDir = ProjectUtil.guessProjectDir(this.project);
+            this.projectBaseDirPath = projectBaseDir == null ? null : projectBaseDir.getPath();
+            this.projectBaseDirResolved = true;
+        }
+        return this.projectBaseDirPath;
+    }
+
+}
@@ -0,0 +1,204 @@
+package org.openjpa.ide.idea;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import org.openjpa.ide.idea.config.AffectedModule;
+import org.openjpa.ide.idea.config.MetaDataOrClassFile;
+
+/**
+ * Affected modules, metadata files and annotated classes found for the settings page.<br/>
+ * <br/>
+ * Searched once in the background and shared by the tables of the settings page and by
+ * {@link ProjectConfigurable#apply()}, which filters the enabled modules and files without scanning again.
+ * The snapshot stays valid as long as the settings it was searched with are unchanged.
+ */
+final class DiscoverySnapshot {
+
+    private final String enhancerSupportId;
+
+    private final Set<String> enabledModules;
+
+    private final Set<String> metaDataExtensions;
+
+    private final boolean includeTestClasses;
+
+    private final boolean enhanceAllPersistentClasses;
+
+    private final List<String> moduleNames;
+
+    private final List<MetaDataOrClassFile> metadataFiles;
+
+    private final List<MetaDataOrClassFile> annotatedClassFiles;
+
+    private DiscoverySnapshot(final String enhancerSupportId,
+                              final Set<String> enabledModules,
+                              final Set<String> metaDataExtensions,
+                              final boolean includeTestClasses,
+                              final boolean enhanceAllPersistentClasses,
+                              final List<String> moduleNames,
+                              final List<MetaDataOrClassFile> metadataFiles,
+                              final List<MetaDataOrClassFile> annotatedClassFiles) {
+        this.enhancerSupportId = enhancerSupportId;
+        this.enabledModules = enabledModules;
+        this.metaDataExtensions = metaDataExtensions;
+        this.includeTestClasses = includeTestClasses;
+        this.enhanceAllPersistentClasses = enhanceAllPersistentClasses;
+        this.moduleNames = moduleNames;
+        this.metadataFiles = metadataFiles;
+        this.annotatedClassFiles = annotatedClassFiles;
+    }
+
+    /**
+     * Search affected modules and files, to be called from a background thread.
+     *
+     * @param project         the project
+     * @param state           settings used for the search
+     * @param enhancerService provides the search
+     * @param indicator       progress of the search
+     * @return the snapshot
+     * @throws com.intellij.openapi.project.IndexNotReadyException if the search requires the index while not ready
+     */
+    static DiscoverySnapshot discover(final Project project,
+                                      final State state,
+                                      final EnhancerService enhancerService,
+                                      final ProgressIndicator indicator) {
+        // settings are captured before searching, a concurrent apply invalidates the snapshot
+        final StateSnapshot settings = state.getSnapshot();
+        final String enhancerSupportId = settings.getEnhancerSupport().getId();
+        final Set<String> enabledModules = settings.getEnabledModules();
+        final Set<String> metaDataExtensions = settings.getMetaDataExtensions();
+        final boolean includeTestClasses = settings.isIncludeTestClasses();
+        final boolean enhanceAll = settings.isEnhanceAllPersistentClasses();
+
+        indicator.setIndeterminate(false);
+        indicator.setText("Searching affected modules");
+        indicator.setFraction(0.0);
+        final List<String> moduleNames = ReadAction.compute(() -> {
+            final List<String> names = new ArrayList<>();
+            for (final Module module : IdeaProjectUtils.getDefaultAffectedModules(settings.getEnhancerSupport(), project, true)) {
+                names.add(module.getName());
+            }
+            return names;
+        });
+
+        final List<MetaDataOrClassFile> metadataFiles;
+        final List<MetaDataOrClassFile> annotatedClassFiles;
+        if (enhanceAll) {
+            // do not read the annotated classes in "enhanceAllPersistentClasses mode"
+            metadataFiles = Collections.emptyList();
+            annotatedClassFiles = Collections.emptyList();
+        } else {
+            indicator.checkCanceled();
+            indicator.setText("Searching metadata files");
+            indicator.setFraction(0.2);
+            metadataFiles = createFilesGuiModel(enhancerService.getMetadataFiles(settings));
+
+            indicator.checkCanceled();
+            indicator.setText("Searching annotated classes");
+            indicator.setFraction(0.5);
+            annotatedClassFiles = createFilesGuiModel(enhancerService.getAnnotatedClassFiles(settings));
+        }
+        indicator.setFraction(1.0);
+
+        return new DiscoverySnapshot(enhancerSupportId, enabledModules, metaDataExtensions, includeTestClasses, enhanceAll,
+                moduleNames, metadataFiles, annotatedClassFiles);
+    }
+
+    //
+    // Methods
+    //
+
+    /**
+     * @param state current settings
+     * @return true if searching with the current settings would find the same modules and files
+     */
+    boolean isValidFor(final State state) {
+        return this.enhancerSupportId.equals(state.getEnhancerSupport().getId())
+                && this.enabledModules.equals(state.getEnabledModules())
+                && this.metaDataExtensions.equals(state.getMetaDataExtensions())
+                && this.includeTestClasses == state.isIncludeTestClasses()
+                && this.enhanceAllPersistentClasses == state.isEnhanceAllPersistentClasses();
+    }
+
+    List<String> getModuleNames() {
+        return Collections.unmodifiableList(this.moduleNames);
+    }
+
+    /**
+     * @param modules modules to include
+     * @return class names of the annotated classes in the given modules
+     */
+    Set<String> getAnnotatedClassNames(final Collection<String> modules) {
+        final Set<String> classNames = new HashSet<>(this.annotatedClassFiles.size());
+        for (final MetaDataOrClassFile file : this.annotatedClassFiles) {
+            if (modules.contains(file.getModuleName())) {
+                classNames.add(file.getClassName());
+            }
+        }
+        return classNames;
+    }
+
+    //
+    // Gui model helper methods, each call creates new rows as the tables modify them
+    //
+
+    List<AffectedModule> createAffectedModulesGuiModel(final Set<String> enabledModules) {
+        final List<AffectedModule> moduleList = new ArrayList<>(this.moduleNames.size());
+        for (final String moduleName : this.moduleNames) {
+            moduleList.add(new AffectedModule(enabledModules.contains(moduleName), moduleName));
+        }
+        return moduleList;
+    }
+
+    List<MetaDataOrClassFile> createMetadataFilesGuiModel() {
+        final List<MetaDataOrClassFile> copy = new ArrayList<>(this.metadataFiles.size());
+        for (final MetaDataOrClassFile file : this.metadataFiles) {
+            copy.add(new MetaDataOrClassFile(file.getModuleName(), file.getFileName(), file.getPath(), file.getClassName(), true));
+        }
+        return copy;
+    }
+
+    /**
+     * @param settings selects the enabled classes, all classes are enabled if neither classes nor patterns are set
+     * @return rows of the annotated classes
+     */
+    List<MetaDataOrClassFile> createAnnotatedClassFilesGuiModel(final StateSnapshot settings) {
+        final boolean allEnabled = settings.getEnabledFiles().isEmpty() && settings.getIncludePatterns().isEmpty();
+        final List<MetaDataOrClassFile> copy = new ArrayList<>(this.annotatedClassFiles.size());
+        for (final MetaDataOrClassFile file : this.annotatedClassFiles) {
+            final boolean enabled = allEnabled || settings.isClassEnabled(file.getClassName());
+            copy.add(new MetaDataOrClassFile(file.getModuleName(), file.getFileName(), file.getPath(), file.getClassName(), enabled));
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("FeatureEnvy")
+    private static List<MetaDataOrClassFile> createFilesGuiModel(final Map<Module,
+            List<VirtualMetadataFile>> metaDataOrAnnotatedClassFiles) {
+
+        final List<MetaDataOrClassFile> metaDataOrClassFiles = new ArrayList<>();
+        for (final Map.Entry<Module, List<VirtualMetadataFile>> moduleListEntry : metaDataOrAnnotatedClassFiles.entrySet()) {
+            for (final VirtualMetadataFile vf : moduleListEntry.getValue()) {
+                for (final String mfClassName : vf.getClassNames()) {
+                    final Module moduleListEntryKey = moduleListEntry.getKey();
+                    metaDataOrClassFiles.add(new MetaDataOrClassFile(moduleListEntryKey.getName(),
+                            vf.getDisplayFilename(),
+                            vf.getDisplayPath(),
+                            mfClassName, true));
+                }
+            }
+        }
+        return metaDataOrClassFiles;
+    }
+
+}
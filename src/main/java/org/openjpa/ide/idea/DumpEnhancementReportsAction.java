@@ -0,0 +1,51 @@
+package org.openjpa.ide.idea;
+
+import java.util.List;
+
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Writes the metrics of the last builds (see {@link EnhancementReports}) to the IDE log and displays them.
+ */
+public class DumpEnhancementReportsAction extends AnAction {
+
+    private static final Logger LOG = Logger.getInstance(DumpEnhancementReportsAction.class);
+
+    @Override
+    public void actionPerformed(final @NotNull AnActionEvent anActionEvent) {
+        final Project project = CommonDataKeys.PROJECT.getData(anActionEvent.getDataContext());
+        if (project == null) {
+            return;
+        }
+        final List<EnhancementReport> reports = EnhancementReports.getInstance(project).getReports();
+        final String text;
+        if (reports.isEmpty()) {
+            text = "No enhancement reports recorded yet.";
+        } else {
+            final StringBuilder sb = new StringBuilder();
+            for (final EnhancementReport report : reports) {
+                sb.append(report.toDetails()).append('\n');
+            }
+            text = sb.toString();
+        }
+        LOG.info("OpenJpa Enhancer reports of project " + project.getName() + ":\n" + text);
+        Messages.showInfoMessage(project, text, "OpenJpa Enhancer Reports");
+    }
+
+    @Override
+    public void update(final @NotNull AnActionEvent anActionEvent) {
+        anActionEvent.getPresentation().setEnabled(CommonDataKeys.PROJECT.getData(anActionEvent.getDataContext()) != null);
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
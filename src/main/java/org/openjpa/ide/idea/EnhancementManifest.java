@@ -0,0 +1,321 @@
+package org.openjpa.ide.idea;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Per module record of enhanced class files, persisted between IDE sessions.<br/>
+ * <br/>
+ * For every class file the fingerprint (size, modification time and content hash) before and after
+ * enhancement is stored, so a class file still matching its post-enhancement fingerprint does not have to be
+ * passed to the enhancer again. The manifest is only valid for the enhancer version and options it was
+ * recorded with.<br/>
+ * <br/>
+ * Binary layout (big endian), read at once into a heap buffer:
+ * <pre>
+ * int     magic
+ * int     format version
+ * int     options
+ * int     enhancer version length, byte[] enhancer version (UTF-8)
+ * int     entry count
+ * entries: int path length, byte[] path (UTF-8),
+ *          long pre size, long pre mtime, long pre hash,
+ *          long post size, long post mtime, long post hash
+ * </pre>
+ */
+final class EnhancementManifest {
+
+    private static final int MAGIC = 0x4F4A504D;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final Path file;
+
+    private final String enhancerVersion;
+
+    private final int options;
+
+    private final Map<String, Entry> entries;
+
+    private boolean dirty;
+
+    private EnhancementManifest(final Path file,
+                                final String enhancerVersion,
+                                final int options,
+                                final Map<String, Entry> entries) {
+        this.file = file;
+        this.enhancerVersion = enhancerVersion;
+        this.options = options;
+        this.entries = entries;
+    }
+
+    //
+    // Loading and saving
+    //
+
+    /**
+     * Load manifest from file.<br/>
+     * An empty manifest is returned if the file does not exist, is corrupt or was written for another enhancer version or options.
+     *
+     * @param file            the manifest file
+     * @param enhancerVersion the actual enhancer version
+     * @param options         the actual enhancer options
+     * @return the manifest
+     */
+    static EnhancementManifest load(final Path file, final String enhancerVersion, final int options) {
+        Map<String, Entry> entries;
+        try {
+            // not memory mapped, a mapping keeps the file locked on Windows until garbage collected, failing save
+            entries = read(ByteBuffer.wrap(Files.readAllBytes(file)), enhancerVersion, options);
+        } catch (NoSuchFileException ignored) {
+            entries = new HashMap<>();
+        } catch (IOException | RuntimeException ignored) {
+            // corrupt manifest, enhance everything again
+            entries = new HashMap<>();
+        }
+        return new EnhancementManifest(file, enhancerVersion, options, entries);
+    }
+
+    private static Map<String, Entry> read(final ByteBuffer buffer, final String enhancerVersion, final int options) {
+        final Map<String, Entry> entries = new HashMap<>();
+        if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || buffer.getInt() != options) {
+            return entries;
+        }
+        if (!enhancerVersion.equals(readString(buffer))) {
+            return entries;
+        }
+        final int count = buffer.getInt();
+        for (int i = 0; i < count; ++i) {
+            final String path = readString(buffer);
+            final Fingerprint pre = new Fingerprint(buffer.getLong(), buffer.getLong(), buffer.getLong());
+            final Fingerprint post = new Fingerprint(buffer.getLong(), buffer.getLong(), buffer.getLong());
+            entries.put(path, new Entry(pre, post));
+        }
+        return entries;
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        // the length is read from the file, a corrupt one must not allocate more than the file holds
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("corrupt manifest, string length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write the manifest to its file if modified (atomically replacing the previous version).
+     *
+     * @throws IOException .
+     */
+    synchronized void save() throws IOException {
+        if (!this.dirty) {
+            return;
+        }
+        Files.createDirectories(this.file.getParent());
+        final Path tmpFile = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+        try (OutputStream os = Files.newOutputStream(tmpFile);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(this.options);
+            writeString(out, this.enhancerVersion);
+            out.writeInt(this.entries.size());
+            for (final Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+                writeString(out, entry.getKey());
+                writeFingerprint(out, entry.getValue().pre);
+                writeFingerprint(out, entry.getValue().post);
+            }
+        }
+        Files.move(tmpFile, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.dirty = false;
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeFingerprint(final DataOutputStream out, final Fingerprint fingerprint) throws IOException {
+        out.writeLong(fingerprint.size);
+        out.writeLong(fingerprint.modified);
+        out.writeLong(fingerprint.hash);
+    }
+
+    //
+    // Methods
+    //
+
+    boolean isValidFor(final String enhancerVersion, final int options) {
+        return this.enhancerVersion.equals(enhancerVersion) && this.options == options;
+    }
+
+    /**
+     * Checks if the class file still matches its recorded post-enhancement fingerprint.
+     *
+     * @param classFile the class file
+     * @return true if the file does not have to be enhanced again
+     */
+    synchronized boolean isEnhanced(final Path classFile) {
+        final Entry entry = this.entries.get(classFile.toString());
+        return entry != null && matches(classFile, entry.post);
+    }
+
+    /**
+     * Checks if a (metadata) file did not change since it has been recorded via {@link #recordUnchanged(Path)}.
+     *
+     * @param file the file
+     * @return true if unchanged
+     */
+    synchronized boolean isUnchanged(final Path file) {
+        return this.isEnhanced(file);
+    }
+
+    /**
+     * Record a file that influences enhancement, but is not modified by it (e.g. xml metadata).
+     *
+     * @param file the file
+     * @throws IOException .
+     */
+    synchronized void recordUnchanged(final Path file) throws IOException {
+        final Fingerprint fingerprint = Fingerprint.of(file);
+        this.entries.put(file.toString(), new Entry(fingerprint, fingerprint));
+        this.dirty = true;
+    }
+
+    /**
+     * Record a class file after being enhanced.
+     *
+     * @param classFile the class file
+     * @param pre       fingerprint before enhancement
+     * @throws IOException .
+     */
+    synchronized void recordEnhanced(final Path classFile, final Fingerprint pre) throws IOException {
+        this.entries.put(classFile.toString(), new Entry(pre, Fingerprint.of(classFile)));
+        this.dirty = true;
+    }
+
+    synchronized void remove(final Path file) {
+        if (this.entries.remove(file.toString()) != null) {
+            this.dirty = true;
+        }
+    }
+
+    private static boolean matches(final Path file, final Fingerprint expected) {
+        final BasicFileAttributes attributes = readAttributes(file);
+        if (attributes == null || attributes.size() != expected.size) {
+            return false;
+        }
+        if (attributes.lastModifiedTime().toMillis() == expected.modified) {
+            return true;
+        }
+        // touched, but maybe not modified
+        try {
+            return hash(Files.readAllBytes(file)) == expected.hash;
+        } catch (IOException ignored) {
+            return false;
+        }
+    }
+
+    @Nullable
+    private static BasicFileAttributes readAttributes(final Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * 64 bit content hash (truncated SHA-256).
+     *
+     * @param content the content to hash
+     * @return the hash
+     */
+    static long hash(final byte[] content) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return ByteBuffer.wrap(digest.digest(content)).getLong();
+    }
+
+    //
+    // Nested classes
+    //
+
+    /**
+     * Size, modification time and content hash of a file.
+     */
+    static final class Fingerprint {
+
+        private final long size;
+
+        private final long modified;
+
+        private final long hash;
+
+        Fingerprint(final long size, final long modified, final long hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+
+        static Fingerprint of(final Path file) throws IOException {
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            final byte[] content = Files.readAllBytes(file);
+            return new Fingerprint(attributes.size(), attributes.lastModifiedTime().toMillis(), hash(content));
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Fingerprint that = (Fingerprint) o;
+            return this.size == that.size && this.modified == that.modified && this.hash == that.hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.size, this.modified, this.hash);
+        }
+    }
+
+    private static final class Entry {
+
+        private final Fingerprint pre;
+
+        private final Fingerprint post;
+
+        private Entry(final Fingerprint pre, final Fingerprint post) {
+            this.pre = pre;
+            this.post = post;
+        }
+    }
+
+}
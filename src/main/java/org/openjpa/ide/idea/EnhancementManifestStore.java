@@ -0,0 +1,76 @@
+package org.openjpa.ide.idea;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+
+/**
+ * Holds the {@link EnhancementManifest}s of a project's modules.<br/>
+ * <br/>
+ * Manifests are stored in the IDE system directory ('openjpa-enhancer/&lt;project hash&gt;/')
+ * and kept in memory once loaded.
+ */
+@Service(Service.Level.PROJECT)
+public final class EnhancementManifestStore {
+
+    private static final String MANIFEST_DIRECTORY = "openjpa-enhancer";
+
+    private static final String MANIFEST_EXTENSION = ".manifest";
+
+    private final Path directory;
+
+    private final Map<String, EnhancementManifest> manifests = new ConcurrentHashMap<>();
+
+    EnhancementManifestStore(Project project) {
+        this.directory = Path.of(PathManager.getSystemPath(), MANIFEST_DIRECTORY, project.getLocationHash());
+    }
+
+    static EnhancementManifestStore getInstance(Project project) {
+        return project.getService(EnhancementManifestStore.class);
+    }
+
+    /**
+     * Get the manifest of a module, a manifest recorded with another enhancer version or options is discarded.
+     *
+     * @param module          the module
+     * @param enhancerVersion actual enhancer version
+     * @param options         actual enhancer options, see {@link #toOptions(State)}
+     * @return the manifest
+     */
+    EnhancementManifest getManifest(final Module module, final String enhancerVersion, final int options) {
+        return this.manifests.compute(module.getName(), (name, manifest) ->
+                manifest != null && manifest.isValidFor(enhancerVersion, options)
+                        ? manifest
+                        : EnhancementManifest.load(this.getManifestFile(name), enhancerVersion, options));
+    }
+
+    private Path getManifestFile(final String moduleName) {
+        final String fileName = moduleName.replaceAll("[^A-Za-z0-9._-]", "_")
+                + '-' + Integer.toHexString(moduleName.hashCode()) + MANIFEST_EXTENSION;
+        return this.directory.resolve(fileName);
+    }
+
+    /**
+     * Encode enhancer options affecting the enhanced bytecode.
+     *
+     * @param settings plugin settings
+     * @return options bit set
+     */
+    static int toOptions(final StateSnapshot settings) {
+        int options = 0;
+        if (settings.isAddDefaultConstructor()) {
+            options |= 1;
+        }
+        if (settings.isEnforcePropertyRestrictions()) {
+            options |= 1 << 1;
+        }
+        options |= settings.getApi().ordinal() << 8;
+        return options;
+    }
+
+}
@@ -0,0 +1,253 @@
+package org.openjpa.ide.idea;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.intellij.openapi.compiler.CompileContext;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.util.Key;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Collects wall time, cpu time and allocated bytes per enhancement phase and module during a build.<br/>
+ * <br/>
+ * Measurements are taken on the thread doing the work, hence parallel module enhancement is accounted per module.
+ * The collected values are turned into an {@link EnhancementReport} at the end of the build.<br/>
+ * <br/>
+ * Each measurement is also emitted as {@link EnhancementPhaseEvent}, if recorded by Java Flight Recorder.
+ */
+final class EnhancementMetrics {
+
+    /**
+     * Phases of the enhancement pipeline
+     */
+    enum Phase {
+        OUTPUT_REFRESH("output refresh"),
+        INDEX_WAIT("index wait"),
+        ANNOTATION_SEARCH("annotation search"),
+        METADATA_PARSE("metadata parse"),
+        CLASSLOADER("classloader"),
+        ENHANCE("enhancer run"),
+        VFS_REFRESH("vfs refresh");
+
+        private final String displayName;
+
+        Phase(final String displayName) {
+            this.displayName = displayName;
+        }
+
+        String getDisplayName() {
+            return this.displayName;
+        }
+    }
+
+    /**
+     * Metrics not bound to a build (e.g. lookups of the configuration dialog), nothing is recorded
+     */
+    static final EnhancementMetrics NONE = new EnhancementMetrics(false);
+
+    /**
+     * Name used for measurements not related to a single module
+     */
+    static final String PROJECT_WIDE = "<project>";
+
+    private static final Key<EnhancementMetrics> KEY = Key.create("org.openjpa.ide.idea.EnhancementMetrics");
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private static final Measurement NO_MEASUREMENT = () -> {
+        // nothing to record
+    };
+
+    private final boolean enabled;
+
+    private final long startNanos = System.nanoTime();
+
+    private final long startMillis = System.currentTimeMillis();
+
+    /**
+     * Module name to values (wall nanos, cpu nanos, allocated bytes) per phase
+     */
+    private final Map<String, Map<Phase, long[]>> values = new LinkedHashMap<>();
+
+    private EnhancementMetrics(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Metrics of the current build, created on first access.
+     *
+     * @param compileContext the compile context of the build
+     * @return .
+     */
+    static EnhancementMetrics of(final CompileContext compileContext) {
+        synchronized (compileContext) {
+            EnhancementMetrics metrics = compileContext.getUserData(KEY);
+            if (metrics == null) {
+                metrics = new EnhancementMetrics(true);
+                compileContext.putUserData(KEY, metrics);
+            }
+            return metrics;
+        }
+    }
+
+    /**
+     * Start measuring a phase on the current thread.
+     *
+     * @param phase  the phase
+     * @param module the module or null if not module related
+     * @return the measurement, to be closed when the phase is done
+     */
+    Measurement measure(final Phase phase, @Nullable final Module module) {
+        if (!this.enabled) {
+            return NO_MEASUREMENT;
+        }
+        final Sample sample = this.sample(phase, module);
+        return () -> {
+            sample.close();
+            sample.commit();
+        };
+    }
+
+    /**
+     * Start measuring a phase on the current thread, recorded only once committed after closing it.<br/>
+     * Used within steps that may be canceled and restarted (e.g. non-blocking read actions), so only the
+     * completed run is recorded.
+     *
+     * @param phase  the phase
+     * @param module the module or null if not module related
+     * @return the sample, to be closed when the phase is done
+     */
+    Sample sample(final Phase phase, @Nullable final Module module) {
+        return new Sample(this, phase, module == null ? PROJECT_WIDE : module.getName());
+    }
+
+    private synchronized void record(final String moduleName, final Phase phase, final long wall, final long cpu, final long allocated) {
+        final long[] phaseValues = this.values.computeIfAbsent(moduleName, k -> new EnumMap<>(Phase.class))
+                .computeIfAbsent(phase, k -> new long[3]);
+        phaseValues[0] += wall;
+        phaseValues[1] += cpu;
+        phaseValues[2] += allocated;
+    }
+
+    /**
+     * Create the report of the build.
+     *
+     * @param enhancedCount number of enhanced classes
+     * @return .
+     */
+    synchronized EnhancementReport toReport(final int enhancedCount) {
+        final Map<String, Map<Phase, EnhancementReport.Values>> reportValues = new LinkedHashMap<>();
+        for (final Map.Entry<String, Map<Phase, long[]>> module : this.values.entrySet()) {
+            final Map<Phase, EnhancementReport.Values> phases = new EnumMap<>(Phase.class);
+            for (final Map.Entry<Phase, long[]> phase : module.getValue().entrySet()) {
+                final long[] phaseValues = phase.getValue();
+                phases.put(phase.getKey(), new EnhancementReport.Values(phaseValues[0], phaseValues[1], phaseValues[2]));
+            }
+            reportValues.put(module.getKey(), phases);
+        }
+        return new EnhancementReport(this.startMillis, System.nanoTime() - this.startNanos, enhancedCount, reportValues);
+    }
+
+    private static long currentThreadCpuTime() {
+        return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0L;
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+            if (sunThreadMXBean.isThreadAllocatedMemorySupported() && sunThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+                return sunThreadMXBean.getCurrentThreadAllocatedBytes();
+            }
+        }
+        return 0L;
+    }
+
+    //
+    // Nested classes
+    //
+
+    /**
+     * Running measurement of a phase.
+     */
+    interface Measurement extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    /**
+     * Measurement of a phase, recorded by {@link #commit()}.
+     */
+    static final class Sample implements Measurement {
+
+        private final EnhancementMetrics metrics;
+
+        private final Phase phase;
+
+        private final String moduleName;
+
+        @Nullable
+        private final EnhancementPhaseEvent event;
+
+        private final long startWall;
+
+        private final long startCpu;
+
+        private final long startAllocated;
+
+        private long wall = -1;
+
+        private long cpu;
+
+        private long allocated;
+
+        private Sample(final EnhancementMetrics metrics, final Phase phase, final String moduleName) {
+            this.metrics = metrics;
+            this.phase = phase;
+            this.moduleName = moduleName;
+            if (metrics.enabled) {
+                this.event = new EnhancementPhaseEvent();
+                this.event.begin();
+                this.startWall = System.nanoTime();
+                this.startCpu = currentThreadCpuTime();
+                this.startAllocated = currentThreadAllocatedBytes();
+            } else {
+                this.event = null;
+                this.startWall = 0;
+                this.startCpu = 0;
+                this.startAllocated = 0;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (this.event == null || this.wall >= 0) {
+                return;
+            }
+            this.wall = System.nanoTime() - this.startWall;
+            this.cpu = currentThreadCpuTime() - this.startCpu;
+            this.allocated = currentThreadAllocatedBytes() - this.startAllocated;
+            this.event.end();
+        }
+
+        /**
+         * Record the closed sample, may be called from another thread.
+         */
+        void commit() {
+            if (this.event == null || this.wall < 0) {
+                return;
+            }
+            this.metrics.record(this.moduleName, this.phase, this.wall, this.cpu, this.allocated);
+            if (this.event.shouldCommit()) {
+                this.event.module = this.moduleName;
+                this.event.phase = this.phase.getDisplayName();
+                this.event.commit();
+            }
+        }
+    }
+
+}
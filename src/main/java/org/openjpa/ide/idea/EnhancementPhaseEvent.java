@@ -0,0 +1,23 @@
+package org.openjpa.ide.idea;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event for a phase of the enhancement pipeline, see {@link EnhancementMetrics.Phase}.
+ */
+@Name("org.openjpa.ide.idea.EnhancementPhase")
+@Label("Enhancement Phase")
+@Category({"OpenJPA", "Enhancer"})
+@Description("Phase of the OpenJpa enhancer pipeline of a build")
+final class EnhancementPhaseEvent extends jdk.jfr.Event {
+
+    @Label("Module")
+    String module;
+
+    @Label("Phase")
+    String phase;
+
+}
@@ -0,0 +1,154 @@
+package org.openjpa.ide.idea;
+
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable metrics of a single build, see {@link EnhancementMetrics}.
+ */
+final class EnhancementReport {
+
+    private final long startMillis;
+
+    private final long wallNanos;
+
+    private final int enhancedCount;
+
+    private final Map<String, Map<EnhancementMetrics.Phase, Values>> values;
+
+    EnhancementReport(final long startMillis,
+                      final long wallNanos,
+                      final int enhancedCount,
+                      final Map<String, Map<EnhancementMetrics.Phase, Values>> values) {
+        this.startMillis = startMillis;
+        this.wallNanos = wallNanos;
+        this.enhancedCount = enhancedCount;
+        this.values = Collections.unmodifiableMap(values);
+    }
+
+    long getStartMillis() {
+        return this.startMillis;
+    }
+
+    long getWallNanos() {
+        return this.wallNanos;
+    }
+
+    int getEnhancedCount() {
+        return this.enhancedCount;
+    }
+
+    /**
+     * @return values per phase by module name
+     */
+    Map<String, Map<EnhancementMetrics.Phase, Values>> getValues() {
+        return this.values;
+    }
+
+    /**
+     * @return values per phase summed up over all modules
+     */
+    Map<EnhancementMetrics.Phase, Values> getTotals() {
+        final Map<EnhancementMetrics.Phase, Values> totals = new EnumMap<>(EnhancementMetrics.Phase.class);
+        for (final Map<EnhancementMetrics.Phase, Values> phases : this.values.values()) {
+            for (final Map.Entry<EnhancementMetrics.Phase, Values> phase : phases.entrySet()) {
+                totals.merge(phase.getKey(), phase.getValue(), Values::plus);
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * One line summary, wall times per phase summed up over all modules.
+     *
+     * @return .
+     */
+    String toSummary() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("metrics: ").append(this.enhancedCount).append(" classes in ").append(toMillis(this.wallNanos)).append(" ms");
+        final Map<EnhancementMetrics.Phase, Values> totals = this.getTotals();
+        if (!totals.isEmpty()) {
+            sb.append(" (");
+            boolean first = true;
+            for (final Map.Entry<EnhancementMetrics.Phase, Values> phase : totals.entrySet()) {
+                if (!first) {
+                    sb.append(", ");
+                }
+                first = false;
+                sb.append(phase.getKey().getDisplayName()).append(' ').append(toMillis(phase.getValue().getWallNanos())).append(" ms");
+            }
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Multi line report including all values per module.
+     *
+     * @return .
+     */
+    String toDetails() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(this.startMillis)))
+                .append(": ").append(this.toSummary()).append('\n');
+        for (final Map.Entry<String, Map<EnhancementMetrics.Phase, Values>> module : this.values.entrySet()) {
+            sb.append("  ").append(module.getKey()).append('\n');
+            for (final Map.Entry<EnhancementMetrics.Phase, Values> phase : module.getValue().entrySet()) {
+                final Values phaseValues = phase.getValue();
+                sb.append("    ").append(phase.getKey().getDisplayName())
+                        .append(": wall ").append(toMillis(phaseValues.getWallNanos())).append(" ms")
+                        .append(", cpu ").append(toMillis(phaseValues.getCpuNanos())).append(" ms")
+                        .append(", allocated ").append(phaseValues.getAllocatedBytes() / 1024L).append(" KB")
+                        .append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static long toMillis(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    //
+    // Nested classes
+    //
+
+    /**
+     * Measured values of a phase.
+     */
+    static final class Values {
+
+        private final long wallNanos;
+
+        private final long cpuNanos;
+
+        private final long allocatedBytes;
+
+        Values(final long wallNanos, final long cpuNanos, final long allocatedBytes) {
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        long getWallNanos() {
+            return this.wallNanos;
+        }
+
+        long getCpuNanos() {
+            return this.cpuNanos;
+        }
+
+        long getAllocatedBytes() {
+            return this.allocatedBytes;
+        }
+
+        private Values plus(final Values other) {
+            return new Values(this.wallNanos + other.wallNanos, this.cpuNanos + other.cpuNanos, this.allocatedBytes + other.allocatedBytes);
+        }
+    }
+
+}
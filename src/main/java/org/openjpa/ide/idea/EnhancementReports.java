@@ -0,0 +1,39 @@
+package org.openjpa.ide.idea;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+
+/**
+ * Keeps the {@link EnhancementReport}s of the last builds (see {@link DumpEnhancementReportsAction}).
+ */
+@Service(Service.Level.PROJECT)
+public final class EnhancementReports {
+
+    static final int MAX_REPORTS = 10;
+
+    private final Deque<EnhancementReport> reports = new ArrayDeque<>(MAX_REPORTS);
+
+    public static EnhancementReports getInstance(Project project) {
+        return project.getService(EnhancementReports.class);
+    }
+
+    synchronized void add(final EnhancementReport report) {
+        if (this.reports.size() == MAX_REPORTS) {
+            this.reports.removeFirst();
+        }
+        this.reports.addLast(report);
+    }
+
+    /**
+     * @return reports, oldest first
+     */
+    synchronized List<EnhancementReport> getReports() {
+        return new ArrayList<>(this.reports);
+    }
+
+}
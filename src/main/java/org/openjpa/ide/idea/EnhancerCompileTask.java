@@ -18,7 +18,8 @@ public class EnhancerCompileTask implements CompileTask {
     @Override
     public boolean execute(@NotNull CompileContext context) {
         lazyInit(context);
-        dNEComputable.process(context, dNEComputable.getProcessingItems(context));
+        final GeneratedOutput generatedOutput = CompilerOutputTracker.getInstance(context.getProject()).drain(context.isRebuild());
+        dNEComputable.process(context, dNEComputable.getProcessingItems(context, generatedOutput));
         return true;
     }
 }
@@ -26,14 +26,20 @@ public final class EnhancerService {
         return dNEComputable;
     }
 
-    Map<Module, List<VirtualMetadataFile>> getAnnotatedClassFiles() {
+    /**
+     * @param settings settings to search with, read once by the caller
+     */
+    Map<Module, List<VirtualMetadataFile>> getAnnotatedClassFiles(final StateSnapshot settings) {
         return this.dNEComputable == null ? new LinkedHashMap<>()
-                : this.dNEComputable.getAnnotatedClassFiles(null);
+                : this.dNEComputable.getAnnotatedClassFiles(null, settings);
     }
 
-    Map<Module, List<VirtualMetadataFile>> getMetadataFiles() {
+    /**
+     * @param settings settings to search with, read once by the caller
+     */
+    Map<Module, List<VirtualMetadataFile>> getMetadataFiles(final StateSnapshot settings) {
         return this.dNEComputable == null ? new LinkedHashMap<>()
-                : this.dNEComputable.getMetadataFiles(null);
+                : this.dNEComputable.getMetadataFiles(null, settings);
     }
 
     boolean isEnhancerInitialized() {
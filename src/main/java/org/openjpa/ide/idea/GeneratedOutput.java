@@ -0,0 +1,57 @@
+package org.openjpa.ide.idea;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import com.intellij.openapi.util.io.FileUtil;
+
+/**
+ * Files (output root relative paths) the compiler reported as generated since the last enhancement run.<br/>
+ * <br/>
+ * Used to restrict enhancement to the classes actually produced by an incremental build,
+ * see {@link CompilerOutputTracker}.
+ */
+final class GeneratedOutput {
+
+    private final Map<String, Set<String>> filesByOutputRoot;
+
+    GeneratedOutput(final Map<String, Set<String>> filesByOutputRoot) {
+        this.filesByOutputRoot = Collections.unmodifiableMap(filesByOutputRoot);
+    }
+
+    boolean isEmpty() {
+        return this.filesByOutputRoot.isEmpty();
+    }
+
+    /**
+     * Checks if the compiler generated any file below the provided output directory.
+     *
+     * @param outputRoot output directory path
+     * @return true if at least one file was generated
+     */
+    boolean containsOutputRoot(final String outputRoot) {
+        return outputRoot != null && this.filesByOutputRoot.containsKey(FileUtil.toSystemIndependentName(outputRoot));
+    }
+
+    /**
+     * Checks if the compiler generated the provided file.
+     *
+     * @param outputRoot   output directory path
+     * @param relativePath path relative to the output directory
+     * @return true if the file was generated
+     */
+    boolean contains(final String outputRoot, final String relativePath) {
+        final Set<String> files = this.filesByOutputRoot.get(FileUtil.toSystemIndependentName(outputRoot));
+        return files != null && files.contains(FileUtil.toSystemIndependentName(relativePath));
+    }
+
+    int size() {
+        int size = 0;
+        for (final Set<String> files : this.filesByOutputRoot.values()) {
+            size += files.size();
+        }
+        return size;
+    }
+
+}
@@ -2,24 +2,29 @@ package org.openjpa.ide.idea;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import com.intellij.ide.highlighter.JavaFileType;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.compiler.CompileScope;
 import com.intellij.openapi.compiler.CompilerManager;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.IndexNotReadyException;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.JavaPsiFacade;
 import com.intellij.psi.PsiClass;
+import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.searches.AllClassesSearch;
 import com.intellij.psi.search.searches.AnnotatedElementsSearch;
 import com.intellij.util.Query;
+import com.intellij.util.indexing.FileBasedIndex;
 
 import org.openjpa.ide.idea.integration.EnhancerSupport;
 
@@ -28,6 +33,8 @@ import org.openjpa.ide.idea.integration.EnhancerSupport;
  */
 final class IdeaProjectUtils {
 
+    private static final long CANCELLATION_CHECK_INTERVAL_MILLIS = 100;
+
     //
     // Private constructor
     //
@@ -74,94 +81,51 @@ final class IdeaProjectUtils {
     }
 
     /**
-     * Find virtual files by extension by traversing the directory tree.
-     *
-     * @param rootDir   the directory to start with
-     * @param extension the extension to search for
-     * @return List of virtual files matching the file extension
-     */
-    static List<VirtualFile> findFilesByExtension(final VirtualFile rootDir,
-                                                  final String extension) {
-
-        final List<VirtualFile> children = new LinkedList<>();
-
-        // simply iterate directory for finding files
-        for (final VirtualFile entry : rootDir.getChildren()) {
-            if (entry.isDirectory()) {
-                //
-                // recursive invocation for directories
-                children.addAll(findFilesByExtension(entry, extension));
-
-            } else if (extension.equals(entry.getExtension())) {
-                //
-                // file with correct extension found
-                children.add(entry);
-            }
-        }
-
-        return children;
-    }
-
-    /**
-     * Find classes annotated with persistence relevant annotations (depends on {@link org.openjpa.ide.idea.integration.openjpa.EnhancerSupportOpenJpa}).
+     * Find classes annotated with persistence relevant annotations (depends on {@link org.openjpa.ide.idea.integration.openjpa.EnhancerSupportOpenJpa}).<br/>
+     * <br/>
+     * Classes of java source files are looked up in {@link PersistentClassIndex}, hence neither classes nor
+     * annotations are resolved. Classes of other source files (e.g. Kotlin) are searched by resolving the
+     * annotations, restricted to the module's non-java files.
      *
      * @param enhancerSupport Enhancer integration to search classes for
      * @param module          Module to search in
-     * @return List of virtual classes annotated with corresponding annotations
+     * @return List of classes annotated with corresponding annotations
+     * @throws IndexNotReadyException in dumb mode
      */
-    static List<PsiClass> findPersistenceAnnotatedClasses(final EnhancerSupport enhancerSupport, final Module module) {
-        final List<PsiClass> annotatedClasses = new ArrayList<>();
+    static List<PersistentClass> findPersistenceAnnotatedClasses(final EnhancerSupport enhancerSupport, final Module module) {
+        final FileBasedIndex index = FileBasedIndex.getInstance();
+        final GlobalSearchScope moduleScope = module.getModuleScope();
+        // classes may carry more than one of the annotations
+        final Map<String, PersistentClass> annotatedClasses = new LinkedHashMap<>();
 
         for (final String annotationName : enhancerSupport.getAnnotationNames()) {
-            final Collection<PsiClass> psiClasses = findAnnotatedClasses(module, annotationName);
-            if (!psiClasses.isEmpty()) {
-                annotatedClasses.addAll(psiClasses);
-            }
+            index.processValues(PersistentClassIndex.NAME, annotationName, null, (file, persistentClasses) -> {
+                for (final PersistentClass persistentClass : persistentClasses) {
+                    annotatedClasses.putIfAbsent(persistentClass.getQualifiedName(), persistentClass);
+                }
+                return true;
+            }, moduleScope);
         }
 
-        return annotatedClasses;
-    }
-
-    /**
-     * Find classes annotated with provided annotation.
-     *
-     * @param module              Module to search in
-     * @param annotationClassName Fully qualified annotation class name
-     * @return List of virtual classes annotated with corresponding annotation
-     */
-    static Collection<PsiClass> findAnnotatedClasses(final Module module, final String annotationClassName) {
-        final PsiClass annotationPsiClass = findClassInModule(module, annotationClassName);
-        final Collection<PsiClass> found;
-        if (annotationPsiClass == null || !annotationPsiClass.isAnnotationType()) {
-            found = Collections.emptyList();
-        } else {
-            found = findAnnotatedClasses(module, annotationPsiClass);
+        // not covered by the index
+        final GlobalSearchScope otherSourcesScope = moduleScope.intersectWith(
+                GlobalSearchScope.notScope(GlobalSearchScope.getScopeRestrictedByFileTypes(moduleScope, JavaFileType.INSTANCE)));
+        final JavaPsiFacade javaPsiFacade = JavaPsiFacade.getInstance(module.getProject());
+        final GlobalSearchScope annotationScope = module.getModuleWithDependenciesAndLibrariesScope(true);
+        for (final String annotationName : enhancerSupport.getAnnotationNames()) {
+            final PsiClass annotationClass = javaPsiFacade.findClass(annotationName, annotationScope);
+            if (annotationClass == null || !annotationClass.isAnnotationType()) {
+                continue;
+            }
+            for (final PsiClass psiClass : AnnotatedElementsSearch.searchPsiClasses(annotationClass, otherSourcesScope).findAll()) {
+                final String qualifiedName = psiClass.getQualifiedName();
+                if (qualifiedName != null) {
+                    annotatedClasses.putIfAbsent(qualifiedName, new PersistentClass(qualifiedName, classToPath(psiClass)));
+                }
+            }
         }
-        return found;
-    }
-
-    /**
-     * Find classes annotated with provided annotation.
-     *
-     * @param module             Module to search in
-     * @param annotationPsiClass Virtual class for annotation to search for
-     * @return List of virtual classes annotated with corresponding annotation
-     */
-    static Collection<PsiClass> findAnnotatedClasses(final Module module, final PsiClass annotationPsiClass) {
-        final Query<PsiClass> pcQuery = AnnotatedElementsSearch.searchPsiClasses(annotationPsiClass, module.getModuleScope());
-        return pcQuery.findAll();
-    }
 
-    /**
-     * Find a class via fully qualified name in module.
-     *
-     * @param module    Module to search in
-     * @param className Fully qualified name of the class to search for
-     * @return Corresponding class or null
-     */
-    static PsiClass findClassInModule(final Module module, final String className) {
-        final JavaPsiFacade javaPsiFacade = JavaPsiFacade.getInstance(module.getProject());
-        return javaPsiFacade.findClass(className, module.getModuleWithDependenciesAndLibrariesScope(true));
+        return new ArrayList<>(annotatedClasses.values());
     }
 
     /**
@@ -223,34 +187,37 @@ final class IdeaProjectUtils {
     }
 
     /**
-     * waits max. 1 sec until the FileIndex is ready.
+     * Wait until indexing finished (smart mode), without querying the index.
      *
-     * @param enhancerSupport Determines which classes to search for
-     * @param module          Module to search in
-     * @throws IndexNotReadyException when the index is not ready after 1 sec
+     * @param project       the project
+     * @param timeoutMillis maximum time to wait
+     * @return false if still in dumb mode after the timeout, or if called on the event dispatch thread in dumb mode
+     * @throws ProcessCanceledException if the current progress is canceled while waiting
      */
-    public static void waitUntilIndexIsReady(final EnhancerSupport enhancerSupport,
-                                             final Module module) {
+    static boolean waitForSmartMode(final Project project, final long timeoutMillis) {
+        final DumbService dumbService = DumbService.getInstance(project);
+        if (!dumbService.isDumb()) {
+            return true;
+        }
+        if (ApplicationManager.getApplication().isDispatchThread()) {
+            // smart mode is entered on the event dispatch thread, waiting there would never end
+            return false;
+        }
 
-        final var application = ApplicationManager.getApplication();
-        for (int i = 0; i < 10; i++) {
-            try {
-                application.runReadAction(() -> {
-                    findPersistenceAnnotatedClasses(enhancerSupport, module);
-                });
-            } catch (IndexNotReadyException e) {
-                // ignore
-                try {
-                    TimeUnit.MILLISECONDS.sleep(100);
-                } catch (InterruptedException ex) {
-                    Thread.currentThread().interrupt();
-                }
-                if (i == 9) {
-                    // after the 9th try throw IndexNotReadyException
-                    throw e;
+        final CountDownLatch smart = new CountDownLatch(1);
+        dumbService.runWhenSmart(smart::countDown);
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            while (!smart.await(CANCELLATION_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                ProgressManager.checkCanceled();
+                if (System.nanoTime() - deadline >= 0) {
+                    return false;
                 }
             }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException(e);
         }
-
     }
 }
@@ -0,0 +1,134 @@
+package org.openjpa.ide.idea;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.stream.XMLStreamException;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Caches the class names parsed from metadata files (see {@link MetadataParser}), so only changed
+ * metadata files are parsed again by builds and the configuration dialog.<br/>
+ * <br/>
+ * Entries are valid as long as modification stamp, timestamp and length of the file did not change,
+ * they are evicted when the file (or one of its parent directories) is deleted.<br/>
+ * <br/>
+ * Files parsed within a read action that may be restarted are collected by {@link Updates} and added once the
+ * read action completed.
+ */
+@Service(Service.Level.PROJECT)
+public final class MetadataCache implements Disposable {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public MetadataCache(Project project) {
+        project.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                for (final VFileEvent event : events) {
+                    if (event instanceof VFileDeleteEvent) {
+                        MetadataCache.this.evict(event.getPath());
+                    }
+                }
+            }
+        });
+    }
+
+    public static MetadataCache getInstance(Project project) {
+        return project.getService(MetadataCache.class);
+    }
+
+    /**
+     * Get qualified class names from metadata file, see {@link MetadataParser#parseQualifiedClassNames(VirtualFile)}.<br/>
+     * The cache is not modified, files not cached are parsed and added to the updates.
+     *
+     * @param file    the metadata file.
+     * @param updates collects the parsed files, see {@link #apply(Updates)}
+     * @return Unique collection of class names configured in metadata file (a modifiable copy)
+     * @throws IOException        .
+     * @throws XMLStreamException .
+     */
+    Set<String> parseQualifiedClassNames(final VirtualFile file, final Updates updates) throws IOException, XMLStreamException {
+        final long modificationStamp = file.getModificationStamp();
+        final long timeStamp = file.getTimeStamp();
+        final long length = file.getLength();
+
+        final Entry cached = this.entries.get(file.getPath());
+        if (cached != null && cached.isValid(modificationStamp, timeStamp, length)) {
+            return new LinkedHashSet<>(cached.classNames);
+        }
+
+        final Set<String> classNames = MetadataParser.parseQualifiedClassNames(file);
+        updates.entries.put(file.getPath(), new Entry(modificationStamp, timeStamp, length, classNames));
+        return classNames;
+    }
+
+    /**
+     * Add the files parsed by {@link #parseQualifiedClassNames(VirtualFile, Updates)}.
+     *
+     * @param updates the parsed files
+     */
+    void apply(final Updates updates) {
+        this.entries.putAll(updates.entries);
+    }
+
+    private void evict(final String path) {
+        final String directoryPrefix = path + '/';
+        this.entries.keySet().removeIf(cachedPath -> cachedPath.equals(path) || cachedPath.startsWith(directoryPrefix));
+    }
+
+    @Override
+    public void dispose() {
+        this.entries.clear();
+    }
+
+    //
+    // Nested classes
+    //
+
+    /**
+     * Files parsed, but not added to the cache yet.
+     */
+    static final class Updates {
+
+        private final Map<String, Entry> entries = new HashMap<>();
+    }
+
+    private static final class Entry {
+
+        private final long modificationStamp;
+
+        private final long timeStamp;
+
+        private final long length;
+
+        private final Set<String> classNames;
+
+        private Entry(final long modificationStamp, final long timeStamp, final long length, final Set<String> classNames) {
+            this.modificationStamp = modificationStamp;
+            this.timeStamp = timeStamp;
+            this.length = length;
+            this.classNames = Collections.unmodifiableSet(new LinkedHashSet<>(classNames));
+        }
+
+        private boolean isValid(final long modificationStamp, final long timeStamp, final long length) {
+            return this.modificationStamp == modificationStamp && this.timeStamp == timeStamp && this.length == length;
+        }
+    }
+
+}
@@ -1,37 +1,36 @@
 package org.openjpa.ide.idea;
 
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import com.intellij.openapi.vfs.VirtualFile;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-
 /**
  * Utility methods for parsing persistence metadata files (Hibernate and JPA).<br/>
  * <br/>
- * This does not include JPA 'persistence.xml' files (see {@link #parseQualifiedClassNames(com.intellij.openapi.vfs.VirtualFile)}).
+ * This does not include JPA 'persistence.xml' files (see {@link #parseQualifiedClassNames(com.intellij.openapi.vfs.VirtualFile)}).<br/>
+ * <br/>
+ * Files are parsed in a single streaming pass, no DOM is created.
  */
 final class MetadataParser {
 
-    private static final String[] JDO_METADATA_ROOT_NODES = {"jdo", "orm"};
+    private static final List<String> JDO_METADATA_ROOT_NODES = Arrays.asList("jdo", "orm");
+
+    private static final List<String> JPA_METADATA_ROOT_NODES = Arrays.asList("entity", "mapped-superclass", "embeddable");
 
-    private static final String[] JPA_METADATA_ROOT_NODES = {"entity", "mapped-superclass", "embeddable"};
+    private static final String JPA_ROOT_NODE = "entity-mappings";
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
 
     private MetadataParser() {
         // no instantiation allowed
@@ -42,144 +41,105 @@ final class MetadataParser {
     //
 
     /**
-     * Load a file's content into String.
+     * Get qualified class names from metadata file (either JDO '.jdo' and '.orm' or JPA '.xml' orm file (not 'persistence.xml'!)).<br/>
+     * <br/>
+     * JDO metadata ('package/class' below 'jdo' or 'orm' elements) takes precedence over JPA metadata
+     * ('entity', 'mapped-superclass' and 'embeddable' below the 'entity-mappings' root).
      *
-     * @param file the file to load from
-     * @return {@link java.lang.String} containing file's content
-     * @throws IOException .
+     * @param file the metadata file.
+     * @return Unique collection of class names configured in metadata file
+     * @throws IOException        .
+     * @throws XMLStreamException .
      */
-    static String loadStringFromFile(final VirtualFile file) throws IOException {
-        return new String(file.contentsToByteArray(), file.getCharset());
+    static Set<String> parseQualifiedClassNames(final VirtualFile file) throws IOException, XMLStreamException {
+        try (InputStream in = file.getInputStream()) {
+            return parseQualifiedClassNames(in);
+        }
     }
 
     /**
-     * Get qualified class names from metadata file (either JDO '.jdo' and '.orm' or JPA '.xml' orm file (not 'persistence.xml'!)).
+     * Get qualified class names from metadata, see {@link #parseQualifiedClassNames(VirtualFile)}.
      *
-     * @param file the metadata file.
-     * @return Unique collection of class names configured in metadata file
-     * @throws ParserConfigurationException .
-     * @throws IOException                  .
-     * @throws SAXException                 .
-     * @throws XPathExpressionException     .
+     * @param in metadata xml
+     * @return Unique collection of class names configured in metadata
+     * @throws XMLStreamException .
      */
-    static Set<String> parseQualifiedClassNames(final VirtualFile file)
-            throws ParserConfigurationException, IOException, SAXException, XPathExpressionException {
-
-        final String xml = loadStringFromFile(file);
-
-        final Document doc = createDocumentBuilderFactory(xml);
-
-        final Set<String> qualifiedClassNames = new LinkedHashSet<>();
-
-        //
-        // parse metadata files (intentionally kept simple - no patterns)
-
-        final Set<String> qualifiedClassNamesJdo = parseQualifiedClassNamesJdo(doc);
-
-        if (qualifiedClassNamesJdo.isEmpty()) {
-            final Set<String> qualifiedClassNamesJpa = parseQualifiedClassNamesJpa(doc);
-            if (!qualifiedClassNamesJpa.isEmpty()) {
-                qualifiedClassNames.addAll(qualifiedClassNamesJpa);
+    static Set<String> parseQualifiedClassNames(final InputStream in) throws XMLStreamException {
+        // class names per root node, to keep the order of the root node lists
+        final List<Set<String>> jdoClassNames = newSets(JDO_METADATA_ROOT_NODES.size());
+        final List<Set<String>> jpaClassNames = newSets(JPA_METADATA_ROOT_NODES.size());
+
+        // local names of the open elements, the depth and package of the current JDO root
+        final List<String> path = new ArrayList<>();
+        String packageName = null;
+
+        final XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    final String name = reader.getLocalName();
+                    final int depth = path.size();
+                    final String parent = depth > 0 ? path.get(depth - 1) : null;
+                    final String grandParent = depth > 1 ? path.get(depth - 2) : null;
+
+                    if ("package".equals(name) && JDO_METADATA_ROOT_NODES.contains(parent)) {
+                        packageName = reader.getAttributeValue(null, "name");
+                    } else if ("class".equals(name) && "package".equals(parent) && packageName != null
+                            && JDO_METADATA_ROOT_NODES.contains(grandParent)) {
+                        final String className = reader.getAttributeValue(null, "name");
+                        if (className != null) {
+                            jdoClassNames.get(JDO_METADATA_ROOT_NODES.indexOf(grandParent)).add(packageName + '.' + className);
+                        }
+                    } else if (depth == 1 && JPA_ROOT_NODE.equals(parent) && JPA_METADATA_ROOT_NODES.contains(name)) {
+                        final String className = reader.getAttributeValue(null, "class");
+                        if (className != null) {
+                            jpaClassNames.get(JPA_METADATA_ROOT_NODES.indexOf(name)).add(className);
+                        }
+                    }
+                    path.add(name);
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    final String name = path.remove(path.size() - 1);
+                    if ("package".equals(name)) {
+                        packageName = null;
+                    }
+                }
             }
-        } else {
-            qualifiedClassNames.addAll(qualifiedClassNamesJdo);
+        } finally {
+            reader.close();
         }
 
-        return qualifiedClassNames;
+        final Set<String> qualifiedClassNames = flatten(jdoClassNames);
+        return qualifiedClassNames.isEmpty() ? flatten(jpaClassNames) : qualifiedClassNames;
     }
 
     //
     // Helper methods
     //
 
-    private static Set<String> parseQualifiedClassNamesJdo(final Document doc)
-            throws XPathExpressionException {
-
-        final Set<String> jpaClassNames = new LinkedHashSet<>();
-
-        for (final String jdoMetadataRootNode : JDO_METADATA_ROOT_NODES) {
-            final Set<String> classNames = parseQualifiedClassNamesJdoInternal(doc, jdoMetadataRootNode);
-            if (!classNames.isEmpty()) {
-                jpaClassNames.addAll(classNames);
-            }
+    private static List<Set<String>> newSets(final int size) {
+        final List<Set<String>> sets = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            sets.add(new LinkedHashSet<>());
         }
-        return jpaClassNames;
+        return sets;
     }
 
-    @SuppressWarnings("MagicCharacter")
-    private static Set<String> parseQualifiedClassNamesJdoInternal(final Document doc, final String rootNodeName)
-            throws XPathExpressionException {
-
-
-        final XPathFactory factory = XPathFactory.newInstance();
-        final XPath xpath = factory.newXPath();
-        final XPathExpression expr1 = xpath.compile("//" + rootNodeName + "/package/@name");
-
-        final NodeList packageNodes = (NodeList) expr1.evaluate(doc, XPathConstants.NODESET);
-
-        final Set<String> packageAndClasses = new LinkedHashSet<>();
-        for (int i = 0; i < packageNodes.getLength(); ++i) {
-            final Node packageNode = packageNodes.item(i);
-            final String packageName = packageNode.getNodeValue();
-
-            final XPathExpression expr2 = xpath.compile("//" + rootNodeName + "/package[@name=\"" + packageName + "\"]/class/@name");
-            final NodeList classNodes = (NodeList) expr2.evaluate(doc, XPathConstants.NODESET);
-
-            for (int j = 0; j < packageNodes.getLength(); ++j) {
-                final Node classNodeItem = classNodes.item(j);
-                final String className = classNodeItem.getNodeValue();
-
-                if (className != null) {
-                    packageAndClasses.add(packageName + '.' + className);
-                }
-            }
-        }
-
-        return packageAndClasses;
-    }
-
-    private static Set<String> parseQualifiedClassNamesJpa(final Document doc)
-            throws XPathExpressionException {
-
-        final Set<String> jpaClassNames = new LinkedHashSet<>();
-
-        for (final String jpaMetadataRootNode : JPA_METADATA_ROOT_NODES) {
-            final Set<String> classNames = parseQualifiedClassNamesJpaInternal(doc, jpaMetadataRootNode);
-            if (!classNames.isEmpty()) {
-                jpaClassNames.addAll(classNames);
-            }
+    private static Set<String> flatten(final List<Set<String>> sets) {
+        final Set<String> flattened = new LinkedHashSet<>();
+        for (final Set<String> set : sets) {
+            flattened.addAll(set);
         }
-        return jpaClassNames;
-    }
-
-    private static Set<String> parseQualifiedClassNamesJpaInternal(final Document doc, final String rootNodeName)
-            throws XPathExpressionException {
-
-
-        final XPathFactory factory = XPathFactory.newInstance();
-        final XPath xpath = factory.newXPath();
-        final XPathExpression expr1 = xpath.compile("/entity-mappings/" + rootNodeName + "/@class");
-
-        final NodeList classNodes = (NodeList) expr1.evaluate(doc, XPathConstants.NODESET);
-
-        final Set<String> packageAndClasses = new LinkedHashSet<>();
-        for (int i = 0; i < classNodes.getLength(); ++i) {
-            final Node classNodeItem = classNodes.item(i);
-            final String className = classNodeItem.getNodeValue();
-
-            if (className != null) {
-                packageAndClasses.add(className);
-            }
-        }
-
-        return packageAndClasses;
+        return flattened;
     }
 
-    private static Document createDocumentBuilderFactory(final String xmlMetadata)
-            throws ParserConfigurationException, SAXException, IOException {
-        final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        final DocumentBuilder db = dbf.newDocumentBuilder();
-        return db.parse(new InputSource(new StringReader(xmlMetadata)));
+    private static XMLInputFactory createInputFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newFactory();
+        // metadata is parsed for class names only, never resolve DTDs or external entities
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
     }
 
 }
@@ -0,0 +1,210 @@
+package org.openjpa.ide.idea;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.compiler.CompilerMessageCategory;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+/**
+ * Runs the enhancement of independent modules concurrently on a bounded thread pool.<br/>
+ * <br/>
+ * A module is not enhanced before all affected modules it depends on (directly or transitively) are done,
+ * as their (enhanced) classes, e.g. mapped superclasses, may be needed to enhance the module's classes.
+ * Cyclic module dependencies are broken arbitrarily.<br/>
+ * <br/>
+ * Compiler messages are collected per module and returned in the order of the provided modules,
+ * so the output does not depend on the order of execution.
+ */
+final class ModuleEnhancementScheduler {
+
+    private final int parallelism;
+
+    ModuleEnhancementScheduler(final int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Enhance the provided modules.
+     *
+     * @param modules           modules to enhance, also defines the order of results
+     * @param task              enhancement per module
+     * @param progressIndicator used to wait cancelable and to display the progress
+     * @return results per module (same order as provided modules)
+     */
+    Map<Module, Result> run(final List<Module> modules,
+                            final ModuleTask task,
+                            final ProgressIndicator progressIndicator) {
+        final Map<Module, Set<Module>> dependencies = getAffectedDependencies(modules);
+        final ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("OpenJpa Enhancer", this.parallelism);
+        try {
+            final Map<Module, CompletableFuture<Result>> futures = new LinkedHashMap<>();
+            final AtomicInteger done = new AtomicInteger();
+            for (final Module module : modules) {
+                schedule(module, dependencies, futures, new HashSet<>(), executor, task, () -> {
+                    progressIndicator.setFraction((double) done.incrementAndGet() / modules.size());
+                });
+            }
+
+            final Map<Module, Result> results = new LinkedHashMap<>();
+            for (final Module module : modules) {
+                results.put(module, ProgressIndicatorUtils.awaitWithCheckCanceled(futures.get(module), progressIndicator));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static CompletableFuture<Result> schedule(final Module module,
+                                                      final Map<Module, Set<Module>> dependencies,
+                                                      final Map<Module, CompletableFuture<Result>> futures,
+                                                      final Set<Module> visiting,
+                                                      final ExecutorService executor,
+                                                      final ModuleTask task,
+                                                      final Runnable onDone) {
+        final CompletableFuture<Result> scheduled = futures.get(module);
+        if (scheduled != null) {
+            return scheduled;
+        }
+        visiting.add(module);
+        final List<CompletableFuture<Result>> prerequisites = new ArrayList<>();
+        for (final Module dependency : dependencies.get(module)) {
+            // ignore cyclic dependencies
+            if (!visiting.contains(dependency)) {
+                prerequisites.add(schedule(dependency, dependencies, futures, visiting, executor, task, onDone));
+            }
+        }
+        visiting.remove(module);
+
+        // a failing dependency does not prevent enhancement, failures are reported per module
+        final CompletableFuture<Result> future = CompletableFuture
+                .allOf(prerequisites.toArray(new CompletableFuture[0]))
+                .handle((ignored, throwable) -> null)
+                .thenApplyAsync(ignored -> {
+                    final Result result = new Result();
+                    try {
+                        result.count = task.enhance(module, result.messages);
+                    } catch (Exception e) {
+                        result.failure = e;
+                    } finally {
+                        onDone.run();
+                    }
+                    return result;
+                }, executor);
+        futures.put(module, future);
+        return future;
+    }
+
+    /**
+     * Collect transitive module dependencies restricted to the provided modules.
+     *
+     * @param modules the modules
+     * @return dependencies per module
+     */
+    private static Map<Module, Set<Module>> getAffectedDependencies(final Collection<Module> modules) {
+        return ApplicationManager.getApplication().runReadAction((com.intellij.openapi.util.Computable<Map<Module, Set<Module>>>) () -> {
+            final Set<Module> affected = new HashSet<>(modules);
+            final Map<Module, Set<Module>> dependencies = new LinkedHashMap<>();
+            for (final Module module : modules) {
+                final Set<Module> transitive = new LinkedHashSet<>();
+                collectDependencies(module, transitive);
+                transitive.remove(module);
+                transitive.retainAll(affected);
+                dependencies.put(module, transitive);
+            }
+            return dependencies;
+        });
+    }
+
+    private static void collectDependencies(final Module module, final Set<Module> collected) {
+        for (final Module dependency : ModuleRootManager.getInstance(module).getDependencies(true)) {
+            if (collected.add(dependency)) {
+                collectDependencies(dependency, collected);
+            }
+        }
+    }
+
+    //
+    // Nested classes
+    //
+
+    /**
+     * Enhancement of a single module.
+     */
+    interface ModuleTask {
+
+        /**
+         * Enhance classes of a module.
+         *
+         * @param module   the module
+         * @param messages add compiler messages to display here (must not be written directly to the compile context)
+         * @return number of enhanced classes
+         * @throws Exception on unexpected failures
+         */
+        int enhance(Module module, List<Message> messages) throws Exception;
+    }
+
+    /**
+     * Compiler message recorded by a {@link ModuleTask}.
+     */
+    static final class Message {
+
+        private final CompilerMessageCategory category;
+
+        private final String text;
+
+        Message(final CompilerMessageCategory category, final String text) {
+            this.category = category;
+            this.text = text;
+        }
+
+        CompilerMessageCategory getCategory() {
+            return this.category;
+        }
+
+        String getText() {
+            return this.text;
+        }
+    }
+
+    /**
+     * Outcome of a {@link ModuleTask}.
+     */
+    static final class Result {
+
+        private final List<Message> messages = Collections.synchronizedList(new ArrayList<>());
+
+        private int count;
+
+        private Exception failure;
+
+        List<Message> getMessages() {
+            return this.messages;
+        }
+
+        int getCount() {
+            return this.count;
+        }
+
+        Exception getFailure() {
+            return this.failure;
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package org.openjpa.ide.idea;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Files below an output directory, collected by a single walk of the file tree.<br/>
+ * <br/>
+ * Replaces repeated directory traversals and file existence checks by map lookups,
+ * shared by metadata and annotated class lookups via {@link OutputSnapshots}.
+ */
+final class OutputSnapshot {
+
+    private final Path root;
+
+    /**
+     * Relative path ('/' separated) to file state
+     */
+    private final Map<String, FileState> files;
+
+    /**
+     * Extension to relative paths
+     */
+    private final Map<String, List<String>> filesByExtension;
+
+    private OutputSnapshot(final Path root, final Map<String, FileState> files, final Map<String, List<String>> filesByExtension) {
+        this.root = root;
+        this.files = files;
+        this.filesByExtension = filesByExtension;
+    }
+
+    /**
+     * Walk the output directory.
+     *
+     * @param root the output directory
+     * @return snapshot, empty if the directory does not exist
+     * @throws IOException .
+     */
+    static OutputSnapshot of(final Path root) throws IOException {
+        final Map<String, FileState> files = new HashMap<>();
+        final Map<String, List<String>> filesByExtension = new HashMap<>();
+        if (Files.isDirectory(root)) {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        final String relativePath = toRelativePath(root, file);
+                        files.put(relativePath, new FileState(attrs.size(), attrs.lastModifiedTime().toMillis()));
+                        final String extension = getExtension(file.getFileName().toString());
+                        if (extension != null) {
+                            filesByExtension.computeIfAbsent(extension, k -> new ArrayList<>()).add(relativePath);
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+                    // e.g. deleted by a concurrent clean, treat as absent
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        return new OutputSnapshot(root, files, filesByExtension);
+    }
+
+    boolean contains(final String relativePath) {
+        return this.files.containsKey(relativePath);
+    }
+
+    @Nullable
+    FileState getFileState(final String relativePath) {
+        return this.files.get(relativePath);
+    }
+
+    /**
+     * @param extension extension without '.'
+     * @return relative paths of files with the provided extension
+     */
+    List<String> getFilesByExtension(final String extension) {
+        return this.filesByExtension.getOrDefault(extension, Collections.emptyList());
+    }
+
+    /**
+     * Find a file contained in the snapshot.
+     *
+     * @param outputDirectory the output directory the snapshot was taken of
+     * @param relativePath    '/' separated path
+     * @return the virtual file, a {@link RealVirtualFile} if not yet known to the VFS, null if not contained in the snapshot
+     */
+    @Nullable
+    VirtualFile findFile(final VirtualFile outputDirectory, final String relativePath) {
+        if (!this.contains(relativePath)) {
+            return null;
+        }
+        final VirtualFile file = outputDirectory.findFileByRelativePath(relativePath);
+        // this could happen, if a complete new persistent class is compiled
+        return file != null ? file : new RealVirtualFile(this.root.resolve(relativePath).toFile());
+    }
+
+    private static String toRelativePath(final Path root, final Path file) {
+        final String relativePath = root.relativize(file).toString();
+        return File.separatorChar == '/' ? relativePath : relativePath.replace(File.separatorChar, '/');
+    }
+
+    @Nullable
+    private static String getExtension(final String fileName) {
+        final int index = fileName.lastIndexOf('.');
+        return index < 0 ? null : fileName.substring(index + 1);
+    }
+
+    //
+    // Nested classes
+    //
+
+    static final class FileState {
+
+        private final long size;
+
+        private final long lastModified;
+
+        private FileState(final long size, final long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        long getSize() {
+            return this.size;
+        }
+
+        long getLastModified() {
+            return this.lastModified;
+        }
+    }
+
+}
@@ -0,0 +1,33 @@
+package org.openjpa.ide.idea;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.intellij.openapi.vfs.VirtualFile;
+
+/**
+ * {@link OutputSnapshot}s of the output directories, taken once per build on first access.
+ */
+final class OutputSnapshots {
+
+    private final Map<String, OutputSnapshot> snapshots = new HashMap<>();
+
+    /**
+     * @param outputDirectory the output directory
+     * @return snapshot of the output directory
+     * @throws UncheckedIOException if walking the directory fails
+     */
+    OutputSnapshot get(final VirtualFile outputDirectory) {
+        return this.snapshots.computeIfAbsent(outputDirectory.getPath(), path -> {
+            try {
+                return OutputSnapshot.of(Path.of(path));
+            } catch (IOException e) {
+                throw new UncheckedIOException("unable to read output directory " + path, e);
+            }
+        });
+    }
+
+}
@@ -11,6 +11,7 @@ class PersistenceApiConstants {
     static final String ANNOTATION_JAKARTA_PERSISTENCE_ENTITY = "jakarta.persistence.Entity";
     static final String ANNOTATION_JAKARTA_PERSISTENCE_MAPPED_SUPERCLASS = "jakarta.persistence.MappedSuperclass";
     static final String ANNOTATION_JAKARTA_PERSISTENCE_EMBEDDABLE = "jakarta.persistence.Embeddable";
+    static final String ANNOTATION_JDO_PERSISTENCE_CAPABLE = "javax.jdo.annotations.PersistenceCapable";
 
     private PersistenceApiConstants() {
     }
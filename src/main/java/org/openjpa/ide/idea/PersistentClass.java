@@ -0,0 +1,58 @@
+package org.openjpa.ide.idea;
+
+import java.util.Objects;
+
+/**
+ * Class declared in a source file and annotated by an annotation, as stored in {@link PersistentClassIndex}.
+ */
+final class PersistentClass {
+
+    private final String qualifiedName;
+
+    private final String classPath;
+
+    /**
+     * @param qualifiedName fully qualified class name (nested classes separated by '.')
+     * @param classPath     path of the class file relative to the output directory without extension,
+     *                      see {@link IdeaProjectUtils#classToPath(com.intellij.psi.PsiClass)}
+     */
+    PersistentClass(final String qualifiedName, final String classPath) {
+        this.qualifiedName = qualifiedName;
+        this.classPath = classPath;
+    }
+
+    String getQualifiedName() {
+        return this.qualifiedName;
+    }
+
+    String getClassPath() {
+        return this.classPath;
+    }
+
+    //
+    // java.lang.Object overrides
+    //
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || this.getClass() != o.getClass()) {
+            return false;
+        }
+        final PersistentClass that = (PersistentClass) o;
+        return this.qualifiedName.equals(that.qualifiedName) && this.classPath.equals(that.classPath);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.qualifiedName, this.classPath);
+    }
+
+    @Override
+    public String toString() {
+        return "PersistentClass{" + this.qualifiedName + '}';
+    }
+
+}
@@ -0,0 +1,222 @@
+package org.openjpa.ide.idea;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.psi.PsiAnnotation;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiImportList;
+import com.intellij.psi.PsiImportStatement;
+import com.intellij.psi.PsiJavaCodeReferenceElement;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiModifierList;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.DefaultFileTypeSpecificInputFilter;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.indexing.PsiDependentIndex;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import static org.openjpa.ide.idea.PersistenceApiConstants.ANNOTATION_JAKARTA_PERSISTENCE_EMBEDDABLE;
+import static org.openjpa.ide.idea.PersistenceApiConstants.ANNOTATION_JAKARTA_PERSISTENCE_ENTITY;
+import static org.openjpa.ide.idea.PersistenceApiConstants.ANNOTATION_JAKARTA_PERSISTENCE_MAPPED_SUPERCLASS;
+import static org.openjpa.ide.idea.PersistenceApiConstants.ANNOTATION_JAVA_PERSISTENCE_EMBEDDABLE;
+import static org.openjpa.ide.idea.PersistenceApiConstants.ANNOTATION_JAVA_PERSISTENCE_ENTITY;
+import static org.openjpa.ide.idea.PersistenceApiConstants.ANNOTATION_JAVA_PERSISTENCE_MAPPED_SUPERCLASS;
+import static org.openjpa.ide.idea.PersistenceApiConstants.ANNOTATION_JDO_PERSISTENCE_CAPABLE;
+
+/**
+ * Index of persistent classes in java source files: fully qualified name of a persistence annotation
+ * (entity, mapped superclass, embeddable in their javax and jakarta form and JDO's persistence capable) to the
+ * classes of a file annotated by it. Other annotations are not indexed.<br/>
+ * <br/>
+ * Annotation names are derived from the annotation text and the file's imports, as references must not be
+ * resolved while indexing. Annotations whose simple name is not one of the persistence annotations are ignored
+ * without looking at the imports.<br/>
+ * <br/>
+ * Classes declared in other languages (e.g. Kotlin) are not indexed, see
+ * {@link IdeaProjectUtils#findPersistenceAnnotatedClasses}.
+ */
+public final class PersistentClassIndex extends FileBasedIndexExtension<String, List<PersistentClass>>
+        implements PsiDependentIndex {
+
+    static final ID<String, List<PersistentClass>> NAME = ID.create("org.openjpa.ide.idea.PersistentClassIndex");
+
+    private static final int VERSION = 2;
+
+    private static final Set<String> ANNOTATION_NAMES = Set.of(
+            ANNOTATION_JAVA_PERSISTENCE_ENTITY,
+            ANNOTATION_JAVA_PERSISTENCE_MAPPED_SUPERCLASS,
+            ANNOTATION_JAVA_PERSISTENCE_EMBEDDABLE,
+            ANNOTATION_JAKARTA_PERSISTENCE_ENTITY,
+            ANNOTATION_JAKARTA_PERSISTENCE_MAPPED_SUPERCLASS,
+            ANNOTATION_JAKARTA_PERSISTENCE_EMBEDDABLE,
+            ANNOTATION_JDO_PERSISTENCE_CAPABLE);
+
+    private static final Set<String> SIMPLE_NAMES = getSimpleNames(ANNOTATION_NAMES);
+
+    @Override
+    public @NotNull ID<String, List<PersistentClass>> getName() {
+        return NAME;
+    }
+
+    @Override
+    public @NotNull DataIndexer<String, List<PersistentClass>, FileContent> getIndexer() {
+        return inputData -> {
+            final PsiFile psiFile = inputData.getPsiFile();
+            if (!(psiFile instanceof PsiJavaFile)) {
+                return Collections.emptyMap();
+            }
+            final PsiJavaFile javaFile = (PsiJavaFile) psiFile;
+            final String packageName = javaFile.getPackageName();
+            final Map<String, List<PersistentClass>> annotatedClasses = new HashMap<>();
+            for (final PsiClass psiClass : javaFile.getClasses()) {
+                final String name = psiClass.getName();
+                if (name != null) {
+                    final String qualifiedName = packageName.isEmpty() ? name : packageName + '.' + name;
+                    indexClass(psiClass, qualifiedName, IdeaProjectUtils.packageToPath(qualifiedName), javaFile, annotatedClasses);
+                }
+            }
+            return annotatedClasses;
+        };
+    }
+
+    @Override
+    public @NotNull KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @Override
+    public @NotNull DataExternalizer<List<PersistentClass>> getValueExternalizer() {
+        return new DataExternalizer<>() {
+            @Override
+            public void save(@NotNull final DataOutput out, final List<PersistentClass> value) throws IOException {
+                DataInputOutputUtil.writeINT(out, value.size());
+                for (final PersistentClass persistentClass : value) {
+                    IOUtil.writeUTF(out, persistentClass.getQualifiedName());
+                    IOUtil.writeUTF(out, persistentClass.getClassPath());
+                }
+            }
+
+            @Override
+            public List<PersistentClass> read(@NotNull final DataInput in) throws IOException {
+                final int size = DataInputOutputUtil.readINT(in);
+                final List<PersistentClass> value = new ArrayList<>(size);
+                for (int i = 0; i < size; ++i) {
+                    value.add(new PersistentClass(IOUtil.readUTF(in), IOUtil.readUTF(in)));
+                }
+                return value;
+            }
+        };
+    }
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public @NotNull FileBasedIndex.InputFilter getInputFilter() {
+        return new DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE);
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    //
+    // Helper methods
+    //
+
+    private static void indexClass(final PsiClass psiClass,
+                                   final String qualifiedName,
+                                   final String classPath,
+                                   final PsiJavaFile javaFile,
+                                   final Map<String, List<PersistentClass>> annotatedClasses) {
+
+        final PsiModifierList modifierList = psiClass.getModifierList();
+        if (modifierList != null) {
+            for (final PsiAnnotation annotation : modifierList.getAnnotations()) {
+                final PsiJavaCodeReferenceElement reference = annotation.getNameReferenceElement();
+                if (reference == null || !SIMPLE_NAMES.contains(reference.getReferenceName())) {
+                    continue;
+                }
+                final PersistentClass persistentClass = new PersistentClass(qualifiedName, classPath);
+                for (final String annotationName : getCandidateNames(reference.getText(), javaFile)) {
+                    if (ANNOTATION_NAMES.contains(annotationName)) {
+                        annotatedClasses.computeIfAbsent(annotationName, k -> new ArrayList<>(1)).add(persistentClass);
+                    }
+                }
+            }
+        }
+        for (final PsiClass innerClass : psiClass.getInnerClasses()) {
+            final String name = innerClass.getName();
+            if (name != null) {
+                indexClass(innerClass, qualifiedName + '.' + name, classPath + '$' + name, javaFile, annotatedClasses);
+            }
+        }
+    }
+
+    /**
+     * Fully qualified names an annotation reference may denote, without resolving it.
+     *
+     * @param referenceText annotation name as written in the source
+     * @param javaFile      file containing the annotation
+     * @return candidate names
+     */
+    private static Collection<String> getCandidateNames(final String referenceText, final PsiJavaFile javaFile) {
+        final String name = referenceText.replaceAll("\\s", "");
+        if (name.indexOf('.') >= 0) {
+            return Collections.singletonList(name);
+        }
+
+        final PsiImportList importList = javaFile.getImportList();
+        final Collection<String> candidates = new LinkedHashSet<>();
+        if (importList != null) {
+            for (final PsiImportStatement importStatement : importList.getImportStatements()) {
+                final String importName = importStatement.getQualifiedName();
+                if (importName == null) {
+                    continue;
+                }
+                if (importStatement.isOnDemand()) {
+                    candidates.add(importName + '.' + name);
+                } else if (importName.endsWith('.' + name)) {
+                    // single type import shadows on demand imports
+                    return Collections.singletonList(importName);
+                }
+            }
+        }
+        final String packageName = javaFile.getPackageName();
+        candidates.add(packageName.isEmpty() ? name : packageName + '.' + name);
+        return candidates;
+    }
+
+    private static Set<String> getSimpleNames(final Collection<String> annotationNames) {
+        final Set<String> simpleNames = new HashSet<>();
+        for (final String annotationName : annotationNames) {
+            simpleNames.add(annotationName.substring(annotationName.lastIndexOf('.') + 1));
+        }
+        return simpleNames;
+    }
+
+}
@@ -1,9 +1,11 @@
 package org.openjpa.ide.idea;
 
-import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.PersistentStateComponentWithModificationTracker;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.util.SimpleModificationTracker;
 import com.intellij.util.xmlb.XmlSerializerUtil;
+import com.intellij.util.xmlb.annotations.Transient;
 import com.intellij.util.xmlb.annotations.XCollection;
 import org.jetbrains.annotations.NotNull;
 
@@ -18,7 +20,12 @@ import java.util.LinkedHashSet;
 @Service(Service.Level.PROJECT)
 @com.intellij.openapi.components.State(name = "OpenJpaConfiguration",
         storages = {@Storage(value = "openjpa-plugin.xml")})
-public final class PersistentState implements PersistentStateComponent<PersistentState> { // has to be public (for IDEA configuration access)
+public final class PersistentState implements PersistentStateComponentWithModificationTracker<PersistentState> { // has to be public (for IDEA configuration access)
+
+    /**
+     * Incremented by each setter (also by {@link #loadState}), versions the {@link StateSnapshot}s
+     */
+    private final SimpleModificationTracker modificationTracker = new SimpleModificationTracker();
 
     private boolean enhancerEnabled = true;
 
@@ -33,8 +40,18 @@ public final class PersistentState implements PersistentStateComponent<Persisten
     private boolean includeTestClasses = true;
     private boolean addDefaultConstructor = true;
     private boolean enforcePropertyRestrictions = true;
-    private boolean tmpClassLoader = true;
     private boolean enhanceAllPersistentClasses = true;
+    private boolean incrementalEnhancement = true;
+    private boolean parallelEnhancement = true;
+    private boolean outOfProcessEnhancer = false;
+    private boolean buildProcessEnhancer = false;
+    private boolean cacheEnhancedClasses = true;
+
+    /**
+     * Maximum time in seconds an incremental build waits for indexing (dumb mode) to finish, before falling back
+     * to scanning the class files
+     */
+    private int indexWaitTimeout = 60;
 
     @XCollection(elementTypes = String.class)
     private Collection<String> enabledModules = new ArrayList<>();
@@ -42,6 +59,21 @@ public final class PersistentState implements PersistentStateComponent<Persisten
     @XCollection(elementTypes = String.class)
     private Collection<String> enabledFiles = new ArrayList<>();
 
+    /**
+     * Classes explicitly disabled although matched by {@link #includePatterns}
+     */
+    @XCollection(elementTypes = String.class)
+    private Collection<String> disabledFiles = new ArrayList<>();
+
+    /**
+     * Package/glob patterns of the classes to enhance, e.g. 'com.acme.billing.**'
+     */
+    @XCollection(elementTypes = String.class)
+    private Collection<String> includePatterns = new ArrayList<>();
+
+    @XCollection(elementTypes = String.class)
+    private Collection<String> excludePatterns = new ArrayList<>();
+
     private String api = "JPA";
 
     private String enhancerSupport = "OPENJPA";
@@ -52,6 +84,7 @@ public final class PersistentState implements PersistentStateComponent<Persisten
 
     public void setEnhancerEnabled(final boolean enhancerEnabled) {
         this.enhancerEnabled = enhancerEnabled;
+        this.modificationTracker.incModificationCount();
     }
 
     public Collection<String> getMetaDataExtensions() {
@@ -60,6 +93,7 @@ public final class PersistentState implements PersistentStateComponent<Persisten
 
     public void setMetaDataExtensions(final Collection<String> metaDataExtensions) {
         this.metaDataExtensions = new LinkedHashSet<>(metaDataExtensions);
+        this.modificationTracker.incModificationCount();
     }
 
     public boolean isAddToCompilerResourcePatterns() {
@@ -68,6 +102,7 @@ public final class PersistentState implements PersistentStateComponent<Persisten
 
     public void setAddToCompilerResourcePatterns(final boolean addToCompilerResourcePatterns) {
         this.addToCompilerResourcePatterns = addToCompilerResourcePatterns;
+        this.modificationTracker.incModificationCount();
     }
 
     public boolean isIncludeTestClasses() {
@@ -76,6 +111,7 @@ public final class PersistentState implements PersistentStateComponent<Persisten
 
     public void setIncludeTestClasses(final boolean includeTestClasses) {
         this.includeTestClasses = includeTestClasses;
+        this.modificationTracker.incModificationCount();
     }
 
     public Collection<String> getEnabledModules() {
@@ -84,6 +120,7 @@ public final class PersistentState implements PersistentStateComponent<Persisten
 
     public void setEnabledModules(final Collection<String> enabledModules) {
         this.enabledModules = new LinkedHashSet<>(enabledModules);
+        this.modificationTracker.incModificationCount();
     }
 
     public Collection<String> getEnabledFiles() {
@@ -92,6 +129,34 @@ public final class PersistentState implements PersistentStateComponent<Persisten
 
     public void setEnabledFiles(final Collection<String> enabledFiles) {
         this.enabledFiles = new LinkedHashSet<>(enabledFiles);
+        this.modificationTracker.incModificationCount();
+    }
+
+    public Collection<String> getDisabledFiles() {
+        return new LinkedHashSet<>(this.disabledFiles);
+    }
+
+    public void setDisabledFiles(final Collection<String> disabledFiles) {
+        this.disabledFiles = new LinkedHashSet<>(disabledFiles);
+        this.modificationTracker.incModificationCount();
+    }
+
+    public Collection<String> getIncludePatterns() {
+        return new LinkedHashSet<>(this.includePatterns);
+    }
+
+    public void setIncludePatterns(final Collection<String> includePatterns) {
+        this.includePatterns = new LinkedHashSet<>(includePatterns);
+        this.modificationTracker.incModificationCount();
+    }
+
+    public Collection<String> getExcludePatterns() {
+        return new LinkedHashSet<>(this.excludePatterns);
+    }
+
+    public void setExcludePatterns(final Collection<String> excludePatterns) {
+        this.excludePatterns = new LinkedHashSet<>(excludePatterns);
+        this.modificationTracker.incModificationCount();
     }
 
     public String getApi() {
@@ -100,6 +165,7 @@ public final class PersistentState implements PersistentStateComponent<Persisten
 
     public void setApi(final String api) {
         this.api = api;
+        this.modificationTracker.incModificationCount();
     }
 
     public String getEnhancerSupport() {
@@ -108,6 +174,7 @@ public final class PersistentState implements PersistentStateComponent<Persisten
 
     public void setEnhancerSupport(final String enhancerSupport) {
         this.enhancerSupport = enhancerSupport;
+        this.modificationTracker.incModificationCount();
     }
 
 
@@ -117,6 +184,7 @@ public final class PersistentState implements PersistentStateComponent<Persisten
 
     public void setAddDefaultConstructor(boolean addDefaultConstructor) {
         this.addDefaultConstructor = addDefaultConstructor;
+        this.modificationTracker.incModificationCount();
     }
 
     public boolean isEnforcePropertyRestrictions() {
@@ -125,14 +193,7 @@ public final class PersistentState implements PersistentStateComponent<Persisten
 
     public void setEnforcePropertyRestrictions(boolean enforcePropertyRestrictions) {
         this.enforcePropertyRestrictions = enforcePropertyRestrictions;
-    }
-
-    public boolean isTmpClassLoader() {
-        return tmpClassLoader;
-    }
-
-    public void setTmpClassLoader(boolean tmpClassLoader) {
-        this.tmpClassLoader = tmpClassLoader;
+        this.modificationTracker.incModificationCount();
     }
 
     public boolean isEnhanceAllPersistentClasses() {
@@ -141,6 +202,67 @@ public final class PersistentState implements PersistentStateComponent<Persisten
 
     public void setEnhanceAllPersistentClasses(boolean enhanceAllPersistentClasses) {
         this.enhanceAllPersistentClasses = enhanceAllPersistentClasses;
+        this.modificationTracker.incModificationCount();
+    }
+
+    public boolean isIncrementalEnhancement() {
+        return incrementalEnhancement;
+    }
+
+    public void setIncrementalEnhancement(boolean incrementalEnhancement) {
+        this.incrementalEnhancement = incrementalEnhancement;
+        this.modificationTracker.incModificationCount();
+    }
+
+    public boolean isParallelEnhancement() {
+        return parallelEnhancement;
+    }
+
+    public void setParallelEnhancement(boolean parallelEnhancement) {
+        this.parallelEnhancement = parallelEnhancement;
+        this.modificationTracker.incModificationCount();
+    }
+
+    public boolean isOutOfProcessEnhancer() {
+        return outOfProcessEnhancer;
+    }
+
+    public void setOutOfProcessEnhancer(boolean outOfProcessEnhancer) {
+        this.outOfProcessEnhancer = outOfProcessEnhancer;
+        this.modificationTracker.incModificationCount();
+    }
+
+    public boolean isBuildProcessEnhancer() {
+        return buildProcessEnhancer;
+    }
+
+    public void setBuildProcessEnhancer(boolean buildProcessEnhancer) {
+        this.buildProcessEnhancer = buildProcessEnhancer;
+        this.modificationTracker.incModificationCount();
+    }
+
+    public boolean isCacheEnhancedClasses() {
+        return cacheEnhancedClasses;
+    }
+
+    public void setCacheEnhancedClasses(boolean cacheEnhancedClasses) {
+        this.cacheEnhancedClasses = cacheEnhancedClasses;
+        this.modificationTracker.incModificationCount();
+    }
+
+    public int getIndexWaitTimeout() {
+        return indexWaitTimeout;
+    }
+
+    public void setIndexWaitTimeout(int indexWaitTimeout) {
+        this.indexWaitTimeout = indexWaitTimeout;
+        this.modificationTracker.incModificationCount();
+    }
+
+    @Transient
+    @Override
+    public long getStateModificationCount() {
+        return this.modificationTracker.getModificationCount();
     }
 
     @Override
@@ -151,5 +273,7 @@ public final class PersistentState implements PersistentStateComponent<Persisten
     @Override
     public void loadState(@NotNull PersistentState state) {
         XmlSerializerUtil.copyBean(state, this);
+        // annotated collections are copied by field, not by setter
+        this.modificationTracker.incModificationCount();
     }
 }
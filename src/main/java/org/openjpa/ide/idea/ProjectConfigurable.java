@@ -1,16 +1,24 @@
 package org.openjpa.ide.idea;
 
 import com.intellij.compiler.CompilerConfiguration;
-import com.intellij.openapi.module.Module;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.options.Configurable;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.progress.impl.BackgroundableProcessIndicator;
 import com.intellij.openapi.project.IndexNotReadyException;
 import com.intellij.openapi.project.Project;
 import org.jetbrains.annotations.Nls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.openjpa.ide.idea.config.AffectedModule;
 import org.openjpa.ide.idea.config.ConfigForm;
 import org.openjpa.ide.idea.config.GuiState;
 import org.openjpa.ide.idea.config.MetaDataOrClassFile;
 import org.openjpa.ide.idea.integration.EnhancerSupport;
+import org.openjpa.ide.idea.integration.openjpa.ClassNameMatcher;
 
 import javax.swing.*;
 import java.util.ArrayList;
@@ -18,7 +26,6 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -33,6 +40,13 @@ final class ProjectConfigurable implements Configurable {
     private final State state;
     private final EnhancerService enhancerService;
 
+    /**
+     * Affected modules and files displayed by the settings page, null while searched in the background
+     */
+    private DiscoverySnapshot snapshot = null;
+
+    private ProgressIndicator discoveryIndicator = null;
+
     private static final String RESOURCE_PATTERN_PREFIX = "?*.";
 
     private static final Pattern REPLACE_PATTERN_WILDCARD_ALL = Pattern.compile("\\*");
@@ -102,65 +116,135 @@ final class ProjectConfigurable implements Configurable {
 
     @Override
     public void reset() {
+        if (this.snapshot != null && !this.snapshot.isValidFor(this.state)) {
+            this.snapshot = null;
+        }
         this.configGuiForm.setData(this.getGuiState());
+        if (this.snapshot == null) {
+            this.startDiscovery();
+        }
     }
 
     @Override
     public void disposeUIResources() {
+        this.cancelDiscovery();
+        this.snapshot = null;
         this.configGuiForm = null;
     }
 
+    //
+    // Background discovery
+    //
+
+    /**
+     * Search affected modules and files in the background, the page is displayed with empty tables meanwhile.
+     */
+    private void startDiscovery() {
+        this.cancelDiscovery();
+
+        final ConfigForm form = this.configGuiForm;
+        final ModalityState modalityState = ModalityState.stateForComponent(form.getRootComponent());
+        form.setDiscoveryInProgress();
+
+        final Task.Backgroundable task = new Task.Backgroundable(this.project, "Searching persistent classes", true) {
+            @Override
+            public void run(@NotNull final ProgressIndicator indicator) {
+                DiscoverySnapshot discovered;
+                try {
+                    discovered = DiscoverySnapshot.discover(ProjectConfigurable.this.project,
+                            ProjectConfigurable.this.state, ProjectConfigurable.this.enhancerService, indicator);
+                } catch (IndexNotReadyException ignored) {
+                    discovered = null;
+                }
+                final DiscoverySnapshot result = discovered;
+                // the settings dialog is modal, update the page in its modality
+                ApplicationManager.getApplication().invokeLater(
+                        () -> ProjectConfigurable.this.setDiscoverySnapshot(form, indicator, result), modalityState);
+            }
+        };
+        final ProgressIndicator indicator = new BackgroundableProcessIndicator(task);
+        this.discoveryIndicator = indicator;
+        ProgressManager.getInstance().runProcessWithProgressAsynchronously(task, indicator);
+    }
+
+    private void cancelDiscovery() {
+        if (this.discoveryIndicator != null) {
+            this.discoveryIndicator.cancel();
+            this.discoveryIndicator = null;
+        }
+    }
+
+    /**
+     * @param form      the page the search was started for
+     * @param indicator progress of the search
+     * @param snapshot  the result, null if the index was not ready
+     */
+    private void setDiscoverySnapshot(final ConfigForm form,
+                                      final ProgressIndicator indicator,
+                                      @Nullable final DiscoverySnapshot snapshot) {
+        // page closed or search restarted meanwhile
+        if (this.configGuiForm != form || indicator.isCanceled()) {
+            return;
+        }
+        this.discoveryIndicator = null;
+        this.snapshot = snapshot;
+        if (snapshot == null) {
+            form.setDiscoveredData(false, new ArrayList<>(0), new ArrayList<>(0), new ArrayList<>(0));
+        } else {
+            form.setDiscoveredData(true,
+                    snapshot.createAffectedModulesGuiModel(this.state.getEnabledModules()),
+                    snapshot.createMetadataFilesGuiModel(),
+                    snapshot.createAnnotatedClassFilesGuiModel(this.state.getSnapshot()));
+        }
+    }
+
     //
     // Gui interface
     //
 
     @SuppressWarnings("FeatureEnvy")
     private GuiState getGuiState() {
-        boolean indexReady = false;
         final boolean enhancerEnabled = this.state.isEnhancerEnabled();
         final String metaDataExtension = getMetaDataExtensionsString(this.state.getMetaDataExtensions());
         final boolean addToCompilerResourcePatterns = this.state.isAddToCompilerResourcePatterns();
         final boolean includeTestClasses = this.state.isIncludeTestClasses();
         final boolean addDefaultConstructor = this.state.isAddDefaultConstructor();
         final boolean enforcePropertyRestrictions = this.state.isEnforcePropertyRestrictions();
-        final boolean tmpClassLoader = this.state.isTmpClassLoader();
         final boolean enhanceAllPersistentClasses = this.state.isEnhanceAllPersistentClasses();
+        final boolean incrementalEnhancement = this.state.isIncrementalEnhancement();
+        final boolean parallelEnhancement = this.state.isParallelEnhancement();
+        final boolean outOfProcessEnhancer = this.state.isOutOfProcessEnhancer();
+        final boolean buildProcessEnhancer = this.state.isBuildProcessEnhancer();
+        final boolean cacheEnhancedClasses = this.state.isCacheEnhancedClasses();
         final boolean enhancerInitialized = enhancerService.isEnhancerInitialized();
         final PersistenceApi api = this.state.getApi();
         final EnhancerSupport enhancerSupport = this.state.getEnhancerSupport();
-        List<AffectedModule> affectedModules;
-        List<MetaDataOrClassFile> metaDataFiles;
-        List<MetaDataOrClassFile> annotatedClassFiles;
-        try {
-            affectedModules = this.getAffectedModulesGuiModel();
-            if (!enhanceAllPersistentClasses) {
-                metaDataFiles = this.createMetadataFilesGuiModel();
-                // filter files:
-                annotatedClassFiles = this.createAnnotatedClassFilesGuiModel();
-                if (!this.state.getEnabledFiles().isEmpty()) {
-                    applyFilter(annotatedClassFiles, this.state.getEnabledFiles());
-                }
-            }
-            else{
-                // do not read the annotated classes in "enhanceAllPersistentClasses mode"
-               metaDataFiles = new ArrayList<>(0);
-               annotatedClassFiles = new ArrayList<>(0);
-            }
-            indexReady = true;
-        } catch (IndexNotReadyException ignored) {
+        final List<AffectedModule> affectedModules;
+        final List<MetaDataOrClassFile> metaDataFiles;
+        final List<MetaDataOrClassFile> annotatedClassFiles;
+        if (this.snapshot != null) {
+            affectedModules = this.snapshot.createAffectedModulesGuiModel(this.state.getEnabledModules());
+            metaDataFiles = this.snapshot.createMetadataFilesGuiModel();
+            annotatedClassFiles = this.snapshot.createAnnotatedClassFilesGuiModel(this.state.getSnapshot());
+        } else {
+            // filled by the background discovery
             affectedModules = new ArrayList<>(0);
             metaDataFiles = new ArrayList<>(0);
             annotatedClassFiles = new ArrayList<>(0);
         }
-        return new GuiState(indexReady,
+        final GuiState guiState = new GuiState(true,
                 enhancerEnabled,
                 metaDataExtension,
                 addToCompilerResourcePatterns,
                 includeTestClasses,
                 addDefaultConstructor,
                 enforcePropertyRestrictions,
-                tmpClassLoader,
                 enhanceAllPersistentClasses,
+                incrementalEnhancement,
+                parallelEnhancement,
+                outOfProcessEnhancer,
+                buildProcessEnhancer,
+                cacheEnhancedClasses,
                 enhancerInitialized,
                 api,
                 this.state.getEnhancerSupportRegistry(),
@@ -168,12 +252,9 @@ final class ProjectConfigurable implements Configurable {
                 affectedModules,
                 metaDataFiles,
                 annotatedClassFiles);
-    }
-
-    private void applyFilter(List<MetaDataOrClassFile> annotatedClassFiles, Set<String> enabledFiles) {
-        for (MetaDataOrClassFile file : annotatedClassFiles) {
-            file.setEnabled(enabledFiles.contains(file.getClassName()));
-        }
+        guiState.setIncludePatterns(String.join("; ", this.state.getIncludePatterns()));
+        guiState.setExcludePatterns(String.join("; ", this.state.getExcludePatterns()));
+        return guiState;
     }
 
     @SuppressWarnings("FeatureEnvy")
@@ -184,11 +265,21 @@ final class ProjectConfigurable implements Configurable {
         final boolean includeTestClasses = guiState.isIncludeTestClasses();
         final boolean addDefaultConstructor = guiState.isAddDefaultConstructor();
         final boolean enforcePropertyRestrictions = guiState.isEnforcePropertyRestrictions();
-        final boolean tmpClassLoader = guiState.isTmpClassLoader();
         final boolean enhanceAllPersistentClasses = guiState.isEnhanceAllPersistentClasses();
+        final boolean incrementalEnhancement = guiState.isIncrementalEnhancement();
+        final boolean parallelEnhancement = guiState.isParallelEnhancement();
+        final boolean outOfProcessEnhancer = guiState.isOutOfProcessEnhancer();
+        final boolean buildProcessEnhancer = guiState.isBuildProcessEnhancer();
+        final boolean cacheEnhancedClasses = guiState.isCacheEnhancedClasses();
         final PersistenceApi api = guiState.getApi();
         final EnhancerSupport enhancerSupport = guiState.getEnhancerSupport();
-        final Set<String> enabledFiles = getEnabledFilesFromGuiModel(guiState.getMetadataFiles());
+        final Set<String> includePatterns = ClassNameMatcher.parse(guiState.getIncludePatterns());
+        final Set<String> excludePatterns = ClassNameMatcher.parse(guiState.getExcludePatterns());
+        // the table rows were checked according to the current patterns, only deviations are kept as overrides
+        final StateSnapshot displayed = this.state.getSnapshot();
+        final Set<String> enabledFiles = new HashSet<>();
+        final Set<String> disabledFiles = new HashSet<>();
+        collectFileOverrides(guiState.getMetadataFiles(), displayed, enabledFiles, disabledFiles);
         final Set<String> enabledModules = getEnabledModulesFromGuiModel(guiState.getAffectedModules());
 
         this.state.setEnhancerEnabled(enhancerEnabled);
@@ -197,32 +288,54 @@ final class ProjectConfigurable implements Configurable {
         this.state.setIncludeTestClasses(includeTestClasses);
         this.state.setAddDefaultConstructor(addDefaultConstructor);
         this.state.setEnforcePropertyRestrictions(enforcePropertyRestrictions);
-        this.state.setTmpClassLoader(tmpClassLoader);
         this.state.setEnhanceAllPersistentClasses(enhanceAllPersistentClasses);
-        this.state.setEnabledModules(enabledModules);
-        this.state.setEnabledFiles(enabledFiles);
+        this.state.setIncrementalEnhancement(incrementalEnhancement);
+        this.state.setParallelEnhancement(parallelEnhancement);
+        this.state.setOutOfProcessEnhancer(outOfProcessEnhancer);
+        this.state.setBuildProcessEnhancer(buildProcessEnhancer);
+        this.state.setCacheEnhancedClasses(cacheEnhancedClasses);
         this.state.setApi(api);
         this.state.setEnhancerSupport(enhancerSupport);
+        this.state.setIncludePatterns(includePatterns);
+        this.state.setExcludePatterns(excludePatterns);
 
+        // tables are empty until the background discovery finished, keep the enabled modules and files meanwhile
+        final DiscoverySnapshot discovered = this.snapshot;
+        if (discovered != null) {
+            this.state.setEnabledModules(enabledModules);
+            this.state.setEnabledFiles(enabledFiles);
+            this.state.setDisabledFiles(disabledFiles);
 
-        // TODO: hack to filter modules not supported by enhancer (filtering only possible after updating the state with enhancer settings)
-        this.filterEnhancerSupportedModules();
+            // TODO: hack to filter modules not supported by enhancer (filtering only possible after updating the state with enhancer settings)
+            this.filterEnhancerSupportedModules(discovered);
 
-        if (!state.isEnhanceAllPersistentClasses()) {
-            this.filterEnhancerSupportedFiles();
+            if (!state.isEnhanceAllPersistentClasses()) {
+                this.filterEnhancerSupportedFiles(discovered);
+            }
         }
+
+        // settings may affect classes which were not compiled since
+        CompilerOutputTracker.getInstance(this.project).requestFullEnhancement();
     }
 
-    private Set<String> getEnabledFilesFromGuiModel(List<MetaDataOrClassFile> metadataFiles) {
-        final Set<String> enableFiles = new HashSet<>();
-        if (metadataFiles != null) {
-            for (final MetaDataOrClassFile file : metadataFiles) {
-                if (file.isEnabled()) {
-                    enableFiles.add(file.getClassName());
+    /**
+     * Checked rows not selected by the patterns become enabled files, unchecked rows selected by the patterns
+     * become disabled files.
+     */
+    private static void collectFileOverrides(final List<MetaDataOrClassFile> files,
+                                             final StateSnapshot displayed,
+                                             final Set<String> enabledFiles,
+                                             final Set<String> disabledFiles) {
+        if (files != null) {
+            for (final MetaDataOrClassFile file : files) {
+                final boolean matched = displayed.isClassMatchedByPatterns(file.getClassName());
+                if (file.isEnabled() && !matched) {
+                    enabledFiles.add(file.getClassName());
+                } else if (!file.isEnabled() && matched) {
+                    disabledFiles.add(file.getClassName());
                 }
             }
         }
-        return enableFiles;
     }
 
 
@@ -230,16 +343,10 @@ final class ProjectConfigurable implements Configurable {
     // Gui model helper methods
     //
 
-    private void filterEnhancerSupportedModules() {
-
-        // TODO: hack to filter modules not supported by enhancer (filtering only possible after updating the state with enhancer settings)
-        final List<AffectedModule> affectedModulesGuiModel = getAffectedModulesGuiModel();
-        final Collection<String> filter = new HashSet<>(affectedModulesGuiModel.size());
-        for (final AffectedModule affectedModule : affectedModulesGuiModel) {
-            filter.add(affectedModule.getName());
-        }
+    private void filterEnhancerSupportedModules(final DiscoverySnapshot discovered) {
+        final Collection<String> filter = new HashSet<>(discovered.getModuleNames());
 
-        final Collection<String> enhancerSupportedModules = new LinkedHashSet<>(affectedModulesGuiModel.size());
+        final Collection<String> enhancerSupportedModules = new LinkedHashSet<>(filter.size());
         for (final String enabledModule : this.state.getEnabledModules()) {
             if (filter.contains(enabledModule)) {
                 enhancerSupportedModules.add(enabledModule);
@@ -249,34 +356,25 @@ final class ProjectConfigurable implements Configurable {
         this.state.setEnabledModules(enhancerSupportedModules);
     }
 
-    private void filterEnhancerSupportedFiles() {
-        final List<MetaDataOrClassFile> meta = createAnnotatedClassFilesGuiModel();
-        final Collection<String> filter = new HashSet<>(meta.size());
-        for (final MetaDataOrClassFile file : meta) {
-            filter.add(file.getClassName());
-        }
+    /**
+     * Filter the enabled files by the classes found by the discovery the tables were filled from, instead of
+     * searching again. Files of modules disabled meanwhile are dropped.
+     */
+    private void filterEnhancerSupportedFiles(final DiscoverySnapshot discovered) {
+        final Collection<String> filter = discovered.getAnnotatedClassNames(this.state.getEnabledModules());
+
+        this.state.setEnabledFiles(retainAll(this.state.getEnabledFiles(), filter));
+        this.state.setDisabledFiles(retainAll(this.state.getDisabledFiles(), filter));
+    }
 
-        final Collection<String> enhancerSupportedFiles = new LinkedHashSet<>(meta.size());
-        for (final String fileName : this.state.getEnabledFiles()) {
+    private static Collection<String> retainAll(final Collection<String> fileNames, final Collection<String> filter) {
+        final Collection<String> enhancerSupportedFiles = new LinkedHashSet<>(filter.size());
+        for (final String fileName : fileNames) {
             if (filter.contains(fileName)) {
                 enhancerSupportedFiles.add(fileName);
             }
         }
-
-        this.state.setEnabledFiles(enhancerSupportedFiles);
-    }
-
-
-    private List<AffectedModule> getAffectedModulesGuiModel() {
-        final List<AffectedModule> moduleList = new ArrayList<>();
-        final List<Module> affectedModules = IdeaProjectUtils.getDefaultAffectedModules(this.state.getEnhancerSupport(), this.project, true);
-
-        for (final Module module : affectedModules) {
-            final Set<String> enabledModules = this.state.getEnabledModules();
-            final boolean enabled = enabledModules.contains(module.getName());
-            moduleList.add(new AffectedModule(enabled, module.getName()));
-        }
-        return moduleList;
+        return enhancerSupportedFiles;
     }
 
     private static Set<String> getEnabledModulesFromGuiModel(final Iterable<AffectedModule> affectedModules) {
@@ -291,37 +389,6 @@ final class ProjectConfigurable implements Configurable {
         return enabledModules;
     }
 
-    private List<MetaDataOrClassFile> createMetadataFilesGuiModel() {
-       final Map<Module, List<VirtualMetadataFile>> metaDataFiles =
-                this.enhancerService.getMetadataFiles();
-        return createFilesGuiModel(metaDataFiles);
-    }
-
-    private List<MetaDataOrClassFile> createAnnotatedClassFilesGuiModel() {
-        final Map<Module, List<VirtualMetadataFile>> annotatedClassFiles =
-                this.enhancerService.getAnnotatedClassFiles();
-        return createFilesGuiModel(annotatedClassFiles);
-    }
-
-    @SuppressWarnings("FeatureEnvy")
-    private static List<MetaDataOrClassFile> createFilesGuiModel(final Map<Module,
-            List<VirtualMetadataFile>> metaDataOrAnnotatedClassFiles) {
-
-        final List<MetaDataOrClassFile> metaDataOrClassFiles = new ArrayList<>();
-        for (final Map.Entry<Module, List<VirtualMetadataFile>> moduleListEntry : metaDataOrAnnotatedClassFiles.entrySet()) {
-            for (final VirtualMetadataFile vf : moduleListEntry.getValue()) {
-                for (final String mfClassName : vf.getClassNames()) {
-                    final Module moduleListEntryKey = moduleListEntry.getKey();
-                    metaDataOrClassFiles.add(new MetaDataOrClassFile(moduleListEntryKey.getName(),
-                            vf.getDisplayFilename(),
-                            vf.getDisplayPath(),
-                            mfClassName, true));
-                }
-            }
-        }
-        return metaDataOrClassFiles;
-    }
-
     private static String getMetaDataExtensionsString(final Collection<String> extensions) {
         final StringBuilder sb = new StringBuilder();
         int count = 0;
@@ -0,0 +1,57 @@
+package org.openjpa.ide.idea;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Metrics and metadata cache updates of one run of a read action step, see {@link Computable}.<br/>
+ * <br/>
+ * A non-blocking read action is canceled and restarted by pending write actions, only the effects of the
+ * completed run are applied once it returned.
+ */
+final class ReadActionEffects {
+
+    private final EnhancementMetrics metrics;
+
+    private final List<EnhancementMetrics.Sample> samples = new ArrayList<>();
+
+    private final MetadataCache.Updates metadataCacheUpdates = new MetadataCache.Updates();
+
+    ReadActionEffects(final EnhancementMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Start measuring a phase, recorded by {@link #apply(Project)}.
+     *
+     * @param phase  the phase
+     * @param module the module or null if not module related
+     * @return the measurement, to be closed when the phase is done
+     */
+    EnhancementMetrics.Measurement measure(final EnhancementMetrics.Phase phase, @Nullable final Module module) {
+        final EnhancementMetrics.Sample sample = this.metrics.sample(phase, module);
+        this.samples.add(sample);
+        return sample;
+    }
+
+    MetadataCache.Updates getMetadataCacheUpdates() {
+        return this.metadataCacheUpdates;
+    }
+
+    /**
+     * Record the measurements and add the parsed metadata files to the cache.
+     *
+     * @param project the project
+     */
+    void apply(final Project project) {
+        for (final EnhancementMetrics.Sample sample : this.samples) {
+            sample.commit();
+        }
+        MetadataCache.getInstance(project).apply(this.metadataCacheUpdates);
+    }
+
+}
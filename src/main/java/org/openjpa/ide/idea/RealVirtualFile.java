@@ -7,9 +7,11 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
 
 /**
  * simple wrapper for a read file
@@ -78,17 +80,23 @@ class RealVirtualFile extends VirtualFile {
 
     @Override
     public byte @NotNull [] contentsToByteArray() throws IOException {
-        return new byte[0];
+        return Files.readAllBytes(file.toPath());
     }
 
     @Override
     public long getTimeStamp() {
-        return 0;
+        return file.lastModified();
     }
 
     @Override
     public long getLength() {
-        return 0;
+        return file.length();
+    }
+
+    @Override
+    public long getModificationStamp() {
+        // not tracked by the VFS, the timestamp is the best approximation
+        return file.lastModified();
     }
 
     @Override
@@ -98,7 +106,7 @@ class RealVirtualFile extends VirtualFile {
 
     @Override
     public @NotNull InputStream getInputStream() throws IOException {
-        return null;
+        return new FileInputStream(file);
     }
 
 
@@ -1,7 +1,6 @@
 package org.openjpa.ide.idea;
 
 import java.util.Collection;
-import java.util.LinkedHashSet;
 import java.util.Set;
 
 import com.intellij.openapi.components.Service;
@@ -15,6 +14,8 @@ public final class State {
 
     private final PersistentState persistentState;
 
+    private volatile StateSnapshot snapshot = null;
+
     public static State getInstance(Project project) {
         return project.getService(State.class);
     }
@@ -23,6 +24,25 @@ public final class State {
         this.persistentState = project.getService(PersistentState.class);
     }
 
+    /**
+     * Immutable snapshot of the current settings, shared until the settings are modified.<br/>
+     * <br/>
+     * Take it once and pass it on (e.g. per build) to work on consistent settings.
+     *
+     * @return the snapshot
+     */
+    public StateSnapshot getSnapshot() {
+        // read the version first, a concurrent modification creates a new snapshot on next access
+        final long version = persistentState.getStateModificationCount();
+        final StateSnapshot current = this.snapshot;
+        if (current != null && current.getVersion() == version) {
+            return current;
+        }
+        final StateSnapshot created = new StateSnapshot(version, persistentState, createApi(), createEnhancerSupport());
+        this.snapshot = created;
+        return created;
+    }
+
     public boolean isEnhancerEnabled() {
         return persistentState.isEnhancerEnabled();
     }
@@ -31,8 +51,11 @@ public final class State {
        persistentState.setEnhancerEnabled(enhancerEnabled);
     }
 
+    /**
+     * @return metadata file extensions, unmodifiable
+     */
     public Set<String> getMetaDataExtensions() {
-        return new LinkedHashSet<>(persistentState.getMetaDataExtensions());
+        return getSnapshot().getMetaDataExtensions();
     }
 
     public void setMetaDataExtensions(final Collection<String> metaDataExtensions) {
@@ -71,20 +94,18 @@ public final class State {
         persistentState.setEnforcePropertyRestrictions(enforcePropertyRestrictions);
     }
 
-    public boolean isTmpClassLoader() {
-        return persistentState.isTmpClassLoader();
-    }
-
-    public void setTmpClassLoader(boolean tmpClassLoader) {
-        persistentState.setTmpClassLoader(tmpClassLoader);
-    }
-
+    /**
+     * @return names of the enabled modules, unmodifiable
+     */
     public Set<String> getEnabledModules() {
-        return new LinkedHashSet<>(persistentState.getEnabledModules());
+        return getSnapshot().getEnabledModules();
     }
 
+    /**
+     * @return class names of the enabled files, unmodifiable
+     */
     public Set<String> getEnabledFiles() {
-        return new LinkedHashSet<>(persistentState.getEnabledFiles());
+        return getSnapshot().getEnabledFiles();
     }
 
     public void setEnabledModules(final Collection<String> enabledModules) {
@@ -99,15 +120,103 @@ public final class State {
         persistentState.setEnhanceAllPersistentClasses(enhanceAllPersistentClasses);
     }
 
+    public boolean isIncrementalEnhancement() {
+        return persistentState.isIncrementalEnhancement();
+    }
+
+    public void setIncrementalEnhancement(boolean incrementalEnhancement) {
+        persistentState.setIncrementalEnhancement(incrementalEnhancement);
+    }
+
+    public boolean isParallelEnhancement() {
+        return persistentState.isParallelEnhancement();
+    }
+
+    public void setParallelEnhancement(boolean parallelEnhancement) {
+        persistentState.setParallelEnhancement(parallelEnhancement);
+    }
+
+    public boolean isOutOfProcessEnhancer() {
+        return persistentState.isOutOfProcessEnhancer();
+    }
+
+    public void setOutOfProcessEnhancer(boolean outOfProcessEnhancer) {
+        persistentState.setOutOfProcessEnhancer(outOfProcessEnhancer);
+    }
+
+    public boolean isBuildProcessEnhancer() {
+        return persistentState.isBuildProcessEnhancer();
+    }
+
+    public void setBuildProcessEnhancer(boolean buildProcessEnhancer) {
+        persistentState.setBuildProcessEnhancer(buildProcessEnhancer);
+    }
+
+    public boolean isCacheEnhancedClasses() {
+        return persistentState.isCacheEnhancedClasses();
+    }
+
+    public void setCacheEnhancedClasses(boolean cacheEnhancedClasses) {
+        persistentState.setCacheEnhancedClasses(cacheEnhancedClasses);
+    }
+
+    /**
+     * @return maximum time in seconds to wait for indexing to finish
+     */
+    public int getIndexWaitTimeout() {
+        return persistentState.getIndexWaitTimeout();
+    }
+
+    public void setIndexWaitTimeout(int indexWaitTimeout) {
+        persistentState.setIndexWaitTimeout(indexWaitTimeout);
+    }
+
     public void setEnabledFiles(final Collection<String> files) {
         persistentState.setEnabledFiles(files);
     }
 
+    /**
+     * @return class names of the files disabled although matched by the include patterns, unmodifiable
+     */
+    public Set<String> getDisabledFiles() {
+        return getSnapshot().getDisabledFiles();
+    }
+
+    public void setDisabledFiles(final Collection<String> files) {
+        persistentState.setDisabledFiles(files);
+    }
+
+    /**
+     * @return package/glob patterns of the classes to enhance, unmodifiable
+     */
+    public Set<String> getIncludePatterns() {
+        return getSnapshot().getIncludePatterns();
+    }
+
+    public void setIncludePatterns(final Collection<String> patterns) {
+        persistentState.setIncludePatterns(patterns);
+    }
+
+    /**
+     * @return package/glob patterns of the classes not to enhance, unmodifiable
+     */
+    public Set<String> getExcludePatterns() {
+        return getSnapshot().getExcludePatterns();
+    }
+
+    public void setExcludePatterns(final Collection<String> patterns) {
+        persistentState.setExcludePatterns(patterns);
+    }
+
     public EnhancerSupportRegistry getEnhancerSupportRegistry() {
         return this.enhancerSupportRegistry;
     }
 
     public EnhancerSupport getEnhancerSupport() {
+        return getSnapshot().getEnhancerSupport();
+    }
+
+    private EnhancerSupport createEnhancerSupport() {
         final EnhancerSupportRegistry eSR = this.enhancerSupportRegistry;
         final String enhancerSupportString = persistentState.getEnhancerSupport();
         final EnhancerSupport myEnhancerSupport;
@@ -125,6 +234,10 @@ public final class State {
     }
 
     public PersistenceApi getApi() {
+        return getSnapshot().getApi();
+    }
+
+    private PersistenceApi createApi() {
         return PersistenceApi.valueOf(persistentState.getApi());
     }
 
@@ -0,0 +1,204 @@
+package org.openjpa.ide.idea;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.openjpa.ide.idea.integration.EnhancerSupport;
+import org.openjpa.ide.idea.integration.openjpa.ClassNameMatcher;
+
+/**
+ * Immutable copy of the plugin settings at a given modification count of {@link PersistentState}.<br/>
+ * <br/>
+ * Created once per modification by {@link State#getSnapshot()} and shared read-only, e.g. by all steps and
+ * worker threads of a build, instead of copying the enabled modules and files on each access.
+ */
+public final class StateSnapshot {
+
+    private final long version;
+
+    private final boolean enhancerEnabled;
+
+    private final Set<String> metaDataExtensions;
+
+    private final boolean addToCompilerResourcePatterns;
+
+    private final boolean includeTestClasses;
+
+    private final boolean addDefaultConstructor;
+
+    private final boolean enforcePropertyRestrictions;
+
+    private final boolean enhanceAllPersistentClasses;
+
+    private final boolean incrementalEnhancement;
+
+    private final boolean parallelEnhancement;
+
+    private final boolean outOfProcessEnhancer;
+
+    private final boolean buildProcessEnhancer;
+
+    private final boolean cacheEnhancedClasses;
+
+    private final int indexWaitTimeout;
+
+    private final Set<String> enabledModules;
+
+    private final Set<String> enabledFiles;
+
+    private final Set<String> disabledFiles;
+
+    private final Set<String> includePatterns;
+
+    private final Set<String> excludePatterns;
+
+    private final ClassNameMatcher classNameMatcher;
+
+    private final PersistenceApi api;
+
+    private final EnhancerSupport enhancerSupport;
+
+    StateSnapshot(final long version,
+                  final PersistentState persistentState,
+                  final PersistenceApi api,
+                  final EnhancerSupport enhancerSupport) {
+        this.version = version;
+        this.enhancerEnabled = persistentState.isEnhancerEnabled();
+        this.metaDataExtensions = Collections.unmodifiableSet(new LinkedHashSet<>(persistentState.getMetaDataExtensions()));
+        this.addToCompilerResourcePatterns = persistentState.isAddToCompilerResourcePatterns();
+        this.includeTestClasses = persistentState.isIncludeTestClasses();
+        this.addDefaultConstructor = persistentState.isAddDefaultConstructor();
+        this.enforcePropertyRestrictions = persistentState.isEnforcePropertyRestrictions();
+        this.enhanceAllPersistentClasses = persistentState.isEnhanceAllPersistentClasses();
+        this.incrementalEnhancement = persistentState.isIncrementalEnhancement();
+        this.parallelEnhancement = persistentState.isParallelEnhancement();
+        this.outOfProcessEnhancer = persistentState.isOutOfProcessEnhancer();
+        this.buildProcessEnhancer = persistentState.isBuildProcessEnhancer();
+        this.cacheEnhancedClasses = persistentState.isCacheEnhancedClasses();
+        this.indexWaitTimeout = persistentState.getIndexWaitTimeout();
+        this.enabledModules = Collections.unmodifiableSet(new LinkedHashSet<>(persistentState.getEnabledModules()));
+        this.enabledFiles = Collections.unmodifiableSet(new LinkedHashSet<>(persistentState.getEnabledFiles()));
+        this.disabledFiles = Collections.unmodifiableSet(new LinkedHashSet<>(persistentState.getDisabledFiles()));
+        this.includePatterns = Collections.unmodifiableSet(new LinkedHashSet<>(persistentState.getIncludePatterns()));
+        this.excludePatterns = Collections.unmodifiableSet(new LinkedHashSet<>(persistentState.getExcludePatterns()));
+        this.classNameMatcher = ClassNameMatcher.compile(this.includePatterns, this.excludePatterns);
+        this.api = api;
+        this.enhancerSupport = enhancerSupport;
+    }
+
+    /**
+     * @return modification count of the settings this snapshot was taken at
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    public boolean isEnhancerEnabled() {
+        return this.enhancerEnabled;
+    }
+
+    public Set<String> getMetaDataExtensions() {
+        return this.metaDataExtensions;
+    }
+
+    public boolean isAddToCompilerResourcePatterns() {
+        return this.addToCompilerResourcePatterns;
+    }
+
+    public boolean isIncludeTestClasses() {
+        return this.includeTestClasses;
+    }
+
+    public boolean isAddDefaultConstructor() {
+        return this.addDefaultConstructor;
+    }
+
+    public boolean isEnforcePropertyRestrictions() {
+        return this.enforcePropertyRestrictions;
+    }
+
+    public boolean isEnhanceAllPersistentClasses() {
+        return this.enhanceAllPersistentClasses;
+    }
+
+    public boolean isIncrementalEnhancement() {
+        return this.incrementalEnhancement;
+    }
+
+    public boolean isParallelEnhancement() {
+        return this.parallelEnhancement;
+    }
+
+    public boolean isOutOfProcessEnhancer() {
+        return this.outOfProcessEnhancer;
+    }
+
+    public boolean isBuildProcessEnhancer() {
+        return this.buildProcessEnhancer;
+    }
+
+    /**
+     * @return true to copy classes enhanced before from the cache shared by all projects
+     */
+    public boolean isCacheEnhancedClasses() {
+        return this.cacheEnhancedClasses;
+    }
+
+    /**
+     * @return maximum time in seconds to wait for indexing to finish
+     */
+    public int getIndexWaitTimeout() {
+        return this.indexWaitTimeout;
+    }
+
+    public Set<String> getEnabledModules() {
+        return this.enabledModules;
+    }
+
+    public Set<String> getEnabledFiles() {
+        return this.enabledFiles;
+    }
+
+    public Set<String> getDisabledFiles() {
+        return this.disabledFiles;
+    }
+
+    public Set<String> getIncludePatterns() {
+        return this.includePatterns;
+    }
+
+    public Set<String> getExcludePatterns() {
+        return this.excludePatterns;
+    }
+
+    /**
+     * Explicitly enabled or disabled classes override the include and exclude patterns.
+     *
+     * @param className fully qualified class name
+     * @return true if the class is selected for enhancement
+     */
+    public boolean isClassEnabled(final String className) {
+        if (this.enabledFiles.contains(className)) {
+            return true;
+        }
+        return !this.disabledFiles.contains(className) && this.classNameMatcher.matches(className);
+    }
+
+    /**
+     * @param className fully qualified class name
+     * @return true if the include and exclude patterns alone select the class
+     */
+    public boolean isClassMatchedByPatterns(final String className) {
+        return this.classNameMatcher.matches(className);
+    }
+
+    public PersistenceApi getApi() {
+        return this.api;
+    }
+
+    public EnhancerSupport getEnhancerSupport() {
+        return this.enhancerSupport;
+    }
+
+}
@@ -21,7 +21,10 @@ public class ToggleEnableAction extends ToggleAction {
 
     @Override
     public void setSelected(final @NotNull AnActionEvent anActionEvent, final boolean b) {
-        State.getInstance(getProject(anActionEvent)).setEnhancerEnabled(b);
+        final Project project = getProject(anActionEvent);
+        State.getInstance(project).setEnhancerEnabled(b);
+        // classes compiled while disabled have not been enhanced
+        CompilerOutputTracker.getInstance(project).requestFullEnhancement();
     }
 
     private static Project getProject(final AnActionEvent anActionEvent) {
@@ -6,10 +6,6 @@ import java.util.Collections;
 import java.util.Objects;
 
 import com.intellij.openapi.module.Module;
-import com.intellij.openapi.project.Project;
-import com.intellij.openapi.project.ProjectUtil;
-import com.intellij.openapi.roots.ModuleRootManager;
-import com.intellij.openapi.roots.ModuleRootModel;
 import com.intellij.openapi.vfs.VirtualFile;
 
 /**
@@ -33,39 +29,47 @@ class VirtualMetadataFile {
 
     private final Collection<VirtualFile> classFiles;
 
-    private final String displayFilename;
+    private final ContentRoots contentRoots;
 
-    private final String displayPath;
+    /**
+     * Lazily computed display filename and path
+     */
+    private String[] display;
 
     VirtualMetadataFile(final Module module,
                         final boolean annotationBasedOnly,
                         final VirtualFile file,
                         final Collection<String> classNames,
-                        final Collection<VirtualFile> classFiles) {
+                        final Collection<VirtualFile> classFiles,
+                        final ContentRoots contentRoots) {
         Objects.requireNonNull(module, "module is null");
         Objects.requireNonNull(file, "file is null");
         Objects.requireNonNull(classNames, "classNames is null");
         Objects.requireNonNull(classFiles, "classFiles is null");
+        Objects.requireNonNull(contentRoots, "contentRoots is null");
         this.module = module;
         this.annotationBasedOnly = annotationBasedOnly;
         this.file = file;
         this.classNames = Collections.unmodifiableCollection(classNames);
         this.classFiles = Collections.unmodifiableCollection(classFiles);
+        this.contentRoots = contentRoots;
+    }
 
-        //
-        // extract filename and path for displaying purposes
+    /**
+     * Extract filename and path for displaying purposes.
+     *
+     * @return display filename and display path
+     */
+    private synchronized String[] getDisplay() {
+        if (this.display != null) {
+            return this.display;
+        }
 
-        final String filePath = file.getPath();
-        final Project project = module.getProject();
-        final VirtualFile projectBaseDir = ProjectUtil.guessProjectDir(project);
-        final String projectBaseDirPath = projectBaseDir == null ? null : projectBaseDir.getPath();
-        final ModuleRootManager moduleRootManager = ModuleRootManager.getInstance(module);
-        final ModuleRootModel rootModel = moduleRootManager.getModifiableModel();
-        final VirtualFile[] contentRoots = rootModel.getContentRoots();
+        final String filePath = this.file.getPath();
+        final String projectBaseDirPath = this.contentRoots.getProjectBaseDirPath();
 
         String pathWithoutModuleName = filePath;
-        for (final VirtualFile contentRoot : contentRoots) {
-            final String contentRootPath = contentRoot.getPath();
+        for (final String contentRootPath : this.contentRoots.getContentRootPaths(this.module)) {
             if (pathWithoutModuleName.contains(contentRootPath)) {
                 pathWithoutModuleName =
                         pathWithoutModuleName.substring(pathWithoutModuleName.indexOf(contentRootPath) + contentRootPath.length());
@@ -83,12 +87,13 @@ class VirtualMetadataFile {
         }
 
         if (pathWithoutModuleName.lastIndexOf(PATH_SEPARATOR_CHAR) > -1) {
-            this.displayFilename = pathWithoutModuleName.substring(pathWithoutModuleName.lastIndexOf(PATH_SEPARATOR_CHAR) + 1);
-            this.displayPath = pathWithoutModuleName.substring(0, pathWithoutModuleName.lastIndexOf(PATH_SEPARATOR_CHAR));
+            this.display = new String[]{
+                    pathWithoutModuleName.substring(pathWithoutModuleName.lastIndexOf(PATH_SEPARATOR_CHAR) + 1),
+                    pathWithoutModuleName.substring(0, pathWithoutModuleName.lastIndexOf(PATH_SEPARATOR_CHAR))};
         } else {
-            this.displayFilename = pathWithoutModuleName;
-            this.displayPath = "";
+            this.display = new String[]{pathWithoutModuleName, ""};
         }
+        return this.display;
     }
 
     public Module getModule() {
@@ -108,11 +113,11 @@ class VirtualMetadataFile {
     }
 
     public String getDisplayFilename() {
-        return this.displayFilename;
+        return this.getDisplay()[0];
     }
 
     public String getDisplayPath() {
-        return this.displayPath;
+        return this.getDisplay()[1];
     }
 
     public Collection<EnhancerItem> toEnhancerItems() {
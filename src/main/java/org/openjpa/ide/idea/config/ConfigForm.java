@@ -20,9 +20,11 @@ import javax.swing.JPanel;
 import javax.swing.JRadioButton;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableColumnModel;
-import javax.swing.table.TableModel;
 
 import com.intellij.ui.BooleanTableCellEditor;
 import com.intellij.uiDesigner.core.GridConstraints;
@@ -33,6 +35,7 @@ import org.openjpa.ide.idea.EnhancerSupportRegistry;
 import org.openjpa.ide.idea.PersistenceApi;
 import org.openjpa.ide.idea.config.swing.AffectedModulesRowModel;
 import org.openjpa.ide.idea.config.swing.ColumnAdjuster;
+import org.openjpa.ide.idea.config.swing.JHintingTextField;
 import org.openjpa.ide.idea.config.swing.MetadataOrClassFilesRowModel;
 import org.openjpa.ide.idea.integration.EnhancerSupport;
 
@@ -69,8 +72,58 @@ public class ConfigForm {
     private JComboBox persistenceImplComboBox;
     private JCheckBox addDefaultConstructor;
     private JCheckBox enforcePropertyRestrictions;
-    private JCheckBox tmpClassLoader;
     private JCheckBox enhanceAllPersistentClasses;
+    private JCheckBox incrementalEnhancement;
+    private JCheckBox parallelEnhancement;
+    private JCheckBox outOfProcessEnhancer;
+    private JCheckBox buildProcessEnhancer;
+    private JCheckBox cacheEnhancedClasses;
+
+    private JHintingTextField filterField;
+
+    /**
+     * package/glob patterns of the classes to enhance, e.g. 'com.acme.billing.**; *.audit.*Entity'
+     */
+    private JHintingTextField includePatternsField;
+
+    private JHintingTextField excludePatternsField;
+
+    /**
+     * delay after the last key stroke before the tables are filtered
+     */
+    private static final int FILTER_DELAY_MILLIS = 150;
+
+    private final Timer filterTimer = new Timer(FILTER_DELAY_MILLIS, e -> this.applyFilter());
+
+    private final ColumnAdjuster columnAdjuster;
+
+    public ConfigForm() {
+        //
+        // Type-ahead filter for both tables
+
+        this.filterTimer.setRepeats(false);
+        this.filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(final DocumentEvent e) {
+                ConfigForm.this.filterTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(final DocumentEvent e) {
+                ConfigForm.this.filterTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(final DocumentEvent e) {
+                ConfigForm.this.filterTimer.restart();
+            }
+        });
+
+        // adjust column sizes on model changes, installed once as it listens to the table
+        this.columnAdjuster = new ColumnAdjuster(this.metadataAndClassesTable);
+        //columnAdjuster.setOnlyAdjustLarger(false);
+        this.columnAdjuster.setDynamicAdjustment(true);
+    }
 
     //
     // Interface with ProjectComponent
@@ -101,10 +154,28 @@ public class ConfigForm {
         if (this.enforcePropertyRestrictions.isSelected() != data.isEnforcePropertyRestrictions()) {
             return true;
         }
-        if (this.tmpClassLoader.isSelected() != data.isTmpClassLoader()) {
+        if (this.enhanceAllPersistentClasses.isSelected() != data.isEnhanceAllPersistentClasses()){
+            return true;
+        }
+        if (this.incrementalEnhancement.isSelected() != data.isIncrementalEnhancement()) {
+            return true;
+        }
+        if (this.parallelEnhancement.isSelected() != data.isParallelEnhancement()) {
+            return true;
+        }
+        if (this.outOfProcessEnhancer.isSelected() != data.isOutOfProcessEnhancer()) {
             return true;
         }
-        if (this.enhanceAllPersistentClasses.isSelected() != data.isTmpClassLoader()){
+        if (this.buildProcessEnhancer.isSelected() != data.isBuildProcessEnhancer()) {
+            return true;
+        }
+        if (this.cacheEnhancedClasses.isSelected() != data.isCacheEnhancedClasses()) {
+            return true;
+        }
+        if (!this.includePatternsField.getText().trim().equals(data.getIncludePatterns())) {
+            return true;
+        }
+        if (!this.excludePatternsField.getText().trim().equals(data.getExcludePatterns())) {
             return true;
         }
 
@@ -397,12 +468,60 @@ public class ConfigForm {
         this.includeTestClassesCheckBox.setSelected(data.isIncludeTestClasses());
         this.addDefaultConstructor.setSelected(data.isAddDefaultConstructor());
         this.enforcePropertyRestrictions.setSelected(data.isEnforcePropertyRestrictions());
-        this.tmpClassLoader.setSelected(data.isTmpClassLoader());
         this.enhanceAllPersistentClasses.setSelected(data.isEnhanceAllPersistentClasses());
+        this.incrementalEnhancement.setSelected(data.isIncrementalEnhancement());
+        this.parallelEnhancement.setSelected(data.isParallelEnhancement());
+        this.outOfProcessEnhancer.setSelected(data.isOutOfProcessEnhancer());
+        this.buildProcessEnhancer.setSelected(data.isBuildProcessEnhancer());
+        this.cacheEnhancedClasses.setSelected(data.isCacheEnhancedClasses());
+
+        //
+        // Class selection patterns
+        this.includePatternsField.setText(data.getIncludePatterns());
+        this.excludePatternsField.setText(data.getExcludePatterns());
 
         //
         // Panel displaying an info message if enhancer is not initialized
+        this.setInfoPanel(data);
 
+        this.setTableData(data);
+    }
+
+    /**
+     * Indicate that affected modules and files are searched in the background, the tables are empty meanwhile.
+     */
+    public void setDiscoveryInProgress() {
+        final JLabel label = (JLabel) this.infoPanel.getComponent(0);
+        label.setText("Searching affected modules and persistent classes ...");
+        this.infoPanel.setVisible(true);
+    }
+
+    /**
+     * Display the result of the background search of affected modules and files, keeping the other settings as edited.
+     *
+     * @param indexReady          false if the search failed because the index was not ready
+     * @param affectedModules     affected modules
+     * @param metadataFiles       metadata files
+     * @param annotatedClassFiles annotated classes
+     */
+    public void setDiscoveredData(final boolean indexReady,
+                                  final List<AffectedModule> affectedModules,
+                                  final List<MetaDataOrClassFile> metadataFiles,
+                                  final List<MetaDataOrClassFile> annotatedClassFiles) {
+        final GuiState data = new GuiState(this.guiState);
+        data.setIndexReady(indexReady);
+        data.setAffectedModules(affectedModules);
+        data.setMetadataFiles(metadataFiles);
+        data.setAnnotatedClassFiles(annotatedClassFiles);
+        this.guiState = new GuiState(data);
+
+        this.indexNotReadyPanel.setVisible(!data.isIndexReady());
+        this.contentPanel.setVisible(data.isIndexReady());
+        this.setInfoPanel(data);
+        this.setTableData(data);
+    }
+
+    private void setInfoPanel(final GuiState data) {
         this.infoPanel.setVisible(!data.isEnhancerInitialized());
         this.infoPanel.setEnabled(!data.isEnhancerInitialized());
 
@@ -416,11 +535,15 @@ public class ConfigForm {
             label.setText("Please click 'Build Project' to see affected files");
             this.infoPanel.setVisible(false);
         }
+    }
 
+    @SuppressWarnings("MagicNumber")
+    private void setTableData(final GuiState data) {
         //
         // Table displaying affected modules if enhancer is initialized
 
-        final TableModel affectedModulesRowModel = new AffectedModulesRowModel(data.getAffectedModules());
+        final AffectedModulesRowModel affectedModulesRowModel = new AffectedModulesRowModel(data.getAffectedModules());
+        affectedModulesRowModel.setFilterText(this.filterField.getText());
         // modules affected by class enhancement
         this.affectedModulesTable.setModel(affectedModulesRowModel);
         // set column appearance
@@ -435,17 +558,14 @@ public class ConfigForm {
         //
         // Table displaying affected files/classes/.. if enhancer is initialized
 
-        final TableModel metadataOrClassFilesRowModel = new MetadataOrClassFilesRowModel(data.getMetadataFiles(), data.getAnnotatedClassFiles());
+        final MetadataOrClassFilesRowModel metadataOrClassFilesRowModel = new MetadataOrClassFilesRowModel(data.getMetadataFiles(), data.getAnnotatedClassFiles());
+        metadataOrClassFilesRowModel.setFilterText(this.filterField.getText());
         // files affected by class enhancement
         this.metadataAndClassesTable.setModel(metadataOrClassFilesRowModel);
         // set column appearance
         this.metadataAndClassesTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
         this.metadataAndClassesTable.setDefaultEditor(Boolean.class, new BooleanTableCellEditor());
-        // adjust column sizes (after being rendered the first time - necessary for ColumnAdjuster to work)
-        final ColumnAdjuster columnAdjuster = new ColumnAdjuster(this.metadataAndClassesTable);
-        //columnAdjuster.setOnlyAdjustLarger(false);
-        columnAdjuster.setDynamicAdjustment(true);
-        columnAdjuster.adjustColumns();
+        // column sizes are adjusted by the ColumnAdjuster when the model is set
         setPreferredTableHeight(this.metadataAndClassesTable, this.metadataAndClassesTable.getRowCount());
 
         this.metadataAndClassesTable.setVisible(data.isEnhancerInitialized());
@@ -454,6 +574,18 @@ public class ConfigForm {
         this.metaDataAndClassesScrollPane.setVisible(data.isEnhancerInitialized());
     }
 
+    /**
+     * Filter both tables by the text of the filter field, the models keep the rows not displayed.
+     */
+    private void applyFilter() {
+        final String text = this.filterField.getText();
+        ((AffectedModulesRowModel) this.affectedModulesTable.getModel()).setFilterText(text);
+        ((MetadataOrClassFilesRowModel) this.metadataAndClassesTable.getModel()).setFilterText(text);
+        setPreferredTableHeight(this.affectedModulesTable, this.affectedModulesTable.getRowCount());
+        setPreferredTableHeight(this.metadataAndClassesTable, this.metadataAndClassesTable.getRowCount());
+        this.configPanel.revalidate();
+    }
+
     @SuppressWarnings("FeatureEnvy")
     public void getData(final GuiState data) {
         data.setEnhancerEnabled(this.enableEnhancerCheckBox.isSelected());
@@ -461,8 +593,14 @@ public class ConfigForm {
         data.setIncludeTestClasses(this.includeTestClassesCheckBox.isSelected());
         data.setAddDefaultConstructor(this.addDefaultConstructor.isSelected());
         data.setEnforcePropertyRestrictions(this.enforcePropertyRestrictions.isSelected());
-        data.setTmpClassLoader(this.tmpClassLoader.isSelected());
         data.setEnhanceAllPersistentClasses(this.enhanceAllPersistentClasses.isSelected());
+        data.setIncrementalEnhancement(this.incrementalEnhancement.isSelected());
+        data.setParallelEnhancement(this.parallelEnhancement.isSelected());
+        data.setOutOfProcessEnhancer(this.outOfProcessEnhancer.isSelected());
+        data.setBuildProcessEnhancer(this.buildProcessEnhancer.isSelected());
+        data.setCacheEnhancedClasses(this.cacheEnhancedClasses.isSelected());
+        data.setIncludePatterns(this.includePatternsField.getText().trim());
+        data.setExcludePatterns(this.excludePatternsField.getText().trim());
 
         final EnhancerSupport enhancerSupport = getByEnhancerSupportName(data, (String) this.persistenceImplComboBox.getSelectedItem());
         data.setEnhancerSupport(enhancerSupport);
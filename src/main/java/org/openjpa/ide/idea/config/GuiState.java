@@ -31,12 +31,21 @@ public class GuiState {
 
     private boolean enforcePropertyRestrictions;
 
-    private boolean tmpClassLoader;
 
     private boolean enhancerInitialized;
 
     private boolean enhanceAllPersistentClasses;
 
+    private boolean incrementalEnhancement;
+
+    private boolean parallelEnhancement;
+
+    private boolean outOfProcessEnhancer;
+
+    private boolean buildProcessEnhancer;
+
+    private boolean cacheEnhancedClasses;
+
     private PersistenceApi api;
 
     private EnhancerSupportRegistry enhancerSupportRegistry;
@@ -49,6 +58,13 @@ public class GuiState {
 
     private List<MetaDataOrClassFile> annotatedClassFiles;
 
+    /**
+     * Package/glob patterns of the classes to enhance, separated by ';'
+     */
+    private String includePatterns = "";
+
+    private String excludePatterns = "";
+
     //
     // Constructor
     //
@@ -65,6 +81,10 @@ public class GuiState {
                 true,
                 true,
                 true,
+                true,
+                false,
+                true,
+                false,
                 PersistenceApi.HIBERNATE,
                 enhancerSupportRegistry,
                 enhancerSupportRegistry.getDefaultEnhancerSupport(),
@@ -80,8 +100,12 @@ public class GuiState {
                     final boolean includeTestClasses,
                     final boolean addDefaultConstructor,
                     final boolean enforcePropertyRestrictions,
-                    final boolean tmpClassLoader,
                     final boolean enhanceAllPersistentClasses,
+                    final boolean incrementalEnhancement,
+                    final boolean parallelEnhancement,
+                    final boolean outOfProcessEnhancer,
+                    final boolean buildProcessEnhancer,
+                    final boolean cacheEnhancedClasses,
                     final boolean enhancerInitialized,
                     final PersistenceApi api,
                     final EnhancerSupportRegistry enhancerSupportRegistry,
@@ -97,8 +121,12 @@ public class GuiState {
         this.includeTestClasses = includeTestClasses;
         this.addDefaultConstructor = addDefaultConstructor;
         this.enforcePropertyRestrictions = enforcePropertyRestrictions;
-        this.tmpClassLoader = tmpClassLoader;
         this.enhanceAllPersistentClasses = enhanceAllPersistentClasses;
+        this.incrementalEnhancement = incrementalEnhancement;
+        this.parallelEnhancement = parallelEnhancement;
+        this.outOfProcessEnhancer = outOfProcessEnhancer;
+        this.buildProcessEnhancer = buildProcessEnhancer;
+        this.cacheEnhancedClasses = cacheEnhancedClasses;
         this.enhancerInitialized = enhancerInitialized;
         this.api = api;
         this.enhancerSupportRegistry = enhancerSupportRegistry;
@@ -116,8 +144,12 @@ public class GuiState {
                 data.isIncludeTestClasses(),
                 data.isAddDefaultConstructor(),
                 data.isEnforcePropertyRestrictions(),
-                data.isTmpClassLoader(),
                 data.isEnhanceAllPersistentClasses(),
+                data.isIncrementalEnhancement(),
+                data.isParallelEnhancement(),
+                data.isOutOfProcessEnhancer(),
+                data.isBuildProcessEnhancer(),
+                data.isCacheEnhancedClasses(),
                 data.isEnhancerInitialized(),
                 data.getApi(),
                 data.getEnhancerSupportRegistry(),
@@ -125,6 +157,8 @@ public class GuiState {
                 deepCopyAffectedModules(data.getAffectedModules()),
                 deepCopyMetaFilesModules(data.getMetadataFiles()),
                 deepCopyMetaFilesModules(data.getAnnotatedClassFiles()));
+        this.includePatterns = data.getIncludePatterns();
+        this.excludePatterns = data.getExcludePatterns();
     }
 
     private static List<MetaDataOrClassFile> deepCopyMetaFilesModules(List<MetaDataOrClassFile> metadataFiles) {
@@ -153,6 +187,10 @@ public class GuiState {
         return this.indexReady;
     }
 
+    public void setIndexReady(final boolean indexReady) {
+        this.indexReady = indexReady;
+    }
+
     public boolean isEnhancerEnabled() {
         return this.enhancerEnabled;
     }
@@ -230,6 +268,22 @@ public class GuiState {
         return new ArrayList<>(this.annotatedClassFiles);
     }
 
+    public String getIncludePatterns() {
+        return this.includePatterns;
+    }
+
+    public void setIncludePatterns(final String includePatterns) {
+        this.includePatterns = includePatterns;
+    }
+
+    public String getExcludePatterns() {
+        return this.excludePatterns;
+    }
+
+    public void setExcludePatterns(final String excludePatterns) {
+        this.excludePatterns = excludePatterns;
+    }
+
     public boolean isAddDefaultConstructor() {
         return addDefaultConstructor;
     }
@@ -246,14 +300,6 @@ public class GuiState {
         this.enforcePropertyRestrictions = enforcePropertyRestrictions;
     }
 
-    public boolean isTmpClassLoader() {
-        return tmpClassLoader;
-    }
-
-    public void setTmpClassLoader(boolean tmpClassLoader) {
-        this.tmpClassLoader = tmpClassLoader;
-    }
-
     public boolean isEnhanceAllPersistentClasses() {
         return enhanceAllPersistentClasses;
     }
@@ -262,6 +308,46 @@ public class GuiState {
         this.enhanceAllPersistentClasses = enhanceAllPersistentClasses;
     }
 
+    public boolean isIncrementalEnhancement() {
+        return incrementalEnhancement;
+    }
+
+    public void setIncrementalEnhancement(boolean incrementalEnhancement) {
+        this.incrementalEnhancement = incrementalEnhancement;
+    }
+
+    public boolean isParallelEnhancement() {
+        return parallelEnhancement;
+    }
+
+    public void setParallelEnhancement(boolean parallelEnhancement) {
+        this.parallelEnhancement = parallelEnhancement;
+    }
+
+    public boolean isOutOfProcessEnhancer() {
+        return outOfProcessEnhancer;
+    }
+
+    public void setOutOfProcessEnhancer(boolean outOfProcessEnhancer) {
+        this.outOfProcessEnhancer = outOfProcessEnhancer;
+    }
+
+    public boolean isBuildProcessEnhancer() {
+        return buildProcessEnhancer;
+    }
+
+    public void setBuildProcessEnhancer(boolean buildProcessEnhancer) {
+        this.buildProcessEnhancer = buildProcessEnhancer;
+    }
+
+    public boolean isCacheEnhancedClasses() {
+        return cacheEnhancedClasses;
+    }
+
+    public void setCacheEnhancedClasses(boolean cacheEnhancedClasses) {
+        this.cacheEnhancedClasses = cacheEnhancedClasses;
+    }
+
     //
     // java.lang.Object overrides
     //
@@ -14,17 +14,34 @@ public class AffectedModulesRowModel extends AbstractTableModel {
 
     private final List<AffectedModule> affectedModules;
 
+    private final IncrementalRowFilter rowFilter;
+
     public AffectedModulesRowModel(final List<AffectedModule> affectedModules) {
         this.affectedModules = affectedModules;
+        this.rowFilter = new IncrementalRowFilter(affectedModules.size(), row -> affectedModules.get(row).getName());
     }
 
+    /**
+     * @return all modules, including the ones not matching the filter
+     */
     public List<AffectedModule> getAffectedModules() {
         return this.affectedModules;
     }
 
+    /**
+     * Display only modules whose name contains the text.
+     *
+     * @param text the filter text, null or blank to display all modules
+     */
+    public void setFilterText(final String text) {
+        if (this.rowFilter.setFilterText(text)) {
+            this.fireTableDataChanged();
+        }
+    }
+
     @Override
     public int getRowCount() {
-        return this.affectedModules.size();
+        return this.rowFilter.getRowCount();
     }
 
     @Override
@@ -49,14 +66,14 @@ public class AffectedModulesRowModel extends AbstractTableModel {
 
     @Override
     public Object getValueAt(final int rowIndex, final int columnIndex) {
-        final AffectedModule am = this.affectedModules.get(rowIndex);
+        final AffectedModule am = this.affectedModules.get(this.rowFilter.toModelRow(rowIndex));
         return columnIndex == 0 ? am.isEnabled() : am.getName();
     }
 
     @Override
     public void setValueAt(final Object aValue, final int rowIndex, final int columnIndex) {
         if (columnIndex == 0) {
-            final AffectedModule am = this.affectedModules.get(rowIndex);
+            final AffectedModule am = this.affectedModules.get(this.rowFilter.toModelRow(rowIndex));
             am.setEnabled((Boolean) aValue);
             this.fireTableCellUpdated(rowIndex, columnIndex);
         }
@@ -1,11 +1,14 @@
 package org.openjpa.ide.idea.config.swing;
 
 import java.awt.Component;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import javax.swing.AbstractAction;
@@ -34,6 +37,9 @@ import javax.swing.table.TableModel;
  * of the columns must fit inside the table. So if you increase one column, one
  * or more of the other columns must decrease. Because of this the resize mode
  * of RESIZE_ALL_COLUMNS will work the best.
+ * <p/>
+ * For large tables the data width is calculated from a bounded sample of rows (the visible rows and rows
+ * spread evenly over the table), and the widths of rendered cell values are cached.
  */
 public class ColumnAdjuster implements PropertyChangeListener, TableModelListener, Serializable {
 
@@ -53,6 +59,18 @@ public class ColumnAdjuster implements PropertyChangeListener, TableModelListene
 
     private final Map<TableColumn, Integer> columnSizes = new HashMap<>();
 
+    /**
+     * maximum number of rows measured per column, in addition to the visible rows
+     */
+    private static final int SAMPLE_ROWS = 200;
+
+    private static final int MAX_CACHED_WIDTHS = 4096;
+
+    /**
+     * widths of the rendered cell values by model column
+     */
+    private final Map<Integer, Map<Object, Integer>> cellWidths = new HashMap<>();
+
     /*
       *  Specify the table and use default spacing
       */
@@ -130,19 +148,42 @@ public class ColumnAdjuster implements PropertyChangeListener, TableModelListene
             return 0;
         }
 
-        int preferredWidth = 0;
         final int maxWidth = this.table.getColumnModel().getColumn(column).getMaxWidth();
+        final int rowCount = this.table.getRowCount();
 
-        for (int row = 0; row < this.table.getRowCount(); row++) {
-            preferredWidth = Math.max(preferredWidth, getCellDataWidth(row, column));
+        //  Small tables are measured completely
 
-            //  We've exceeded the maximum width, no need to check other rows
+        if (rowCount <= SAMPLE_ROWS) {
+            return getRowsDataWidth(column, 0, rowCount, 1, 0, maxWidth);
+        }
 
-            if (preferredWidth >= maxWidth) {
-                break;
-            }
+        //  Large tables: the visible rows and rows spread evenly over the table
+
+        final Rectangle visibleRect = this.table.getVisibleRect();
+        final int firstVisible = this.table.rowAtPoint(visibleRect.getLocation());
+        int lastVisible = this.table.rowAtPoint(new Point(visibleRect.x, visibleRect.y + visibleRect.height - 1));
+        if (lastVisible < 0) {
+            lastVisible = rowCount - 1;
+        }
+
+        int preferredWidth = 0;
+        if (firstVisible >= 0) {
+            final int end = Math.min(lastVisible + 1, firstVisible + SAMPLE_ROWS);
+            preferredWidth = getRowsDataWidth(column, firstVisible, end, 1, preferredWidth, maxWidth);
         }
+        final int step = (rowCount + SAMPLE_ROWS - 1) / SAMPLE_ROWS;
+        return getRowsDataWidth(column, 0, rowCount, step, preferredWidth, maxWidth);
+    }
 
+    private int getRowsDataWidth(final int column, final int start, final int end, final int step,
+                                 final int width, final int maxWidth) {
+        int preferredWidth = width;
+
+        //  Stop once the maximum width is exceeded, no need to check other rows
+
+        for (int row = start; row < end && preferredWidth < maxWidth; row += step) {
+            preferredWidth = Math.max(preferredWidth, getCellDataWidth(row, column));
+        }
         return preferredWidth;
     }
 
@@ -150,12 +191,38 @@ public class ColumnAdjuster implements PropertyChangeListener, TableModelListene
       *  Get the preferred width for the specified cell
       */
     private int getCellDataWidth(final int row, final int column) {
+        //  Values of the same column render with the same width
+
+        final Object value = this.table.getValueAt(row, column);
+        final Map<Object, Integer> widths = value == null ? null
+                : this.cellWidths.computeIfAbsent(this.table.convertColumnIndexToModel(column), k -> createWidthCache());
+        if (widths != null) {
+            final Integer width = widths.get(value);
+            if (width != null) {
+                return width;
+            }
+        }
+
         //  Inovke the renderer for the cell to calculate the preferred width
 
         final TableCellRenderer cellRenderer = this.table.getCellRenderer(row, column);
         final Component c = this.table.prepareRenderer(cellRenderer, row, column);
-        return c.getPreferredSize().width + this.table.getIntercellSpacing().width;
+        final int width = c.getPreferredSize().width + this.table.getIntercellSpacing().width;
+        if (widths != null) {
+            widths.put(value, width);
+        }
+        return width;
+    }
+
+    private static Map<Object, Integer> createWidthCache() {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
 
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Object, Integer> eldest) {
+                return size() > MAX_CACHED_WIDTHS;
+            }
+        };
     }
 
     /*
@@ -256,12 +323,17 @@ public class ColumnAdjuster implements PropertyChangeListener, TableModelListene
         //  When the TableModel changes we need to update the listeners
         //  and column widths
 
+        if ("font".equals(e.getPropertyName())) {
+            this.cellWidths.clear();
+        }
+
         if ("model".equals(e.getPropertyName())) {
             TableModel model = (TableModel) e.getOldValue();
             model.removeTableModelListener(this);
 
             model = (TableModel) e.getNewValue();
             model.addTableModelListener(this);
+            this.cellWidths.clear();
             adjustColumns();
         }
     }
@@ -276,9 +348,10 @@ public class ColumnAdjuster implements PropertyChangeListener, TableModelListene
             return;
         }
 
-        //  A cell has been updated
+        //  A cell has been updated (data changes, e.g. by filtering, update all columns)
 
-        if (e.getType() == TableModelEvent.UPDATE) {
+        if (e.getType() == TableModelEvent.UPDATE && e.getColumn() != TableModelEvent.ALL_COLUMNS
+                && e.getFirstRow() == e.getLastRow()) {
             final int column = this.table.convertColumnIndexToView(e.getColumn());
 
             //  Only need to worry about an increase in width for this cell
@@ -0,0 +1,95 @@
+package org.openjpa.ide.idea.config.swing;
+
+import java.util.Locale;
+import java.util.function.IntFunction;
+
+/**
+ * Maps the rows of a filtered table to the rows of its model.<br/>
+ * <br/>
+ * Rows match if their search text contains the filter text, ignoring case. The lower case search texts are
+ * created on first use only. If the filter text is extended (e.g. while typing), only the rows matching the
+ * previous filter text are checked again.
+ */
+final class IncrementalRowFilter {
+
+    private final int size;
+
+    private final IntFunction<String> searchText;
+
+    private String[] searchTexts = null;
+
+    private String filterText = "";
+
+    /**
+     * model rows matching the filter text, null if not filtered
+     */
+    private int[] rows = null;
+
+    private int rowCount;
+
+    /**
+     * @param size       number of model rows
+     * @param searchText provides the text to search for a model row
+     */
+    IncrementalRowFilter(final int size, final IntFunction<String> searchText) {
+        this.size = size;
+        this.searchText = searchText;
+        this.rowCount = size;
+    }
+
+    /**
+     * @param text the filter text, null or blank to display all rows
+     * @return true if the displayed rows changed
+     */
+    boolean setFilterText(final String text) {
+        final String newFilterText = text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+        if (newFilterText.equals(this.filterText)) {
+            return false;
+        }
+
+        if (newFilterText.isEmpty()) {
+            this.rows = null;
+            this.rowCount = this.size;
+        } else if (this.rows != null && newFilterText.contains(this.filterText)) {
+            // narrowed, matches are a subset of the current matches
+            this.rowCount = this.filter(this.rows, this.rowCount, newFilterText, this.rows);
+        } else {
+            final int[] allRows = new int[this.size];
+            for (int i = 0; i < this.size; ++i) {
+                allRows[i] = i;
+            }
+            this.rowCount = this.filter(allRows, this.size, newFilterText, allRows);
+            this.rows = allRows;
+        }
+        this.filterText = newFilterText;
+        return true;
+    }
+
+    int getRowCount() {
+        return this.rowCount;
+    }
+
+    int toModelRow(final int row) {
+        return this.rows == null ? row : this.rows[row];
+    }
+
+    private int filter(final int[] candidates, final int candidateCount, final String text, final int[] matches) {
+        if (this.searchTexts == null) {
+            this.searchTexts = new String[this.size];
+        }
+        int count = 0;
+        for (int i = 0; i < candidateCount; ++i) {
+            final int row = candidates[i];
+            String rowText = this.searchTexts[row];
+            if (rowText == null) {
+                rowText = this.searchText.apply(row).toLowerCase(Locale.ROOT);
+                this.searchTexts[row] = rowText;
+            }
+            if (rowText.contains(text)) {
+                matches[count++] = row;
+            }
+        }
+        return count;
+    }
+
+}
@@ -17,6 +17,8 @@ public class MetadataOrClassFilesRowModel extends AbstractTableModel {
     private static final long serialVersionUID = 1L;
     private final List<MetaDataOrClassFile> files = new ArrayList<>();
 
+    private final IncrementalRowFilter rowFilter;
+
     public MetadataOrClassFilesRowModel(final Collection<MetaDataOrClassFile> metadataFiles,
                                         final Collection<MetaDataOrClassFile> annotatedFiles) {
         if (metadataFiles != null && !metadataFiles.isEmpty()) {
@@ -25,15 +27,33 @@ public class MetadataOrClassFilesRowModel extends AbstractTableModel {
         if (annotatedFiles != null && !annotatedFiles.isEmpty()) {
             this.files.addAll(annotatedFiles);
         }
+        this.rowFilter = new IncrementalRowFilter(this.files.size(), row -> {
+            final MetaDataOrClassFile file = this.files.get(row);
+            return file.getModuleName() + '\n' + file.getClassName();
+        });
     }
 
+    /**
+     * @return all files, including the ones not matching the filter
+     */
     public List<MetaDataOrClassFile> getFiles() {
         return files;
     }
 
+    /**
+     * Display only files whose module or fully qualified class name contains the text.
+     *
+     * @param text the filter text, null or blank to display all files
+     */
+    public void setFilterText(final String text) {
+        if (this.rowFilter.setFilterText(text)) {
+            this.fireTableDataChanged();
+        }
+    }
+
     @Override
     public int getRowCount() {
-        return this.files.size();
+        return this.rowFilter.getRowCount();
     }
 
     @Override
@@ -67,7 +87,7 @@ public class MetadataOrClassFilesRowModel extends AbstractTableModel {
     @SuppressWarnings("FeatureEnvy")
     @Override
     public Object getValueAt(final int rowIndex, final int columnIndex) {
-        final MetaDataOrClassFile moc = this.files.get(rowIndex);
+        final MetaDataOrClassFile moc = this.files.get(this.rowFilter.toModelRow(rowIndex));
 
         final String ret;
         switch (columnIndex) {
@@ -94,7 +114,7 @@ public class MetadataOrClassFilesRowModel extends AbstractTableModel {
     @Override
     public void setValueAt(final Object aValue, final int rowIndex, final int columnIndex) {
         if (columnIndex == 0) {
-            final MetaDataOrClassFile classFile = this.files.get(rowIndex);
+            final MetaDataOrClassFile classFile = this.files.get(this.rowFilter.toModelRow(rowIndex));
             classFile.setEnabled((Boolean) aValue);
             this.fireTableCellUpdated(rowIndex, columnIndex);
         }
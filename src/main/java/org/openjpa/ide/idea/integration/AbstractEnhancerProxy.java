@@ -4,6 +4,7 @@ import com.intellij.openapi.compiler.CompileContext;
 import com.intellij.openapi.module.Module;
 
 import org.openjpa.ide.idea.PersistenceApi;
+import org.openjpa.ide.idea.StateSnapshot;
 
 /**
  */
@@ -11,6 +12,11 @@ public abstract class AbstractEnhancerProxy implements EnhancerProxy {
 
     private final PersistenceApi api;
 
+    /**
+     * settings of the build the proxy was created for
+     */
+    private final StateSnapshot settings;
+
     private final CompileContext compileContext;
 
     private final Module module;
@@ -19,11 +25,13 @@ public abstract class AbstractEnhancerProxy implements EnhancerProxy {
 
     @SuppressWarnings("RedundantThrowsDeclaration")
     protected AbstractEnhancerProxy(final PersistenceApi api,
+                                    final StateSnapshot settings,
                                     final CompileContext compileContext,
                                     final Module module,
                                     final String persistenceUnitName) {
 
         this.api = api;
+        this.settings = settings;
         this.compileContext = compileContext;
         this.module = module;
         this.persistenceUnitName = persistenceUnitName;
@@ -33,6 +41,10 @@ public abstract class AbstractEnhancerProxy implements EnhancerProxy {
         return this.api;
     }
 
+    public final StateSnapshot getSettings() {
+        return this.settings;
+    }
+
     public final CompileContext getCompileContext() {
         return this.compileContext;
     }
@@ -12,6 +12,7 @@ import com.intellij.openapi.module.Module;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.openjpa.ide.idea.PersistenceApi;
+import org.openjpa.ide.idea.StateSnapshot;
 
 /**
  */
@@ -44,6 +45,7 @@ public abstract class AbstractEnhancerSupport implements EnhancerSupport {
     @Override
     @NotNull
     public EnhancerProxy newEnhancerProxy(final PersistenceApi api,
+                                          final StateSnapshot settings,
                                           final CompileContext compileCtx,
                                           final Module module,
                                           @Nullable final String persistenceUnitName)
@@ -54,9 +56,9 @@ public abstract class AbstractEnhancerSupport implements EnhancerSupport {
 
         final Class<?> enhancerProxyClass = this.getEnhancerProxyClass();
         final Constructor<?> constructor = enhancerProxyClass
-                .getConstructor(PersistenceApi.class, CompileContext.class, Module.class, String.class);
+                .getConstructor(PersistenceApi.class, StateSnapshot.class, CompileContext.class, Module.class, String.class);
 
-        return (EnhancerProxy) constructor.newInstance(api, compileCtx, module, persistenceUnitName);
+        return (EnhancerProxy) constructor.newInstance(api, settings, compileCtx, module, persistenceUnitName);
     }
 
 }
@@ -17,7 +17,7 @@ import com.intellij.openapi.roots.*;
 import com.intellij.openapi.vfs.VirtualFile;
 
 import com.intellij.util.lang.UrlClassLoader;
-import org.openjpa.ide.idea.State;
+import org.openjpa.ide.idea.StateSnapshot;
 
 /**
  * Factory for creating ClassLoaders restricted to each provided module's dependency scope.
@@ -31,31 +31,44 @@ public abstract class ClassLoaderFactory {
     /**
      * Creates a new {@link ClassLoader} that includes only the dependencies
      * and output dirs in the current module's compile context (includes module dependencies
-     * and external jar dependencies).
+     * and external jar dependencies).<br/>
+     * <br/>
+     * The module's library dependencies are loaded by a parent ClassLoader cached between builds
+     * (see {@link EnhancerClassLoaderCache}), the returned ClassLoader has to be closed after usage.
      *
      * @param compileContext .
+     * @param settings       settings of the current build
      * @param module         .
      * @param proxyClass     the class of the proxy instantiating a ClassLoader
      * @return .
      * @throws java.io.IOException .
      */
-    @SuppressWarnings("deprecation") // want to stay backwards compatible at any cost
-    public static ClassLoader newClassLoader(final CompileContext compileContext, final Module module, final Class<?> proxyClass) throws IOException {
+    public static URLClassLoader newClassLoader(final CompileContext compileContext,
+                                                final StateSnapshot settings,
+                                                final Module module,
+                                                final Class<?> proxyClass) throws IOException {
+        return EnhancerClassLoaderCache.getInstance(module.getProject()).newClassLoader(compileContext, settings, module, proxyClass);
+    }
 
+    /**
+     * Urls of the proxy's own ClassLoader, to be able to instantiate executors.
+     *
+     * @param proxyClass the class of the proxy instantiating a ClassLoader
+     * @return .
+     */
+    static Collection<URL> getProxyUrls(final Class<?> proxyClass) {
         // get urls from actual class loader to be able to instantiate executors
         final UrlClassLoader loader = (UrlClassLoader) (proxyClass == null ? ClassLoaderFactory.class.getClassLoader() : proxyClass.getClassLoader());
-        final Collection<URL> urls = new LinkedList<>(loader.getUrls());
-
-        final var moduleOutputDirectory = compileContext.getModuleOutputDirectory(module);
-        if (moduleOutputDirectory != null) {
-            urls.add(toUrl(moduleOutputDirectory));
-        }
-
-        final var moduleOutputDirectoryForTests = compileContext.getModuleOutputDirectoryForTests(module);
-        if (moduleOutputDirectoryForTests != null && State.getInstance(compileContext.getProject()).isIncludeTestClasses()){
-            urls.add(toUrl(moduleOutputDirectoryForTests));
-        }
+        return new LinkedList<>(loader.getUrls());
+    }
 
+    /**
+     * Class roots of the module's library dependencies.
+     *
+     * @param module .
+     * @return .
+     */
+    static List<File> getLibraryFiles(final Module module) {
         final List<VirtualFile> jars = new ArrayList<>();
 
         ModuleRootManager.getInstance(module).orderEntries().forEachLibrary(library -> {
@@ -64,14 +77,37 @@ public abstract class ClassLoaderFactory {
             return true;
         });
 
+        final List<File> files = new ArrayList<>(jars.size());
         for (final VirtualFile vf : jars) {
-            final File f = new File(vf.getPath().replace(".jar!",".jar"));
-            final URI uri = f.toURI();
-            final URL url = uri.toURL();
-            urls.add(url);
+            files.add(new File(vf.getPath().replace(".jar!", ".jar")));
+        }
+        return files;
+    }
+
+    /**
+     * Output directories of the module (depending on configuration including test classes).
+     *
+     * @param compileContext .
+     * @param settings       settings of the current build
+     * @param module         .
+     * @return .
+     * @throws java.io.IOException .
+     */
+    static Collection<URL> getOutputUrls(final CompileContext compileContext,
+                                         final StateSnapshot settings,
+                                         final Module module) throws IOException {
+        final Collection<URL> urls = new ArrayList<>(2);
+
+        final var moduleOutputDirectory = compileContext.getModuleOutputDirectory(module);
+        if (moduleOutputDirectory != null) {
+            urls.add(toUrl(moduleOutputDirectory));
         }
 
-        return new URLClassLoader(urls.toArray(new URL[0]));
+        final var moduleOutputDirectoryForTests = compileContext.getModuleOutputDirectoryForTests(module);
+        if (moduleOutputDirectoryForTests != null && settings.isIncludeTestClasses()){
+            urls.add(toUrl(moduleOutputDirectoryForTests));
+        }
+        return urls;
     }
 
     private static URL toUrl(VirtualFile vf) throws IOException{
@@ -0,0 +1,370 @@
+package org.openjpa.ide.idea.integration;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.compiler.CompileContext;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.openjpa.ide.idea.StateSnapshot;
+
+/**
+ * Caches ClassLoaders holding the enhancer and a module's library dependencies, so enhancer classes stay
+ * loaded (and JIT-compiled) between builds.<br/>
+ * <br/>
+ * ClassLoaders are keyed by the fingerprint of the library classpath, modules with the same libraries share
+ * one. Cached ClassLoaders are used as parents of short-living ClassLoaders for the module's output directories,
+ * hence changed project classes are always loaded fresh.<br/>
+ * <br/>
+ * The classpath of a module is determined again when the project roots changed or a library file was
+ * modified. ClassLoaders no module's classpath refers to anymore, and ClassLoaders not used for
+ * {@link #IDLE_TIMEOUT_MILLIS}, are closed as soon as no running enhancement uses them anymore, releasing
+ * their classes and the library files (locked on Windows while open).
+ */
+@Service(Service.Level.PROJECT)
+public final class EnhancerClassLoaderCache implements Disposable {
+
+    private static final long IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final long IDLE_CHECK_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final Project project;
+
+    /**
+     * library classpath by module name
+     */
+    private final Map<String, ModuleClasspath> classpaths = new ConcurrentHashMap<>();
+
+    /**
+     * ClassLoaders by library classpath fingerprint
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final ScheduledFuture<?> idleCheck;
+
+    public EnhancerClassLoaderCache(Project project) {
+        this.project = project;
+        this.idleCheck = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+                this::evictIdle, IDLE_CHECK_INTERVAL_MILLIS, IDLE_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public static EnhancerClassLoaderCache getInstance(Project project) {
+        return project.getService(EnhancerClassLoaderCache.class);
+    }
+
+    /**
+     * Creates a ClassLoader for the module's output directories, whose parent is the cached library ClassLoader.
+     *
+     * @param compileContext .
+     * @param settings       settings of the current build
+     * @param module         .
+     * @param proxyClass     the class of the proxy instantiating a ClassLoader
+     * @return ClassLoader to be closed after usage
+     * @throws IOException .
+     */
+    URLClassLoader newClassLoader(final CompileContext compileContext,
+                                  final StateSnapshot settings,
+                                  final Module module,
+                                  final Class<?> proxyClass) throws IOException {
+        final Entry entry = this.acquire(module, proxyClass);
+        try {
+            final Collection<URL> outputUrls = ClassLoaderFactory.getOutputUrls(compileContext, settings, module);
+            return new ModuleClassLoader(outputUrls.toArray(new URL[0]), entry);
+        } catch (IOException | RuntimeException e) {
+            entry.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Classpath of the module without creating a ClassLoader, used to enhance outside the IDE process.
+     *
+     * @param compileContext .
+     * @param settings       settings of the current build
+     * @param module         .
+     * @param proxyClass     the class of the proxy requesting the classpath
+     * @return .
+     * @throws IOException .
+     */
+    public EnhancerClasspath getClasspath(final CompileContext compileContext,
+                                          final StateSnapshot settings,
+                                          final Module module,
+                                          final Class<?> proxyClass) throws IOException {
+        final ModuleClasspath classpath = this.getModuleClasspath(module);
+        final List<URL> outputUrls = new ArrayList<>(ClassLoaderFactory.getOutputUrls(compileContext, settings, module));
+        return new EnhancerClasspath(classpath.fingerprint, classpath.libraryUrls, outputUrls);
+    }
+
+    private Entry acquire(final Module module, final Class<?> proxyClass) throws IOException {
+        final ModuleClasspath classpath = this.getModuleClasspath(module);
+        return this.entries.compute(classpath.fingerprint, (fingerprint, cached) -> {
+            final Entry entry;
+            if (cached != null && cached.proxyClass == proxyClass) {
+                entry = cached;
+            } else {
+                if (cached != null) {
+                    cached.evict();
+                }
+                entry = new Entry(proxyClass, classpath.libraryUrls);
+            }
+            entry.lease();
+            return entry;
+        });
+    }
+
+    private ModuleClasspath getModuleClasspath(final Module module) throws IOException {
+        final long modificationCount = ProjectRootManager.getInstance(this.project).getModificationCount();
+        final ModuleClasspath cached = this.classpaths.get(module.getName());
+        if (cached != null && cached.isValid(modificationCount)) {
+            return cached;
+        }
+        final ModuleClasspath classpath = createModuleClasspath(module, modificationCount);
+        this.classpaths.put(module.getName(), classpath);
+        if (cached != null && !cached.fingerprint.equals(classpath.fingerprint)) {
+            this.evictUnreferenced(cached.fingerprint);
+        }
+        return classpath;
+    }
+
+    private static ModuleClasspath createModuleClasspath(final Module module, final long modificationCount)
+            throws IOException {
+        final List<File> libraryFiles = ClassLoaderFactory.getLibraryFiles(module);
+        final List<URL> libraryUrls = new ArrayList<>(libraryFiles.size());
+        final long[] libraryTimestamps = new long[libraryFiles.size()];
+        final MessageDigest digest = newDigest();
+        for (int i = 0; i < libraryFiles.size(); ++i) {
+            final File libraryFile = libraryFiles.get(i);
+            libraryTimestamps[i] = libraryFile.lastModified();
+            libraryUrls.add(libraryFile.toURI().toURL());
+            digest.update(libraryFile.getPath().getBytes(StandardCharsets.UTF_8));
+            digest.update(Long.toString(libraryTimestamps[i]).getBytes(StandardCharsets.UTF_8));
+        }
+        final String fingerprint = toHex(digest.digest());
+        return new ModuleClasspath(modificationCount, libraryFiles, libraryTimestamps, libraryUrls, fingerprint);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Evict the ClassLoader of a library classpath no module refers to anymore (e.g. after a dependency update).
+     */
+    private void evictUnreferenced(final String fingerprint) {
+        this.entries.computeIfPresent(fingerprint, (key, entry) -> {
+            for (final ModuleClasspath classpath : this.classpaths.values()) {
+                if (classpath.fingerprint.equals(key)) {
+                    return entry;
+                }
+            }
+            entry.evict();
+            return null;
+        });
+    }
+
+    private void evictIdle() {
+        final long idleSince = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT_MILLIS);
+        for (final String fingerprint : this.entries.keySet()) {
+            this.entries.computeIfPresent(fingerprint, (key, entry) -> entry.evictIfIdle(idleSince) ? null : entry);
+        }
+    }
+
+    /**
+     * Evict all cached ClassLoaders.
+     */
+    public void invalidate() {
+        this.classpaths.clear();
+        for (final String fingerprint : this.entries.keySet()) {
+            this.entries.computeIfPresent(fingerprint, (key, entry) -> {
+                entry.evict();
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public void dispose() {
+        this.idleCheck.cancel(false);
+        this.invalidate();
+    }
+
+    //
+    // Nested classes
+    //
+
+    /**
+     * Library classpath of a module, valid as long as the project roots did not change and the library files
+     * were not modified.
+     */
+    private static final class ModuleClasspath {
+
+        private final long modificationCount;
+
+        private final List<File> libraryFiles;
+
+        private final long[] libraryTimestamps;
+
+        private final List<URL> libraryUrls;
+
+        private final String fingerprint;
+
+        private ModuleClasspath(final long modificationCount,
+                                final List<File> libraryFiles,
+                                final long[] libraryTimestamps,
+                                final List<URL> libraryUrls,
+                                final String fingerprint) {
+            this.modificationCount = modificationCount;
+            this.libraryFiles = libraryFiles;
+            this.libraryTimestamps = libraryTimestamps;
+            this.libraryUrls = libraryUrls;
+            this.fingerprint = fingerprint;
+        }
+
+        private boolean isValid(final long modificationCount) {
+            if (this.modificationCount != modificationCount) {
+                return false;
+            }
+            // library rebuilt in place (e.g. snapshot dependencies)
+            for (int i = 0; i < this.libraryFiles.size(); ++i) {
+                if (this.libraryFiles.get(i).lastModified() != this.libraryTimestamps[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Entry {
+
+        private URLClassLoader classLoader;
+
+        private final Class<?> proxyClass;
+
+        private final List<URL> libraryUrls;
+
+        private int leases;
+
+        private long lastUsed = System.nanoTime();
+
+        private boolean evicted;
+
+        private Entry(final Class<?> proxyClass, final List<URL> libraryUrls) {
+            this.proxyClass = proxyClass;
+            this.libraryUrls = libraryUrls;
+        }
+
+        /**
+         * The ClassLoader is created on first use.
+         */
+        private synchronized URLClassLoader getClassLoader() {
+            if (this.classLoader == null) {
+                final List<URL> urls = new ArrayList<>(ClassLoaderFactory.getProxyUrls(this.proxyClass));
+                urls.addAll(this.libraryUrls);
+                this.classLoader = new URLClassLoader(urls.toArray(new URL[0]));
+            }
+            return this.classLoader;
+        }
+
+        private synchronized void lease() {
+            ++this.leases;
+        }
+
+        private synchronized void release() {
+            --this.leases;
+            this.lastUsed = System.nanoTime();
+            if (this.evicted && this.leases == 0) {
+                this.close();
+            }
+        }
+
+        private synchronized void evict() {
+            this.evicted = true;
+            if (this.leases == 0) {
+                this.close();
+            }
+        }
+
+        /**
+         * @param idleSince {@link System#nanoTime()} the entry has to be unused since
+         * @return true if evicted
+         */
+        private synchronized boolean evictIfIdle(final long idleSince) {
+            if (this.leases > 0 || this.lastUsed - idleSince > 0) {
+                return false;
+            }
+            this.evict();
+            return true;
+        }
+
+        private void close() {
+            if (this.classLoader == null) {
+                return;
+            }
+            try {
+                this.classLoader.close();
+            } catch (IOException ignored) {
+                // nothing to do
+            }
+            this.classLoader = null;
+        }
+    }
+
+    /**
+     * ClassLoader for a module's output directories, releases the cached parent on close.
+     */
+    private static final class ModuleClassLoader extends URLClassLoader {
+
+        private final Entry entry;
+
+        private boolean closed;
+
+        private ModuleClassLoader(final URL[] urls, final Entry entry) {
+            super(urls, entry.getClassLoader());
+            this.entry = entry;
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (this) {
+                if (this.closed) {
+                    return;
+                }
+                this.closed = true;
+            }
+            try {
+                super.close();
+            } finally {
+                this.entry.release();
+            }
+        }
+    }
+
+}
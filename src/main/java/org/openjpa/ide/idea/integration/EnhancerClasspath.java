@@ -0,0 +1,38 @@
+package org.openjpa.ide.idea.integration;
+
+import java.net.URL;
+import java.util.List;
+
+/**
+ * Classpath of a module's enhancement, used to run the enhancer outside the IDE process.
+ */
+public final class EnhancerClasspath {
+
+    private final String fingerprint;
+
+    private final List<URL> libraryUrls;
+
+    private final List<URL> outputUrls;
+
+    EnhancerClasspath(final String fingerprint, final List<URL> libraryUrls, final List<URL> outputUrls) {
+        this.fingerprint = fingerprint;
+        this.libraryUrls = List.copyOf(libraryUrls);
+        this.outputUrls = List.copyOf(outputUrls);
+    }
+
+    /**
+     * @return identifies the library urls and their modification timestamps
+     */
+    public String getFingerprint() {
+        return this.fingerprint;
+    }
+
+    public List<URL> getLibraryUrls() {
+        return this.libraryUrls;
+    }
+
+    public List<URL> getOutputUrls() {
+        return this.outputUrls;
+    }
+
+}
@@ -2,6 +2,8 @@ package org.openjpa.ide.idea.integration;
 
 import java.lang.reflect.InvocationTargetException;
 
+import org.openjpa.ide.idea.integration.openjpa.EnhancementResult;
+
 /**
  * Classes implementing this interface have to ensure that an invoked enhancer is instantiated
  * inside it's own {@link java.lang.ClassLoader}<br/>
@@ -10,7 +12,7 @@ import java.lang.reflect.InvocationTargetException;
  * memory leaks due to PermGen Space exhaustion, as those implementations tend to cache class references even if they're not related
  * to their own {@link java.lang.ClassLoader} hierarchy.<br/>
  * <br/>
- * Use {@link ClassLoaderFactory#newClassLoader(com.intellij.openapi.compiler.CompileContext, com.intellij.openapi.module.Module)} ONLY! -
+ * Use {@link ClassLoaderFactory#newClassLoader(com.intellij.openapi.compiler.CompileContext, org.openjpa.ide.idea.StateSnapshot, com.intellij.openapi.module.Module, Class)} ONLY! -
  * <br/>
  * to instantiate new ClassLoaders, as they're strictly project-module-related and do not include other dependencies, which ensures
  * project-module autonomic enhancement.<br/>
@@ -19,7 +21,7 @@ import java.lang.reflect.InvocationTargetException;
  * {@link org.openjpa.ide.idea.integration.AbstractEnhancerProxy#AbstractEnhancerProxy(org.openjpa.ide.idea.PersistenceApi, com.intellij.openapi.compiler.CompileContext, com.intellij.openapi.module.Module, String)}
  * and has to be added to {@link org.openjpa.ide.idea.integration.openjpa.EnhancerSupportOpenJpa} as enumeration entry to be selectable in the configuration gui.
  */
-public interface EnhancerProxy {
+public interface EnhancerProxy extends AutoCloseable {
 
 
     void setAddDefaultConstructor(boolean addDefaultConstructor);
@@ -28,7 +30,13 @@ public interface EnhancerProxy {
     void setEnforcePropertyRestrictions(boolean enforcePropertyRestrictions);
 
 
-    void setTmpClassLoader(boolean addDefaultConstructor);
+    /**
+     * Identifies the enhancer implementation in use (e.g. library location and version), used to
+     * invalidate recorded enhancement results if the enhancer changes.
+     *
+     * @return enhancer version string
+     */
+    String getEnhancerVersion();
 
     /**
      * Add names of classes annotated by persistence related annotations (e.g. javax.jdo.annotations.PersistenceCapable,
@@ -57,12 +65,18 @@ public interface EnhancerProxy {
      * <br/>
      * Be sure to have added class- and metadata file names via {@link #addClasses(String...)} and {@link #addMetadataFiles(String...)}
      *
-     * @return Number of classes enhanced in this process.
+     * @return classes enhanced (written), unchanged and skipped in this process.
      * @throws InvocationTargetException .
      * @throws IllegalAccessException    .
      * @throws NoSuchMethodException     .
      * @throws ClassNotFoundException    .
      */
-    int enhance() throws InvocationTargetException, IllegalAccessException, NoSuchMethodException, ClassNotFoundException, InstantiationException, NoSuchFieldException;
+    EnhancementResult enhance() throws InvocationTargetException, IllegalAccessException, NoSuchMethodException, ClassNotFoundException, InstantiationException, NoSuchFieldException;
+
+    /**
+     * Release resources (e.g. ClassLoaders) held by the enhancer, the proxy must not be used afterwards.
+     */
+    @Override
+    void close();
 
 }
@@ -10,6 +10,7 @@ import com.intellij.openapi.module.Module;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.openjpa.ide.idea.PersistenceApi;
+import org.openjpa.ide.idea.StateSnapshot;
 
 /**
  * Interface to implement for every new enhancer to support.<br/>
@@ -92,6 +93,7 @@ public interface EnhancerSupport {
      * Interface every enhancer proxy has to implement, see {@link org.openjpa.ide.idea.integration.EnhancerProxy}.
      *
      * @param api                 Persistence API used to enhance classes with
+     * @param settings            settings of the current build
      * @param compileCtx          IntelliJ IDEA compile context
      * @param module              Module to enhance in
      * @param persistenceUnitName Optional persistence unit name (if null is provided, all persistence capable classes have to be enhanced)
@@ -104,6 +106,7 @@ public interface EnhancerSupport {
      */
     @NotNull
     EnhancerProxy newEnhancerProxy(PersistenceApi api,
+                                   StateSnapshot settings,
                                    CompileContext compileCtx,
                                    Module module,
                                    @Nullable String persistenceUnitName)
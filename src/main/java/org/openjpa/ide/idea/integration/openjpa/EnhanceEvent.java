@@ -0,0 +1,41 @@
+package org.openjpa.ide.idea.integration.openjpa;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event for an invocation of {@link OpenJpaEnhancerProxy#enhance()}.
+ */
+@Name("org.openjpa.ide.idea.Enhance")
+@Label("Enhance")
+@Category({"OpenJPA", "Enhancer"})
+@Description("Invocation of the OpenJpa enhancer for the classes of a module")
+final class EnhanceEvent extends jdk.jfr.Event {
+
+    @Label("Module")
+    String module;
+
+    @Label("Class Count")
+    int classCount;
+
+    @Label("Enhanced Count")
+    int enhancedCount;
+
+    @Label("Unchanged Count")
+    int unchangedCount;
+
+    @Label("Skipped Count")
+    int skippedCount;
+
+    @Label("Classpath Size")
+    int classpathSize;
+
+    @Label("Out Of Process")
+    boolean outOfProcess;
+
+    @Label("Success")
+    boolean success;
+
+}
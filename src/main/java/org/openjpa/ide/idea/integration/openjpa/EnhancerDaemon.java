@@ -0,0 +1,372 @@
+package org.openjpa.ide.idea.integration.openjpa;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.Nullable;
+import org.openjpa.ide.idea.integration.EnhancerClasspath;
+
+/**
+ * Manages long-living JVMs running {@link EnhancerWorker}, shared by all projects.<br/>
+ * <br/>
+ * A worker handles one request at a time, concurrent requests (e.g. modules enhanced in parallel) get a worker
+ * each, up to {@link #MAX_WORKERS}; further requests wait for a worker to become idle. Workers are started on
+ * first use and replaced if they died.<br/>
+ * <br/>
+ * Answers are read on a pooled thread, while the requesting thread checks for cancellation. A worker not
+ * answering in time or whose request is canceled is killed, the next request starts a new one. Output of the
+ * workers (e.g. Log4j) is written to a log file in the IDE's log directory.
+ */
+@Service(Service.Level.APP)
+public final class EnhancerDaemon implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(EnhancerDaemon.class);
+
+    private static final String LOG_FILE_NAME = "openjpa-enhancer-worker.log";
+
+    private static final String MAX_HEAP = "-Xmx512m";
+
+    /**
+     * Each worker is a JVM of its own, hence less than the number of modules enhanced in parallel
+     */
+    private static final int MAX_WORKERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final long START_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    private static final long VERSION_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    private static final long ENHANCE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final long CANCELLATION_CHECK_INTERVAL_MILLIS = 100;
+
+    private final Deque<Worker> idleWorkers = new ArrayDeque<>();
+
+    /**
+     * number of workers started and not destroyed yet, idle or busy
+     */
+    private int workerCount;
+
+    private boolean disposed;
+
+    public static EnhancerDaemon getInstance() {
+        return ApplicationManager.getApplication().getService(EnhancerDaemon.class);
+    }
+
+    /**
+     * @param classpath .
+     * @return enhancer version as reported by the worker
+     * @throws ClassNotFoundException if the enhancer is not available in the classpath
+     */
+    String getEnhancerVersion(final EnhancerClasspath classpath) throws ClassNotFoundException {
+        return this.call(VERSION_TIMEOUT_MILLIS, out -> writeHeader(out, EnhancerWorker.REQUEST_VERSION, classpath), in -> {
+            readStatus(in);
+            return in.readUTF();
+        });
+    }
+
+    /**
+     * @param classpath                   .
+     * @param classFiles                  paths of the class files to enhance
+     * @param addDefaultConstructor       .
+     * @param enforcePropertyRestrictions .
+     * @param cache                       cache of enhanced classes used by the worker, null to always enhance
+     * @return the classes enhanced, unchanged and skipped
+     * @throws ClassNotFoundException if the enhancer is not available in the classpath
+     */
+    EnhancementResult enhance(final EnhancerClasspath classpath,
+                              final List<String> classFiles,
+                              final boolean addDefaultConstructor,
+                              final boolean enforcePropertyRestrictions,
+                              @Nullable final EnhancedClassCache cache) throws ClassNotFoundException {
+        return this.call(ENHANCE_TIMEOUT_MILLIS, out -> {
+            writeHeader(out, EnhancerWorker.REQUEST_ENHANCE, classpath);
+            EnhancerWorker.writeUrls(out, classpath.getOutputUrls());
+            out.writeBoolean(addDefaultConstructor);
+            out.writeBoolean(enforcePropertyRestrictions);
+            out.writeUTF(cache == null ? "" : cache.getDirectory().toString());
+            out.writeLong(cache == null ? 0 : cache.getMaxSize());
+            EnhancerWorker.writeStrings(out, classFiles);
+        }, in -> {
+            readStatus(in);
+            return EnhancerWorker.readResult(in);
+        });
+    }
+
+    /**
+     * Send a request to an idle worker and wait for the answer.
+     */
+    private <T> T call(final long timeoutMillis, final Request request, final Response<T> response) throws ClassNotFoundException {
+        final Worker worker;
+        try {
+            worker = this.acquire();
+        } catch (IOException e) {
+            throw new UncheckedIOException("enhancer worker failed to start", e);
+        }
+        // the worker's streams are in an unknown state unless the answer was read completely
+        boolean reusable = false;
+        try {
+            request.write(worker.out);
+            worker.out.flush();
+            final T result;
+            try {
+                result = await(AppExecutorUtil.getAppExecutorService().submit(() -> response.read(worker.in)), timeoutMillis);
+            } catch (ClassNotFoundException | IllegalStateException e) {
+                // answered, the failure is specific to the request
+                reusable = true;
+                throw e;
+            }
+            reusable = true;
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException("enhancer worker failed", e);
+        } finally {
+            this.release(worker, reusable);
+        }
+    }
+
+    /**
+     * Wait for an answer read on another thread, checking for cancellation.
+     *
+     * @throws IOException              if reading failed or the deadline passed
+     * @throws ProcessCanceledException if the current progress is canceled
+     */
+    private static <T> T await(final Future<T> future, final long timeoutMillis) throws IOException, ClassNotFoundException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            ProgressManager.checkCanceled();
+            try {
+                return future.get(CANCELLATION_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ignored) {
+                if (System.nanoTime() - deadline >= 0) {
+                    throw new IOException("enhancer worker did not answer within " + timeoutMillis + " ms");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while waiting for the enhancer worker", e);
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof ClassNotFoundException) {
+                    throw (ClassNotFoundException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    private static void writeHeader(final DataOutputStream out, final byte request, final EnhancerClasspath classpath) throws IOException {
+        out.writeByte(request);
+        out.writeUTF(classpath.getFingerprint());
+        EnhancerWorker.writeUrls(out, classpath.getLibraryUrls());
+    }
+
+    private static void readStatus(final DataInputStream in) throws IOException, ClassNotFoundException {
+        final byte status = in.readByte();
+        if (status == EnhancerWorker.STATUS_ENHANCER_NOT_FOUND) {
+            throw new ClassNotFoundException(OpenJpaEnhancerRunner.OPEN_JPA_ENHANCER_CLASS_FQ);
+        }
+        if (status == EnhancerWorker.STATUS_FAILURE) {
+            // worker stays usable, the failure is specific to the request
+            throw new IllegalStateException("enhancement failed in enhancer worker:\n" + EnhancerWorker.readText(in));
+        }
+        if (status != EnhancerWorker.STATUS_OK) {
+            throw new IOException("unexpected status: " + status);
+        }
+    }
+
+    //
+    // Worker pool
+    //
+
+    private Worker acquire() throws IOException {
+        synchronized (this) {
+            while (true) {
+                if (this.disposed) {
+                    throw new IOException("enhancer daemon disposed");
+                }
+                final Worker idle = this.idleWorkers.pollFirst();
+                if (idle != null) {
+                    if (idle.process.isAlive()) {
+                        return idle;
+                    }
+                    idle.destroy(true);
+                    --this.workerCount;
+                } else if (this.workerCount < MAX_WORKERS) {
+                    ++this.workerCount;
+                    break;
+                } else {
+                    ProgressManager.checkCanceled();
+                    try {
+                        this.wait(CANCELLATION_CHECK_INTERVAL_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("interrupted while waiting for an enhancer worker", e);
+                    }
+                }
+            }
+        }
+        // started outside the lock, other requests may use idle workers meanwhile
+        boolean started = false;
+        try {
+            final Worker worker = Worker.start();
+            started = true;
+            return worker;
+        } finally {
+            if (!started) {
+                synchronized (this) {
+                    --this.workerCount;
+                    this.notifyAll();
+                }
+            }
+        }
+    }
+
+    private synchronized void release(final Worker worker, final boolean reusable) {
+        if (reusable && !this.disposed && worker.process.isAlive()) {
+            this.idleWorkers.addFirst(worker);
+        } else {
+            worker.destroy(!reusable);
+            --this.workerCount;
+        }
+        this.notifyAll();
+    }
+
+    @Override
+    public synchronized void dispose() {
+        this.disposed = true;
+        for (final Worker worker : this.idleWorkers) {
+            worker.destroy(false);
+            --this.workerCount;
+        }
+        this.idleWorkers.clear();
+        // busy workers are destroyed on release
+    }
+
+    //
+    // Nested classes
+    //
+
+    @FunctionalInterface
+    private interface Request {
+
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Response<T> {
+
+        T read(DataInputStream in) throws IOException, ClassNotFoundException;
+    }
+
+    private static final class Worker {
+
+        private final Process process;
+
+        private final DataInputStream in;
+
+        private final DataOutputStream out;
+
+        private Worker(final Process process) {
+            this.process = process;
+            this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+        }
+
+        private static Worker start() throws IOException {
+            final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            // the runner is packaged with the enhancer of the external build process
+            final String workerPath = PathManager.getJarPathForClass(EnhancerWorker.class);
+            final String runnerPath = PathManager.getJarPathForClass(OpenJpaEnhancerRunner.class);
+            if (workerPath == null || runnerPath == null) {
+                throw new IOException("unable to locate " + EnhancerWorker.class.getName());
+            }
+            final String classpath = workerPath.equals(runnerPath) ? workerPath : workerPath + File.pathSeparator + runnerPath;
+            final List<String> command = new ArrayList<>();
+            command.add(java);
+            command.add(MAX_HEAP);
+            command.add("-Djava.awt.headless=true");
+            command.add("-cp");
+            command.add(classpath);
+            command.add(EnhancerWorker.class.getName());
+
+            final File logFile = new File(PathManager.getLogPath(), LOG_FILE_NAME);
+            final Worker worker = new Worker(new ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.appendTo(logFile))
+                    .start());
+            boolean started = false;
+            try {
+                final int protocolVersion;
+                try {
+                    protocolVersion = await(AppExecutorUtil.getAppExecutorService().submit(worker.in::readInt), START_TIMEOUT_MILLIS);
+                } catch (ClassNotFoundException e) {
+                    throw new IOException(e);
+                }
+                if (protocolVersion != EnhancerWorker.PROTOCOL_VERSION) {
+                    throw new IOException("enhancer worker protocol version " + protocolVersion
+                            + " does not match " + EnhancerWorker.PROTOCOL_VERSION);
+                }
+                started = true;
+            } finally {
+                if (!started) {
+                    worker.destroy(true);
+                }
+            }
+            LOG.info("started enhancer worker, output is written to " + logFile);
+            return worker;
+        }
+
+        /**
+         * @param force true to kill the worker at once, e.g. if it does not answer
+         */
+        private void destroy(final boolean force) {
+            if (force) {
+                this.process.destroyForcibly();
+                return;
+            }
+            try {
+                // closing stdin terminates the worker's request loop
+                this.out.close();
+            } catch (IOException ignored) {
+                // nothing to do
+            }
+            try {
+                if (!this.process.waitFor(1, TimeUnit.SECONDS)) {
+                    this.process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                this.process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
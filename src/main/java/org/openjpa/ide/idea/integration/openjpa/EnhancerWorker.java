@@ -0,0 +1,263 @@
+package org.openjpa.ide.idea.integration.openjpa;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Entry point of the long-living enhancer JVM started by {@link EnhancerDaemon}.<br/>
+ * <br/>
+ * Requests are read from stdin and answered on stdout, anything printed by the enhancer
+ * (e.g. Log4j console output) is redirected to stderr. Library ClassLoaders are kept per classpath
+ * fingerprint, so OpenJPA stays loaded and JIT-compiled between builds.<br/>
+ * <br/>
+ * Depends on JDK classes only, as the IDE classes are not available in the worker JVM.
+ */
+public final class EnhancerWorker {
+
+    static final int PROTOCOL_VERSION = 3;
+
+    static final byte REQUEST_VERSION = 1;
+    static final byte REQUEST_ENHANCE = 2;
+
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ENHANCER_NOT_FOUND = 1;
+    static final byte STATUS_FAILURE = 2;
+
+    private static final int MAX_CACHED_CLASSPATHS = 8;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+            if (this.size() > MAX_CACHED_CLASSPATHS) {
+                eldest.getValue().close();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Cache of enhanced classes in the directory of the last request, shared with the IDE
+     */
+    private EnhancedClassCache cache;
+
+    private EnhancerWorker() {
+        // only instantiated by main
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        System.setOut(System.err);
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+
+        out.writeInt(PROTOCOL_VERSION);
+        out.flush();
+
+        final EnhancerWorker worker = new EnhancerWorker();
+        try {
+            while (true) {
+                final byte request;
+                try {
+                    request = in.readByte();
+                } catch (EOFException e) {
+                    // IDE closed the pipe
+                    break;
+                }
+                worker.handle(request, in, out);
+                out.flush();
+            }
+        } finally {
+            worker.close();
+        }
+    }
+
+    private void handle(final byte request, final DataInputStream in, final DataOutputStream out) throws IOException {
+        final String fingerprint = in.readUTF();
+        final List<URL> libraryUrls = readUrls(in);
+
+        if (request == REQUEST_VERSION) {
+            final Entry entry;
+            try {
+                entry = this.getEntry(fingerprint, libraryUrls);
+            } catch (ClassNotFoundException e) {
+                out.writeByte(STATUS_ENHANCER_NOT_FOUND);
+                return;
+            }
+            out.writeByte(STATUS_OK);
+            out.writeUTF(entry.runner.getEnhancerVersion());
+        } else if (request == REQUEST_ENHANCE) {
+            final List<URL> outputUrls = readUrls(in);
+            final boolean addDefaultConstructor = in.readBoolean();
+            final boolean enforcePropertyRestrictions = in.readBoolean();
+            final String cacheDirectory = in.readUTF();
+            final long cacheMaxSize = in.readLong();
+            final List<String> classes = readStrings(in);
+
+            final Entry entry;
+            try {
+                entry = this.getEntry(fingerprint, libraryUrls);
+            } catch (ClassNotFoundException e) {
+                out.writeByte(STATUS_ENHANCER_NOT_FOUND);
+                return;
+            }
+            try (URLClassLoader projectClassLoader = new URLClassLoader(outputUrls.toArray(new URL[0]), entry.classLoader)) {
+                final EnhancementResult result = entry.runner.enhance(projectClassLoader, classes, addDefaultConstructor, enforcePropertyRestrictions,
+                        this.getCache(cacheDirectory, cacheMaxSize));
+                out.writeByte(STATUS_OK);
+                writeResult(out, result);
+            } catch (Exception | LinkageError e) {
+                writeFailure(out, e instanceof InvocationTargetException && e.getCause() != null ? e.getCause() : e);
+            }
+        } else {
+            throw new IOException("unknown request: " + request);
+        }
+    }
+
+    private Entry getEntry(final String fingerprint, final List<URL> libraryUrls) throws ClassNotFoundException {
+        final Entry cached = this.entries.get(fingerprint);
+        if (cached != null) {
+            return cached;
+        }
+        final URLClassLoader classLoader = new URLClassLoader(libraryUrls.toArray(new URL[0]), EnhancerWorker.class.getClassLoader());
+        try {
+            final Entry created = new Entry(classLoader, new OpenJpaEnhancerRunner(classLoader));
+            this.entries.put(fingerprint, created);
+            return created;
+        } catch (ClassNotFoundException | RuntimeException | LinkageError e) {
+            new Entry(classLoader, null).close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param directory cache directory, empty if caching is disabled
+     */
+    private EnhancedClassCache getCache(final String directory, final long maxSize) {
+        if (directory.isEmpty()) {
+            return null;
+        }
+        final Path path = Path.of(directory);
+        if (this.cache == null || !this.cache.getDirectory().equals(path)) {
+            this.cache = new EnhancedClassCache(path, maxSize);
+        }
+        return this.cache;
+    }
+
+    private void close() {
+        for (final Iterator<Entry> it = this.entries.values().iterator(); it.hasNext(); ) {
+            it.next().close();
+            it.remove();
+        }
+    }
+
+    //
+    // Protocol helpers, shared with EnhancerDaemon
+    //
+
+    static void writeStrings(final DataOutputStream out, final List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (final String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    static List<String> readStrings(final DataInputStream in) throws IOException {
+        final int size = in.readInt();
+        final List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+
+    static void writeUrls(final DataOutputStream out, final List<URL> urls) throws IOException {
+        out.writeInt(urls.size());
+        for (final URL url : urls) {
+            out.writeUTF(url.toExternalForm());
+        }
+    }
+
+    private static List<URL> readUrls(final DataInputStream in) throws IOException {
+        final List<String> values = readStrings(in);
+        final List<URL> urls = new ArrayList<>(values.size());
+        for (final String value : values) {
+            urls.add(new URL(value));
+        }
+        return urls;
+    }
+
+    static void writeResult(final DataOutputStream out, final EnhancementResult result) throws IOException {
+        out.writeInt(result.getUnchangedCount());
+        out.writeInt(result.getSkippedCount());
+        out.writeInt(result.getCachedCount());
+        writeStrings(out, result.getWrittenFiles());
+    }
+
+    static EnhancementResult readResult(final DataInputStream in) throws IOException {
+        final int unchangedCount = in.readInt();
+        final int skippedCount = in.readInt();
+        final int cachedCount = in.readInt();
+        return new EnhancementResult(unchangedCount, skippedCount, cachedCount, readStrings(in));
+    }
+
+    /**
+     * Failure messages (stack traces) may exceed the 64k limit of {@link DataOutputStream#writeUTF(String)}.
+     */
+    static String readText(final DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeFailure(final DataOutputStream out, final Throwable t) throws IOException {
+        final StringWriter stackTrace = new StringWriter();
+        t.printStackTrace(new PrintWriter(stackTrace));
+        final byte[] bytes = stackTrace.toString().getBytes(StandardCharsets.UTF_8);
+        out.writeByte(STATUS_FAILURE);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    //
+    // Nested classes
+    //
+
+    private static final class Entry {
+
+        private final URLClassLoader classLoader;
+
+        private final OpenJpaEnhancerRunner runner;
+
+        private Entry(final URLClassLoader classLoader, final OpenJpaEnhancerRunner runner) {
+            this.classLoader = classLoader;
+            this.runner = runner;
+        }
+
+        private void close() {
+            try {
+                this.classLoader.close();
+            } catch (IOException ignored) {
+                // nothing to do
+            }
+        }
+    }
+
+}
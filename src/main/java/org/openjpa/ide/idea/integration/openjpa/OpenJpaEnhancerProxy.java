@@ -1,81 +1,96 @@
 package org.openjpa.ide.idea.integration.openjpa;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.compiler.CompileContext;
 import com.intellij.openapi.module.Module;
 
 import org.openjpa.ide.idea.PersistenceApi;
+import org.openjpa.ide.idea.StateSnapshot;
 import org.openjpa.ide.idea.integration.AbstractEnhancerProxy;
 import org.openjpa.ide.idea.integration.ClassLoaderFactory;
+import org.openjpa.ide.idea.integration.EnhancerClassLoaderCache;
+import org.openjpa.ide.idea.integration.EnhancerClasspath;
 
 
 public class OpenJpaEnhancerProxy extends AbstractEnhancerProxy {
 
 
     public static final String OPEN_JPA_ENHANCER_CLASS = "PCEnhancer";
-    public static final String OPEN_JPA_GENERIC_ENHANCER_CLASS_FQ = "org.apache.openjpa.enhance." + OPEN_JPA_ENHANCER_CLASS;
+    public static final String OPEN_JPA_GENERIC_ENHANCER_CLASS_FQ = OpenJpaEnhancerRunner.OPEN_JPA_ENHANCER_CLASS_FQ;
 
     private boolean addDefaultConstructor;
-    private static final String OPTION_ADD_DEFAULT_CONSTRUCTOR = "addDefaultConstructor";
     //
-    private static final String OPTION_ENFORCE_PROPERTY_RESTRICTION = "enforcePropertyRestrictions";
     private boolean enforcePropertyRestrictions;
-    //
-    private static final String OPTION_USE_TMP_CLASSLOADER = "tcl";
-    private boolean tmpClassLoader = true;
 
+    private final List<String> classes = new ArrayList<>();
+
+    /**
+     * In-process enhancement only
+     */
+    final URLClassLoader classLoader;
 
-    private final Class<?> configClass;
-    private final Class<?> enhancerClass;
-    private final Class<?> optionsClass;
-    private final Class<?> configParamClass;
+    private final OpenJpaEnhancerRunner runner;
 
-    private final List<String> classes = new ArrayList<>();
+    /**
+     * Out-of-process enhancement only
+     */
+    private final EnhancerClasspath classpath;
 
-    final ClassLoader classLoader;
+    private final String enhancerVersion;
+
+    /**
+     * Cache of enhanced classes shared by all projects, null if disabled in the settings
+     */
+    private final EnhancedClassCache cache;
+
+    /**
+     * Number of classpath entries (libraries and output directories), reported by {@link EnhanceEvent}
+     */
+    private final int classpathSize;
 
     @SuppressWarnings("UnusedParameters")
     public OpenJpaEnhancerProxy(final PersistenceApi api,
+                                final StateSnapshot settings,
                                 final CompileContext compileContext,
                                 final Module module,
                                 final String persistenceUnitName)
             throws IOException,
             ClassNotFoundException {
 
-        super(api, compileContext, module, persistenceUnitName);
-
-
-        classLoader = ClassLoaderFactory.newClassLoader(compileContext, module, OpenJpaEnhancerProxy.class);
-        enhancerClass = Class.forName(OPEN_JPA_GENERIC_ENHANCER_CLASS_FQ, true, classLoader);
-        optionsClass = Class.forName("org.apache.openjpa.lib.util.Options", true, classLoader);
-        configParamClass = Class.forName("org.apache.openjpa.conf.OpenJPAConfiguration", true, classLoader);
-        configClass = Class.forName("org.apache.openjpa.conf.OpenJPAConfigurationImpl", true, classLoader);
-
-
-    }
-
+        super(api, settings, compileContext, module, persistenceUnitName);
+
+        this.cache = settings.isCacheEnhancedClasses() ? CacheHolder.CACHE : null;
+        if (settings.isOutOfProcessEnhancer()) {
+            this.classLoader = null;
+            this.runner = null;
+            this.classpath = EnhancerClassLoaderCache.getInstance(module.getProject())
+                    .getClasspath(compileContext, settings, module, OpenJpaEnhancerProxy.class);
+            // also verifies the enhancer is available in the module's classpath
+            this.enhancerVersion = EnhancerDaemon.getInstance().getEnhancerVersion(this.classpath);
+            this.classpathSize = this.classpath.getLibraryUrls().size() + this.classpath.getOutputUrls().size();
+        } else {
+            this.classpath = null;
+            this.classLoader = ClassLoaderFactory.newClassLoader(compileContext, settings, module, OpenJpaEnhancerProxy.class);
+            try {
+                this.runner = new OpenJpaEnhancerRunner(this.classLoader);
+            } catch (ClassNotFoundException | RuntimeException e) {
+                close();
+                throw e;
+            }
+            this.enhancerVersion = this.runner.getEnhancerVersion();
+            this.classpathSize = getClasspathSize(this.classLoader);
+        }
 
-    protected Object createOptions() throws IllegalAccessException, InstantiationException, NoSuchMethodException, InvocationTargetException {
 
-        Object options = optionsClass.getDeclaredConstructor().newInstance();
-        Method method = optionsClass.getMethod("setProperty", String.class, boolean.class);
-        method.invoke(options, OPTION_ADD_DEFAULT_CONSTRUCTOR, addDefaultConstructor);
-        method.invoke(options, OPTION_ENFORCE_PROPERTY_RESTRICTION, enforcePropertyRestrictions);
-        method.invoke(options, OPTION_USE_TMP_CLASSLOADER, tmpClassLoader);
-        return options;
-    }
-
-    private Object createConfig() throws IllegalAccessException, InstantiationException, NoSuchMethodException, InvocationTargetException {
-        Object config = configClass.getDeclaredConstructor().newInstance();
-        Method setSpecification = configClass.getMethod("setSpecification", String.class);
-        setSpecification.invoke(config, "jpa");
-        return config;
     }
 
 
@@ -90,23 +105,56 @@ public class OpenJpaEnhancerProxy extends AbstractEnhancerProxy {
     }
 
     @Override
-    public int enhance() throws InvocationTargetException, IllegalAccessException, NoSuchMethodException, InstantiationException {
-
-        Object options = createOptions();
-        Object jpaConfig = createConfig();
-        String[] args = classes.toArray(new String[0]);
-        Method method = enhancerClass.getMethod("run", configParamClass, String[].class, options.getClass());
+    public EnhancementResult enhance() throws InvocationTargetException, IllegalAccessException, NoSuchMethodException, InstantiationException, ClassNotFoundException {
+        final EnhanceEvent event = new EnhanceEvent();
+        event.begin();
+        EnhancementResult result = EnhancementResult.EMPTY;
+        boolean success = false;
+        try {
+            if (this.runner == null) {
+                result = EnhancerDaemon.getInstance().enhance(this.classpath, this.classes,
+                        this.addDefaultConstructor, this.enforcePropertyRestrictions, this.cache);
+            } else {
+                // the enhancer is loaded by the (cached) parent, project classes are resolved via the context ClassLoader
+                try {
+                    result = this.runner.enhance(this.classLoader, this.classes,
+                            this.addDefaultConstructor, this.enforcePropertyRestrictions, this.cache);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            success = true;
+            return result;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.module = getModule().getName();
+                event.classCount = this.classes.size();
+                event.enhancedCount = result.getEnhancedCount();
+                event.unchangedCount = result.getUnchangedCount();
+                event.skippedCount = result.getSkippedCount();
+                event.classpathSize = this.classpathSize;
+                event.outOfProcess = this.runner == null;
+                event.success = success;
+                event.commit();
+            }
+        }
+    }
 
-        boolean done = (Boolean) method.invoke(null, jpaConfig, args, options);
-        if (done) {
-            return classes.size();
+    private static int getClasspathSize(final URLClassLoader classLoader) {
+        int size = 0;
+        for (ClassLoader loader = classLoader; loader instanceof URLClassLoader; loader = loader.getParent()) {
+            size += ((URLClassLoader) loader).getURLs().length;
         }
-        return 0;
+        return size;
+    }
 
 
+    @Override
+    public String getEnhancerVersion() {
+        return this.enhancerVersion;
     }
 
-
     public void setAddDefaultConstructor(boolean addDefaultConstructor) {
         this.addDefaultConstructor = addDefaultConstructor;
     }
@@ -115,8 +163,16 @@ public class OpenJpaEnhancerProxy extends AbstractEnhancerProxy {
         this.enforcePropertyRestrictions = enforcePropertyRestrictions;
     }
 
-    public void setTmpClassLoader(boolean tmpClassLoader) {
-        this.tmpClassLoader = tmpClassLoader;
+    @Override
+    public void close() {
+        if (classLoader == null) {
+            return;
+        }
+        try {
+            classLoader.close();
+        } catch (IOException ignored) {
+            // nothing to do
+        }
     }
 
     @Override
@@ -124,5 +180,14 @@ public class OpenJpaEnhancerProxy extends AbstractEnhancerProxy {
         return "OpenJpaEnhancerProxy";
     }
 
+    /**
+     * Created on first use, shared with the enhancer worker by its directory in the IDE's system directory.
+     */
+    private static final class CacheHolder {
+
+        private static final EnhancedClassCache CACHE = new EnhancedClassCache(
+                Path.of(PathManager.getSystemPath(), EnhancedClassCache.DIRECTORY_NAME), EnhancedClassCache.DEFAULT_MAX_SIZE);
+    }
+
 
 }
@@ -0,0 +1,131 @@
+package org.openjpa.ide.idea;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * Class files found by {@link ClassFileScanner}, including malformed and truncated ones.
+ */
+public class ClassFileScannerTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final ClassFileScanner scanner = new ClassFileScanner(List.of(Marker.class.getName()));
+
+    //
+    // Tests
+    //
+
+    @Test
+    public void annotatedClassIsFound() throws IOException {
+        final PersistentClass found = this.scanner.scan(ByteBuffer.wrap(classFile(Annotated.class)));
+
+        assertNotNull(found);
+        assertEquals("org.openjpa.ide.idea.ClassFileScannerTest.Annotated", found.getQualifiedName());
+        assertEquals("org/openjpa/ide/idea/ClassFileScannerTest$Annotated", found.getClassPath());
+    }
+
+    @Test
+    public void referenceToAnnotationIsNotFound() throws IOException {
+        // the annotation type is referenced by a field descriptor only
+        assertNull(this.scanner.scan(ByteBuffer.wrap(classFile(Referencing.class))));
+        assertNull(this.scanner.scan(ByteBuffer.wrap(classFile(ClassFileScannerTest.class))));
+    }
+
+    @Test
+    public void notAClassFileIsNotFound() {
+        assertNull(this.scanner.scan(ByteBuffer.wrap(new byte[]{'<', '?', 'x', 'm', 'l', ' ', 'v', 'e', 'r'})));
+    }
+
+    @Test
+    public void malformedConstantPoolIsRejected() throws IOException {
+        final byte[] bytes = classFile(Annotated.class);
+        // tag of the first constant, after magic, versions and constant count
+        bytes[10] = 0x7F;
+
+        assertThrows(IllegalArgumentException.class, () -> this.scanner.scan(ByteBuffer.wrap(bytes)));
+    }
+
+    @Test
+    public void truncatedClassFilesAreSkipped() throws IOException {
+        final byte[] bytes = classFile(Annotated.class);
+        final Path outputDirectory = this.temporaryFolder.newFolder("classes").toPath();
+        Files.write(outputDirectory.resolve("Annotated.class"), bytes);
+        // cut off before the class level attributes, e.g. while written by the compiler
+        for (int length = 0; length < bytes.length / 2; ++length) {
+            Files.write(outputDirectory.resolve("Truncated" + length + ".class"), Arrays.copyOf(bytes, length));
+        }
+
+        final List<PersistentClass> found = this.scanner.scan(outputDirectory, OutputSnapshot.of(outputDirectory));
+
+        assertEquals(1, found.size());
+        assertEquals("org.openjpa.ide.idea.ClassFileScannerTest.Annotated", found.get(0).getQualifiedName());
+    }
+
+    @Test
+    public void truncatedClassFilesFailAsMalformed() throws IOException {
+        final byte[] bytes = classFile(Annotated.class);
+        for (int length = 0; length < bytes.length; ++length) {
+            final ByteBuffer buffer = ByteBuffer.wrap(Arrays.copyOf(bytes, length));
+            try {
+                final PersistentClass found = this.scanner.scan(buffer);
+                // attributes following the annotations may be cut off
+                if (found != null) {
+                    assertEquals("org.openjpa.ide.idea.ClassFileScannerTest.Annotated", found.getQualifiedName());
+                }
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException ignored) {
+                // skipped by the scan of an output directory
+            }
+        }
+    }
+
+    //
+    // Helper methods
+    //
+
+    private static byte[] classFile(final Class<?> type) throws IOException {
+        final String name = type.getName();
+        try (InputStream in = type.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+            assertNotNull(name, in);
+            return in.readAllBytes();
+        }
+    }
+
+    //
+    // Nested classes
+    //
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Marker {
+    }
+
+    @Marker
+    static final class Annotated {
+
+        private long id;
+    }
+
+    static final class Referencing {
+
+        private Marker marker;
+    }
+
+}
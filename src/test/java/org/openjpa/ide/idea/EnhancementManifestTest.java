@@ -0,0 +1,103 @@
+package org.openjpa.ide.idea;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Loading {@link EnhancementManifest}s, corrupt or truncated files are ignored.
+ */
+public class EnhancementManifestTest {
+
+    private static final String ENHANCER_VERSION = "3.2.2";
+
+    private static final int OPTIONS = 3;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path classFile;
+
+    private Path manifestFile;
+
+    @Before
+    public void setUp() throws IOException {
+        this.classFile = this.temporaryFolder.newFile("Order.class").toPath();
+        this.manifestFile = this.temporaryFolder.getRoot().toPath().resolve("manifest/module.bin");
+
+        // record the class file as enhanced
+        Files.write(this.classFile, new byte[]{1, 2, 3});
+        final EnhancementManifest.Fingerprint pre = EnhancementManifest.Fingerprint.of(this.classFile);
+        Files.write(this.classFile, new byte[]{1, 2, 3, 4});
+        final EnhancementManifest manifest = EnhancementManifest.load(this.manifestFile, ENHANCER_VERSION, OPTIONS);
+        manifest.recordEnhanced(this.classFile, pre);
+        manifest.save();
+    }
+
+    //
+    // Tests
+    //
+
+    @Test
+    public void savedManifestIsLoaded() {
+        final EnhancementManifest manifest = EnhancementManifest.load(this.manifestFile, ENHANCER_VERSION, OPTIONS);
+
+        assertTrue(manifest.isValidFor(ENHANCER_VERSION, OPTIONS));
+        assertTrue(manifest.isEnhanced(this.classFile));
+    }
+
+    @Test
+    public void manifestOfOtherEnhancerIsIgnored() {
+        assertFalse(EnhancementManifest.load(this.manifestFile, "4.0.0", OPTIONS).isEnhanced(this.classFile));
+        assertFalse(EnhancementManifest.load(this.manifestFile, ENHANCER_VERSION, 0).isEnhanced(this.classFile));
+    }
+
+    @Test
+    public void missingManifestIsEmpty() {
+        final Path missing = this.temporaryFolder.getRoot().toPath().resolve("missing.bin");
+
+        assertFalse(EnhancementManifest.load(missing, ENHANCER_VERSION, OPTIONS).isEnhanced(this.classFile));
+    }
+
+    @Test
+    public void truncatedManifestIsEmpty() throws IOException {
+        final byte[] bytes = Files.readAllBytes(this.manifestFile);
+        for (int length = 0; length < bytes.length; ++length) {
+            Files.write(this.manifestFile, Arrays.copyOf(bytes, length));
+
+            assertFalse("truncated to " + length, EnhancementManifest.load(this.manifestFile, ENHANCER_VERSION, OPTIONS)
+                    .isEnhanced(this.classFile));
+        }
+    }
+
+    @Test
+    public void corruptStringLengthIsRejected() throws IOException {
+        final byte[] bytes = Files.readAllBytes(this.manifestFile);
+        // length of the enhancer version, after magic, format version and options
+        for (final int length : new int[]{-1, bytes.length, Integer.MAX_VALUE}) {
+            ByteBuffer.wrap(bytes).putInt(12, length);
+            Files.write(this.manifestFile, bytes);
+
+            assertFalse("string length " + length, EnhancementManifest.load(this.manifestFile, ENHANCER_VERSION, OPTIONS)
+                    .isEnhanced(this.classFile));
+        }
+    }
+
+    @Test
+    public void notAManifestIsEmpty() throws IOException {
+        Files.writeString(this.manifestFile, "<?xml version=\"1.0\"?>");
+
+        assertFalse(EnhancementManifest.load(this.manifestFile, ENHANCER_VERSION, OPTIONS).isEnhanced(this.classFile));
+    }
+
+}
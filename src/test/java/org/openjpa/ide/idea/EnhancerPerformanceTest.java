@@ -0,0 +1,334 @@
+package org.openjpa.ide.idea;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import com.intellij.openapi.compiler.CompileScope;
+import com.intellij.openapi.compiler.CompilerManager;
+import com.intellij.openapi.compiler.CompilerMessageCategory;
+import com.intellij.openapi.compiler.CompilerPaths;
+import com.intellij.openapi.compiler.FileProcessingCompiler;
+import com.intellij.openapi.module.JavaModuleType;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.roots.CompilerModuleExtension;
+import com.intellij.openapi.roots.ModuleRootModificationUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.HeavyPlatformTestCase;
+import com.intellij.testFramework.IndexingTestUtil;
+import com.intellij.testFramework.PsiTestUtil;
+import com.intellij.util.ThrowableRunnable;
+
+/**
+ * Scale tests of the enhancer's IDE integration over a generated multi-module project (see {@link MultiModuleFixture}),
+ * asserting time budgets to catch regressions in the plugin's PSI and VFS usage.<br/>
+ * <br/>
+ * The fixture is compiled against the persistence annotations, modules in the javax namespace are enhanced by
+ * OpenJPA. Its size is set by the system properties 'openjpa.fixture.modules' (default 200) and
+ * 'openjpa.fixture.classes' (default 10000), budgets are multiplied by 'openjpa.performance.budgetFactor' (default 1)
+ * for slow machines. The classpaths of the fixture are provided by the build, see 'build.gradle.kts'.<br/>
+ * <br/>
+ * The fixture is generated and compiled once, each test works on a copy, as enhancing modifies the output
+ * directories. Run by the 'performanceTest' task, not by 'test'.
+ */
+public class EnhancerPerformanceTest extends HeavyPlatformTestCase {
+
+    private static final int MODULES = Integer.getInteger("openjpa.fixture.modules", 200);
+
+    private static final int CLASSES = Integer.getInteger("openjpa.fixture.classes", 10000);
+
+    private static final double BUDGET_FACTOR = Double.parseDouble(System.getProperty("openjpa.performance.budgetFactor", "1"));
+
+    private static final long BUDGET_PROCESSING_ITEMS = 20_000;
+
+    private static final long BUDGET_INCREMENTAL_PROCESSING_ITEMS = 30_000;
+
+    private static final long BUDGET_PROCESS = 180_000;
+
+    private static final long BUDGET_CONFIGURABLE = 2_000;
+
+    private static final long BUDGET_DISCOVERY = 30_000;
+
+    private static final String OUTPUT_PATH = "target/classes";
+
+    /**
+     * Compiled fixture shared by the tests, deleted on exit
+     */
+    private static Path compiledRoot;
+
+    private static MultiModuleFixture.Fixture compiledFixture;
+
+    private Path root;
+
+    private final List<Path> moduleDirs = new ArrayList<>();
+
+    private final List<Module> javaxModules = new ArrayList<>();
+
+    private final List<Module> jakartaModules = new ArrayList<>();
+
+    private State state;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final List<Path> openJpaClasspath = classpath("openjpa.fixture.openjpa");
+        final List<Path> jakartaClasspath = classpath("openjpa.fixture.jakarta");
+        final MultiModuleFixture.Fixture fixture = getCompiledFixture(openJpaClasspath, jakartaClasspath);
+
+        this.root = FileUtil.createTempDirectory("openjpa-fixture", null, true).toPath();
+        FileUtil.copyDir(compiledRoot.toFile(), this.root.toFile());
+        for (final Path moduleDir : fixture.getModuleDirs()) {
+            this.moduleDirs.add(this.root.resolve(compiledRoot.relativize(moduleDir)));
+        }
+
+        final VirtualFile rootDir = LocalFileSystem.getInstance().refreshAndFindFileByNioFile(this.root);
+        assertNotNull(rootDir);
+        VfsUtil.markDirtyAndRefresh(false, true, true, rootDir);
+
+        for (int m = 0; m < this.moduleDirs.size(); ++m) {
+            final boolean javax = m % 2 == 0;
+            final Module module = this.createFixtureModule(this.moduleDirs.get(m), javax ? openJpaClasspath : jakartaClasspath);
+            (javax ? this.javaxModules : this.jakartaModules).add(module);
+            if (m > 0) {
+                ModuleRootModificationUtil.addDependency(module, this.javaxModules.get(0));
+            }
+        }
+        IndexingTestUtil.waitUntilIndexesAreReady(this.getProject());
+
+        this.state = State.getInstance(this.getProject());
+        this.state.setEnhancerEnabled(true);
+        this.state.setEnabledModules(moduleNames(this.javaxModules, this.jakartaModules));
+        this.state.setMetaDataExtensions(List.of("xml"));
+        this.state.setIncrementalEnhancement(true);
+        this.state.setParallelEnhancement(false);
+        this.state.setOutOfProcessEnhancer(false);
+        this.state.setBuildProcessEnhancer(false);
+        this.state.setCacheEnhancedClasses(false);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            super.tearDown();
+        } finally {
+            if (this.root != null) {
+                FileUtil.delete(this.root);
+            }
+        }
+    }
+
+    //
+    // Tests
+    //
+
+    public void testGetProcessingItems() throws Exception {
+        final TestCompileContext ctx = this.createCompileContext();
+        final FileProcessingCompiler.ProcessingItem[][] items = new FileProcessingCompiler.ProcessingItem[1][];
+
+        // all classes (e.g. rebuild), output directories are scanned
+        assertBudget("getProcessingItems", BUDGET_PROCESSING_ITEMS,
+                () -> items[0] = this.getComputable().getProcessingItems(ctx.getContext(), null));
+        // class files and xml mappings
+        assertTrue(items[0].length > compiledFixture.getClassCount());
+    }
+
+    public void testGetProcessingItemsIncremental() throws Exception {
+        final TestCompileContext ctx = this.createCompileContext();
+        final GeneratedOutput generatedOutput = this.createGeneratedOutput();
+        final FileProcessingCompiler.ProcessingItem[][] items = new FileProcessingCompiler.ProcessingItem[1][];
+
+        // classes generated by the compiler, persistent classes are found by the index
+        assertBudget("getProcessingItems (incremental)", BUDGET_INCREMENTAL_PROCESSING_ITEMS,
+                () -> items[0] = this.getComputable().getProcessingItems(ctx.getContext(), generatedOutput));
+        // class files and xml mappings
+        assertTrue(items[0].length > compiledFixture.getClassCount());
+    }
+
+    public void testProcess() throws Exception {
+        // OpenJPA 3 enhances the modules in the javax namespace only
+        this.state.setEnabledModules(moduleNames(this.javaxModules));
+        final TestCompileContext ctx = this.createCompileContext();
+        final FileProcessingCompiler.ProcessingItem[] items = this.getComputable().getProcessingItems(ctx.getContext(), null);
+        assertTrue(items.length > 0);
+
+        final FileProcessingCompiler.ProcessingItem[][] processed = new FileProcessingCompiler.ProcessingItem[1][];
+        assertBudget("process", BUDGET_PROCESS, () -> processed[0] = this.getComputable().process(ctx.getContext(), items));
+        assertEmpty(ctx.getMessages(CompilerMessageCategory.ERROR));
+        assertEquals(items.length, processed[0].length);
+    }
+
+    public void testProjectConfigurable() throws Exception {
+        final ProjectConfigurable configurable = new ProjectConfigurable(this.getProject());
+        try {
+            assertBudget("ProjectConfigurable.createComponent/reset", BUDGET_CONFIGURABLE, () -> {
+                assertNotNull(configurable.createComponent());
+                configurable.reset();
+            });
+        } finally {
+            configurable.disposeUIResources();
+        }
+
+        // the search started by reset in the background
+        final DiscoverySnapshot[] snapshot = new DiscoverySnapshot[1];
+        assertBudget("DiscoverySnapshot.discover", BUDGET_DISCOVERY, () -> snapshot[0] = DiscoverySnapshot.discover(
+                this.getProject(), this.state, EnhancerService.getInstance(this.getProject()), new EmptyProgressIndicator()));
+        assertTrue(snapshot[0].isValidFor(this.state));
+    }
+
+    //
+    // Helper methods
+    //
+
+    /**
+     * Generate and compile the fixture on first use.
+     *
+     * @param classpaths compilation classpaths
+     * @return the compiled fixture, in {@link #compiledRoot}
+     * @throws IOException .
+     */
+    @SafeVarargs
+    private static synchronized MultiModuleFixture.Fixture getCompiledFixture(final List<Path>... classpaths) throws IOException {
+        if (compiledFixture == null) {
+            final Path fixtureRoot = FileUtil.createTempDirectory("openjpa-fixture-compiled", null, true).toPath();
+            final MultiModuleFixture.Fixture fixture = MultiModuleFixture.generate(fixtureRoot, MODULES, CLASSES);
+            compile(fixture, classpaths);
+            compiledRoot = fixtureRoot;
+            compiledFixture = fixture;
+        }
+        return compiledFixture;
+    }
+
+    private Computable getComputable() {
+        return EnhancerService.getInstance(this.getProject()).getdNEComputable();
+    }
+
+    private TestCompileContext createCompileContext() {
+        final CompileScope scope = CompilerManager.getInstance(this.getProject()).createProjectCompileScope(this.getProject());
+        return new TestCompileContext(this.getProject(), scope);
+    }
+
+    private Module createFixtureModule(final Path moduleDir, final List<Path> classpath) {
+        final VirtualFile contentRoot = LocalFileSystem.getInstance().findFileByNioFile(moduleDir);
+        assertNotNull(contentRoot);
+        final Module module = PsiTestUtil.addModule(this.getProject(), JavaModuleType.getModuleType(),
+                moduleDir.getFileName().toString(), contentRoot);
+        PsiTestUtil.addSourceRoot(module, contentRoot.findFileByRelativePath("src/main/java"));
+        ModuleRootModificationUtil.updateModel(module, model -> {
+            final CompilerModuleExtension extension = model.getModuleExtension(CompilerModuleExtension.class);
+            extension.inheritCompilerOutputPath(false);
+            extension.setCompilerOutputPath(VfsUtilCore.pathToUrl(moduleDir.resolve(OUTPUT_PATH).toString()));
+            extension.setCompilerOutputPathForTests(VfsUtilCore.pathToUrl(moduleDir.resolve("target/test-classes").toString()));
+        });
+        for (final Path jar : classpath) {
+            ModuleRootModificationUtil.addModuleLibrary(module, VfsUtil.getUrlForLibraryRoot(jar.toFile()));
+        }
+        return module;
+    }
+
+    /**
+     * @return all files of the output directories, as if generated by the compiler
+     * @throws IOException .
+     */
+    private GeneratedOutput createGeneratedOutput() throws IOException {
+        final Map<String, Set<String>> filesByOutputRoot = new HashMap<>();
+        for (final List<Module> modules : List.of(this.javaxModules, this.jakartaModules)) {
+            for (final Module module : modules) {
+                final String outputPath = CompilerPaths.getModuleOutputPath(module, false);
+                assertNotNull(outputPath);
+                final Path outputDir = Path.of(outputPath);
+                final Set<String> files = new HashSet<>();
+                try (Stream<Path> paths = Files.walk(outputDir)) {
+                    paths.filter(Files::isRegularFile)
+                            .forEach(file -> files.add(FileUtil.toSystemIndependentName(outputDir.relativize(file).toString())));
+                }
+                filesByOutputRoot.put(outputPath, files);
+            }
+        }
+        return new GeneratedOutput(filesByOutputRoot);
+    }
+
+    @SafeVarargs
+    private static List<String> moduleNames(final List<Module>... modules) {
+        return Stream.of(modules).flatMap(List::stream).map(Module::getName).collect(Collectors.toList());
+    }
+
+    private static List<Path> classpath(final String property) {
+        final String classpath = System.getProperty(property);
+        assertNotNull("classpath of the fixture not set, run by the build: " + property, classpath);
+        final List<Path> jars = new ArrayList<>();
+        for (final String jar : classpath.split(File.pathSeparator)) {
+            jars.add(Path.of(jar));
+        }
+        return jars;
+    }
+
+    /**
+     * Compile the sources of all modules at once and replace the placeholder class files in their output directories.
+     *
+     * @param fixture the generated project
+     * @param classpaths compilation classpaths
+     * @throws IOException .
+     */
+    @SafeVarargs
+    private static void compile(final MultiModuleFixture.Fixture fixture, final List<Path>... classpaths) throws IOException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull("javac not available", compiler);
+        final Path classesDir = Files.createTempDirectory("openjpa-fixture-classes");
+        try {
+            final List<String> args = new ArrayList<>(List.of("-proc:none", "-nowarn", "-d", classesDir.toString(),
+                    "-cp", Stream.of(classpaths).flatMap(List::stream).map(Path::toString)
+                            .collect(Collectors.joining(File.pathSeparator))));
+            for (final Path moduleDir : fixture.getModuleDirs()) {
+                try (Stream<Path> sources = Files.walk(moduleDir.resolve("src/main/java"))) {
+                    sources.filter(file -> file.toString().endsWith(".java")).forEach(file -> args.add(file.toString()));
+                }
+            }
+            assertEquals("fixture compilation failed", 0, compiler.run(null, null, null, args.toArray(new String[0])));
+
+            // packages are unique per module
+            for (final Path moduleDir : fixture.getModuleDirs()) {
+                final String packagePath = MultiModuleFixture.BASE_PACKAGE.replace('.', '/') + '/'
+                        + moduleDir.getFileName().toString().replace('-', '_');
+                final Path compiled = classesDir.resolve(packagePath);
+                final Path outputDir = moduleDir.resolve(OUTPUT_PATH);
+                try (Stream<Path> classFiles = Files.walk(compiled)) {
+                    for (final Path classFile : classFiles.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                        Files.copy(classFile, outputDir.resolve(classesDir.relativize(classFile).toString()),
+                                StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            }
+        } finally {
+            FileUtil.delete(classesDir);
+        }
+    }
+
+    private static void assertBudget(final String step,
+                                     final long budgetMillis,
+                                     final ThrowableRunnable<? extends Exception> runnable) throws Exception {
+        final long budget = (long) (budgetMillis * BUDGET_FACTOR);
+        final long start = System.nanoTime();
+        runnable.run();
+        final long elapsed = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(step + " took " + elapsed + " ms, exceeding its budget of " + budget + " ms", elapsed <= budget);
+    }
+
+}
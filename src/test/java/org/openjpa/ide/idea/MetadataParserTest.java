@@ -0,0 +1,102 @@
+package org.openjpa.ide.idea;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class names read by {@link MetadataParser} from JDO and JPA metadata files.
+ */
+public class MetadataParserTest {
+
+    //
+    // Tests
+    //
+
+    @Test
+    public void jdoMetadataWithDoctype() throws XMLStreamException {
+        final Set<String> classNames = parse("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<!DOCTYPE jdo PUBLIC \"-//Sun Microsystems, Inc.//DTD Java Data Objects Metadata 2.0//EN\"\n"
+                + "        \"http://java.sun.com/dtd/jdo_2_0.dtd\">\n"
+                + "<jdo>\n"
+                + "    <package name=\"com.acme\">\n"
+                + "        <class name=\"Order\"/>\n"
+                + "        <class name=\"Invoice\"><field name=\"order\"/></class>\n"
+                + "    </package>\n"
+                + "    <package name=\"com.acme.billing\">\n"
+                + "        <class name=\"Account\"/>\n"
+                + "    </package>\n"
+                + "</jdo>\n");
+
+        assertEquals(List.of("com.acme.Order", "com.acme.Invoice", "com.acme.billing.Account"), List.copyOf(classNames));
+    }
+
+    @Test
+    public void jdoOrmWithNamespace() throws XMLStreamException {
+        final Set<String> classNames = parse("<?xml version=\"1.0\"?>\n"
+                + "<orm xmlns=\"http://xmlns.jcp.org/xml/ns/jdo/orm\"\n"
+                + "     xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n"
+                + "     xsi:schemaLocation=\"http://xmlns.jcp.org/xml/ns/jdo/orm http://xmlns.jcp.org/xml/ns/jdo/orm_3_1.xsd\">\n"
+                + "    <package name=\"com.acme\">\n"
+                + "        <class name=\"Order\" table=\"ORDERS\"/>\n"
+                + "    </package>\n"
+                + "</orm>\n");
+
+        assertEquals(List.of("com.acme.Order"), List.copyOf(classNames));
+    }
+
+    @Test
+    public void jpaOrmWithNamespace() throws XMLStreamException {
+        final Set<String> classNames = parse("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<entity-mappings xmlns=\"https://jakarta.ee/xml/ns/persistence/orm\" version=\"3.1\">\n"
+                + "    <package>com.acme</package>\n"
+                + "    <embeddable class=\"com.acme.Period\"/>\n"
+                + "    <entity class=\"com.acme.Order\">\n"
+                + "        <attributes><embedded name=\"period\"/></attributes>\n"
+                + "    </entity>\n"
+                + "    <mapped-superclass class=\"com.acme.Base\"/>\n"
+                + "</entity-mappings>\n");
+
+        // grouped by kind: entities, mapped superclasses, embeddables
+        assertEquals(List.of("com.acme.Order", "com.acme.Base", "com.acme.Period"), List.copyOf(classNames));
+    }
+
+    @Test
+    public void jpaOrmWithPrefixAndDoctype() throws XMLStreamException {
+        final Set<String> classNames = parse("<?xml version=\"1.0\"?>\n"
+                + "<!DOCTYPE orm:entity-mappings>\n"
+                + "<orm:entity-mappings xmlns:orm=\"http://xmlns.jcp.org/xml/ns/persistence/orm\">\n"
+                + "    <orm:entity class=\"com.acme.Order\"/>\n"
+                + "    <orm:entity name=\"Unmapped\"/>\n"
+                + "</orm:entity-mappings>\n");
+
+        assertEquals(List.of("com.acme.Order"), List.copyOf(classNames));
+    }
+
+    @Test
+    public void nestedElementsAreNotMappings() throws XMLStreamException {
+        final Set<String> classNames = parse("<persistence xmlns=\"https://jakarta.ee/xml/ns/persistence\">\n"
+                + "    <persistence-unit name=\"pu\"><class>com.acme.Order</class></persistence-unit>\n"
+                + "    <entity-mappings><entity class=\"com.acme.Nested\"/></entity-mappings>\n"
+                + "</persistence>\n");
+
+        assertTrue(classNames.isEmpty());
+    }
+
+    //
+    // Helper methods
+    //
+
+    private static Set<String> parse(final String xml) throws XMLStreamException {
+        return MetadataParser.parseQualifiedClassNames(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+}
@@ -0,0 +1,71 @@
+package org.openjpa.ide.idea;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class selection of {@link StateSnapshot}, patterns and explicit per-class overrides.
+ */
+public class StateSnapshotTest {
+
+    //
+    // Tests
+    //
+
+    @Test
+    public void patternsSelectClasses() {
+        final StateSnapshot snapshot = snapshot(List.of("com.acme.**"), List.of("com.acme.internal.*"), List.of(), List.of());
+
+        assertTrue(snapshot.isClassEnabled("com.acme.Order"));
+        assertFalse(snapshot.isClassEnabled("com.acme.internal.Order"));
+        assertFalse(snapshot.isClassEnabled("org.other.Order"));
+    }
+
+    @Test
+    public void enabledClassOverridesPatterns() {
+        final StateSnapshot snapshot = snapshot(List.of("com.acme.**"), List.of("com.acme.internal.*"),
+                List.of("com.acme.internal.Order", "org.other.Order"), List.of());
+
+        assertTrue(snapshot.isClassEnabled("com.acme.internal.Order"));
+        assertTrue(snapshot.isClassEnabled("org.other.Order"));
+        assertFalse(snapshot.isClassMatchedByPatterns("org.other.Order"));
+    }
+
+    @Test
+    public void disabledClassOverridesPatterns() {
+        final StateSnapshot snapshot = snapshot(List.of("com.acme.**"), List.of(), List.of(), List.of("com.acme.Order"));
+
+        assertFalse(snapshot.isClassEnabled("com.acme.Order"));
+        assertTrue(snapshot.isClassMatchedByPatterns("com.acme.Order"));
+        assertTrue(snapshot.isClassEnabled("com.acme.Invoice"));
+    }
+
+    @Test
+    public void overridesApplyWithoutPatterns() {
+        final StateSnapshot snapshot = snapshot(List.of(), List.of(), List.of("com.acme.Order"), List.of());
+
+        assertTrue(snapshot.isClassEnabled("com.acme.Order"));
+        assertFalse(snapshot.isClassEnabled("com.acme.Invoice"));
+    }
+
+    //
+    // Helper methods
+    //
+
+    private static StateSnapshot snapshot(final List<String> includePatterns,
+                                          final List<String> excludePatterns,
+                                          final List<String> enabledFiles,
+                                          final List<String> disabledFiles) {
+        final PersistentState persistentState = new PersistentState();
+        persistentState.setIncludePatterns(includePatterns);
+        persistentState.setExcludePatterns(excludePatterns);
+        persistentState.setEnabledFiles(enabledFiles);
+        persistentState.setDisabledFiles(disabledFiles);
+        return new StateSnapshot(0, persistentState, PersistenceApi.JPA, null);
+    }
+
+}
@@ -0,0 +1,117 @@
+package org.openjpa.ide.idea;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.intellij.openapi.compiler.CompileContext;
+import com.intellij.openapi.compiler.CompileScope;
+import com.intellij.openapi.compiler.CompilerMessageCategory;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.UserDataHolderBase;
+
+/**
+ * Compile context of a build run by a test, collecting the messages reported by the enhancer.<br/>
+ * <br/>
+ * Implemented as a proxy, only the methods used by {@link Computable} are supported, all others return
+ * default values.
+ */
+final class TestCompileContext implements InvocationHandler {
+
+    private final Project project;
+
+    private final CompileScope compileScope;
+
+    private final ProgressIndicator progressIndicator = new EmptyProgressIndicator();
+
+    private final UserDataHolderBase userData = new UserDataHolderBase();
+
+    private final List<String> messages = new ArrayList<>();
+
+    private final List<CompilerMessageCategory> categories = new ArrayList<>();
+
+    private final CompileContext context;
+
+    TestCompileContext(final Project project, final CompileScope compileScope) {
+        this.project = project;
+        this.compileScope = compileScope;
+        this.context = (CompileContext) Proxy.newProxyInstance(CompileContext.class.getClassLoader(),
+                new Class<?>[]{CompileContext.class}, this);
+    }
+
+    CompileContext getContext() {
+        return this.context;
+    }
+
+    /**
+     * @param category message category
+     * @return the messages reported with the category
+     */
+    synchronized List<String> getMessages(final CompilerMessageCategory category) {
+        final List<String> result = new ArrayList<>();
+        for (int i = 0; i < this.messages.size(); ++i) {
+            if (this.categories.get(i) == category) {
+                result.add(this.messages.get(i));
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+        switch (method.getName()) {
+            case "getProject":
+                return this.project;
+            case "getCompileScope":
+            case "getProjectCompileScope":
+                return this.compileScope;
+            case "getProgressIndicator":
+                return this.progressIndicator;
+            case "getUserData":
+                return this.userData.getUserData((Key<Object>) args[0]);
+            case "putUserData":
+                this.userData.putUserData((Key<Object>) args[0], args[1]);
+                return null;
+            case "addMessage":
+                synchronized (this) {
+                    this.categories.add((CompilerMessageCategory) args[0]);
+                    this.messages.add((String) args[1]);
+                }
+                return null;
+            case "getMessageCount":
+                return args == null || args[0] == null ? this.messages.size() : this.getMessages((CompilerMessageCategory) args[0]).size();
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "TestCompileContext";
+            default:
+                return defaultValue(method.getReturnType());
+        }
+    }
+
+    private static Object defaultValue(final Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type.isArray()) {
+            return Array.newInstance(type.getComponentType(), 0);
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,88 @@
+package org.openjpa.ide.idea.integration.openjpa;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pattern semantics of {@link ClassNameMatcher}.
+ */
+public class ClassNameMatcherTest {
+
+    //
+    // Tests
+    //
+
+    @Test
+    public void anySegmentsMatchNoSegment() {
+        final ClassNameMatcher matcher = include("com.acme.**.Entity", "**.Audit");
+
+        assertTrue(matcher.matches("com.acme.Entity"));
+        assertTrue(matcher.matches("com.acme.billing.Entity"));
+        assertTrue(matcher.matches("com.acme.billing.internal.Entity"));
+        assertFalse(matcher.matches("com.Entity"));
+        assertFalse(matcher.matches("com.acme.Entity2"));
+
+        assertTrue(matcher.matches("Audit"));
+        assertTrue(matcher.matches("com.acme.Audit"));
+    }
+
+    @Test
+    public void globsMatchWithinOneSegment() {
+        final ClassNameMatcher matcher = include("*.audit.*Entity", "com.acme.Order?");
+
+        assertTrue(matcher.matches("com.audit.LogEntity"));
+        assertTrue(matcher.matches("com.audit.Entity"));
+        assertFalse(matcher.matches("com.acme.audit.LogEntity"));
+        assertFalse(matcher.matches("com.audit.LogEntityId"));
+
+        assertTrue(matcher.matches("com.acme.Order1"));
+        assertFalse(matcher.matches("com.acme.Order"));
+        assertFalse(matcher.matches("com.acme.Order12"));
+    }
+
+    @Test
+    public void excludeOverridesInclude() {
+        final ClassNameMatcher matcher = ClassNameMatcher.compile(List.of("com.acme.**"),
+                List.of("com.acme.internal.*", "**.*Test"));
+
+        assertTrue(matcher.matches("com.acme.Order"));
+        assertTrue(matcher.matches("com.acme.internal.sub.Order"));
+        assertFalse(matcher.matches("com.acme.internal.Order"));
+        assertFalse(matcher.matches("com.acme.billing.OrderTest"));
+    }
+
+    @Test
+    public void noIncludesMatchNothing() {
+        final ClassNameMatcher matcher = ClassNameMatcher.compile(List.of(" ", ""), List.of("com.acme.**"));
+
+        assertSame(ClassNameMatcher.NONE, matcher);
+        assertTrue(matcher.isEmpty());
+        assertFalse(matcher.matches("com.acme.Order"));
+        assertFalse(include("com.acme.*").isEmpty());
+    }
+
+    @Test
+    public void parseSplitsOnSeparators() {
+        final Set<String> patterns = ClassNameMatcher.parse(" com.acme.**; *.audit.*Entity,com.Order\n com.Order ");
+
+        assertEquals(List.of("com.acme.**", "*.audit.*Entity", "com.Order"), List.copyOf(patterns));
+        assertTrue(ClassNameMatcher.parse(null).isEmpty());
+    }
+
+    //
+    // Helper methods
+    //
+
+    private static ClassNameMatcher include(final String... patterns) {
+        return ClassNameMatcher.compile(List.of(patterns), Collections.emptyList());
+    }
+
+}